@@ -1,9 +1,35 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
 import java.util.Scanner;
+import builder.JavaClassBuilder;
+import builder.JavaClassScan;
+import builder.ScanFuzzer;
+import builder.WorkspaceLinter;
 import menu.Menu;
+import model.Field;
+import model.Method;
 import util.FolderUtils;
+import util.StartupTimer;
+import util.SyntaxHighlighter;
+import util.ValidationUtils;
 
 public class Main {
     public static void main(String[] args) {
+        StartupTimer.markMainEntered();
+
+        if (args.length > 0 && args[0].equals("--cds-training")) {
+            runCdsTraining();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--lint")) {
+            System.exit(runLint(args));
+        }
+        if (args.length > 0 && args[0].equals("--fuzz-scan")) {
+            System.exit(runScanFuzzer(args));
+        }
+
         Scanner scanner = new Scanner(System.in);
         System.out.println("╔══════════════════════════════════════════════════════════════════════╗");
         System.out.println("║                      Welcome to Java Class Builder                   ║");
@@ -19,4 +45,100 @@ public class Main {
         System.out.println("╚══════════════════════════════════════════════════════════════════════╝");
         scanner.close();
     }
+
+    /**
+     * Lints the folder, or zip or jar of sources, given after --lint and prints one line per finding, then
+     * a summary by rule. Returns the process exit code: 0 if the classes pass
+     * every rule, 1 if there are findings and 2 if the folder cannot be linted,
+     * so the command can serve as a pre-commit check.
+     */
+    private static int runLint(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: java Main --lint <folder|archive.zip|archive.jar>");
+            return 2;
+        }
+        Path root = Paths.get(args[1]).toAbsolutePath().normalize();
+        try {
+            WorkspaceLinter.Summary summary = WorkspaceLinter.lint(root, finding -> {
+                // Entries of an archive are shown by their path inside it
+                Path file = finding.file();
+                String name = file.getFileSystem() == root.getFileSystem() ? root.relativize(file).toString()
+                        : file.toString().substring(1);
+                String line = name + ":" + finding.line() + ": ["
+                        + finding.rule() + "] " + finding.message();
+                synchronized (System.out) {
+                    System.out.println(line);
+                }
+            });
+            for (Map.Entry<String, Long> rule : summary.findingsByRule().entrySet()) {
+                System.out.println(rule.getValue() + "\t" + rule.getKey());
+            }
+            System.out.println("Linted " + summary.files() + " file(s) in " + summary.millis() + " ms: "
+                    + summary.findings() + " finding(s), " + summary.unparsed() + " not a class or interface, "
+                    + summary.unreadable() + " unreadable.");
+            return summary.findings() == 0 ? 0 : 1;
+        } catch (IOException e) {
+            System.err.println("Cannot lint " + root + ": " + e.getMessage());
+            return 2;
+        }
+    }
+
+    /**
+     * Runs the scanner fuzzer: --fuzz-scan [seconds per generator] [seed]. Prints
+     * the throughput of each generator and every input that broke the scanner.
+     * Returns 0 if no input failed or hit the scan limits, 1 otherwise and 2 for
+     * bad arguments.
+     */
+    private static int runScanFuzzer(String[] args) {
+        long seconds;
+        long seed;
+        try {
+            seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+            seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: java Main --fuzz-scan [seconds per generator] [seed]");
+            return 2;
+        }
+        System.out.println("Fuzzing the scanner for " + seconds + " s per generator, seed " + seed);
+        System.out.printf("%-12s %8s %9s %8s %8s %9s %11s %9s%n",
+                "generator", "inputs", "MB", "MB/s", "max ms", "rejected", "over limit", "failures");
+        int failed = 0;
+        for (ScanFuzzer.Result result : ScanFuzzer.run(seed, seconds * 1000)) {
+            System.out.printf("%-12s %8d %9.1f %8.1f %8d %9d %11d %9d%n", result.generator(), result.inputs(),
+                    result.chars() / 1e6, result.megabytesPerSecond(), result.maxNanos() / 1_000_000,
+                    result.rejected(), result.overBudget(), result.failures().size());
+            for (String failure : result.failures()) {
+                System.out.println("  " + failure);
+            }
+            failed += result.failures().size() + result.overBudget();
+        }
+        return failed == 0 ? 0 : 1;
+    }
+
+    /**
+     * Loads and initializes the classes an interactive session uses, without
+     * prompting, so a run with -XX:ArchiveClassesAtExit captures them in the
+     * class-data-sharing archive (see README)
+     */
+    private static void runCdsTraining() {
+        try {
+            ValidationUtils.validateClassName("Sample");
+            ValidationUtils.validateVariableName("count");
+            ValidationUtils.validateMethodName("getCount");
+            ValidationUtils.validateType("int");
+            ValidationUtils.validateVisibility("private");
+
+            JavaClassBuilder builder = new JavaClassBuilder("Sample");
+            builder.addField(new Field("count", "int", "private"));
+            builder.addMethod(new Method("getCount", "int", "public"));
+            String code = builder.buildClass();
+
+            JavaClassScan.scan(code);
+            SyntaxHighlighter.highlight(code);
+            new Scanner("y\n").nextLine();
+            System.out.println("CDS training run complete.");
+        } catch (Exception e) {
+            System.out.println("CDS training run failed: " + e.getMessage());
+        }
+    }
 }
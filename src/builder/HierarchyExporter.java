@@ -0,0 +1,228 @@
+package builder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import model.ClassSnapshot;
+
+/**
+ * Writes the extends and implements graph of the workspace as a Graphviz DOT
+ * file. Nodes and edges are written as they are found, in one pass over the
+ * classes, so the graph is never built in memory. Edges point from a class to
+ * its supertype: solid for extends, dashed for implements. Supertypes outside
+ * the workspace appear as plain nodes.
+ */
+public class HierarchyExporter {
+
+    /**
+     * Which part of the graph to write
+     *
+     * @param packagePrefix Only classes whose package starts with this; "" for all
+     * @param root          Only classes at most depth edges away from this class,
+     *                      up or down; null for the whole workspace
+     * @param maxFanOut     Subtypes drawn per type; the rest are summed up in one node
+     */
+    public record Filter(String packagePrefix, String root, int depth, int maxFanOut) {
+        public static final Filter ALL = new Filter("", null, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * What was written. omitted counts the subtype edges left out by maxFanOut.
+     */
+    public record Summary(int classes, int edges, int omitted) {
+    }
+
+    private final WorkspaceIndex workspaceIndex;
+    private final TypeHierarchy hierarchy;
+    private final Filter filter;
+    private final Writer out;
+    private int classes;
+    private int edges;
+    private int omitted;
+
+    private HierarchyExporter(WorkspaceIndex workspaceIndex, TypeHierarchy hierarchy, Filter filter, Writer out) {
+        this.workspaceIndex = workspaceIndex;
+        this.hierarchy = hierarchy;
+        this.filter = filter;
+        this.out = out;
+    }
+
+    /**
+     * Writes the DOT graph; the writer is left open
+     *
+     * @throws IllegalArgumentException If the filter's root is not a workspace class
+     */
+    public static Summary exportDot(WorkspaceIndex workspaceIndex, TypeHierarchy hierarchy, Filter filter,
+                                    Writer out) throws IOException {
+        HierarchyExporter exporter = new HierarchyExporter(workspaceIndex, hierarchy, filter, out);
+        out.write("digraph hierarchy {\n");
+        out.write("  rankdir=BT;\n");
+        out.write("  node [shape=box, fontname=\"Helvetica\"];\n");
+        out.write("  edge [arrowhead=empty];\n");
+        if (filter.root() == null) {
+            exporter.writeAll();
+        } else {
+            ClassSnapshot root = workspaceIndex.getByClassName(filter.root());
+            if (root == null) {
+                throw new IllegalArgumentException("Class not found: " + filter.root());
+            }
+            exporter.writeAround(root);
+        }
+        out.write("}\n");
+        return new Summary(exporter.classes, exporter.edges, exporter.omitted);
+    }
+
+    // Each class with the edges from its subtypes; supertypes outside the workspace from their subtypes
+    private void writeAll() throws IOException {
+        Map<String, Integer> externalFanOut = new HashMap<>();
+        for (ClassSnapshot snapshot : workspaceIndex.getClasses()) {
+            if (matches(snapshot)) {
+                node(snapshot);
+                for (String supertype : TypeHierarchy.supertypes(snapshot)) {
+                    String name = TypeHierarchy.simpleName(supertype);
+                    if (workspaceIndex.getByClassName(name) == null) {
+                        if (externalFanOut.merge(name, 1, Integer::sum) <= filter.maxFanOut()) {
+                            edge(snapshot, name);
+                        } else {
+                            omitted++;
+                        }
+                    }
+                }
+            }
+            int drawn = 0;
+            int skipped = 0;
+            for (String subtypeName : hierarchy.getSubtypes(snapshot.className())) {
+                ClassSnapshot subtype = workspaceIndex.getByClassName(subtypeName);
+                if (subtype == null || !matches(subtype)) {
+                    continue;
+                }
+                if (drawn < filter.maxFanOut()) {
+                    edge(subtype, snapshot.className());
+                    drawn++;
+                } else {
+                    skipped++;
+                }
+            }
+            more(snapshot.className(), skipped);
+        }
+        for (Map.Entry<String, Integer> external : externalFanOut.entrySet()) {
+            more(external.getKey(), external.getValue() - filter.maxFanOut());
+        }
+    }
+
+    /**
+     * Breadth first from the root, up and down. An edge is written by whichever
+     * end is expanded first, so none is written twice.
+     */
+    private void writeAround(ClassSnapshot root) throws IOException {
+        Map<String, Integer> depths = new HashMap<>();
+        Set<String> expanded = new HashSet<>();
+        ArrayDeque<ClassSnapshot> queue = new ArrayDeque<>();
+        depths.put(root.className(), 0);
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            ClassSnapshot snapshot = queue.poll();
+            String name = snapshot.className();
+            int depth = depths.get(name);
+            node(snapshot);
+            if (depth == filter.depth()) {
+                continue;
+            }
+            expanded.add(name);
+            for (String supertypeName : TypeHierarchy.supertypes(snapshot)) {
+                String simpleName = TypeHierarchy.simpleName(supertypeName);
+                ClassSnapshot supertype = workspaceIndex.getByClassName(simpleName);
+                if (supertype == null) {
+                    edge(snapshot, simpleName);
+                } else if (matches(supertype) && !expanded.contains(simpleName)) {
+                    edge(snapshot, simpleName);
+                    if (depths.putIfAbsent(simpleName, depth + 1) == null) {
+                        queue.add(supertype);
+                    }
+                }
+            }
+            int drawn = 0;
+            int skipped = 0;
+            Set<String> subtypes = hierarchy.getSubtypes(name);
+            for (String subtypeName : subtypes) {
+                ClassSnapshot subtype = workspaceIndex.getByClassName(subtypeName);
+                if (subtype == null || !matches(subtype) || expanded.contains(subtypeName)) {
+                    continue;
+                }
+                if (drawn == filter.maxFanOut()) {
+                    skipped++;
+                    continue;
+                }
+                drawn++;
+                edge(subtype, name);
+                if (depths.putIfAbsent(subtypeName, depth + 1) == null) {
+                    queue.add(subtype);
+                }
+            }
+            more(name, skipped);
+        }
+    }
+
+    private boolean matches(ClassSnapshot snapshot) {
+        String packageName = snapshot.packageName() == null ? "" : snapshot.packageName();
+        return packageName.startsWith(filter.packagePrefix());
+    }
+
+    private void node(ClassSnapshot snapshot) throws IOException {
+        classes++;
+        String name = snapshot.className();
+        String packageName = snapshot.packageName() == null ? "" : snapshot.packageName();
+        StringBuilder label = new StringBuilder();
+        if (snapshot.isInterface()) {
+            label.append("«interface»\\n");
+        }
+        label.append(name);
+        if (!packageName.isEmpty()) {
+            label.append("\\n").append(packageName);
+        }
+        out.write("  " + quote(name) + " [label=" + quote(label.toString()) + ", style=\""
+                + (snapshot.isInterface() ? "rounded,filled" : "filled") + "\", fillcolor=\"#e8f0fe\""
+                + (snapshot.isAbstract() ? ", fontname=\"Helvetica-Oblique\"" : "") + "];\n");
+    }
+
+    private void edge(ClassSnapshot subtype, String supertype) throws IOException {
+        edges++;
+        out.write("  " + quote(subtype.className()) + " -> " + quote(supertype)
+                + (implementsEdge(subtype, supertype) ? " [style=dashed]" : "") + ";\n");
+    }
+
+    // A summary node standing for the subtypes left out of a type
+    private void more(String type, int skipped) throws IOException {
+        if (skipped <= 0) {
+            return;
+        }
+        omitted += skipped;
+        String node = quote(type + " +" + skipped);
+        out.write("  " + node + " [label=\"" + skipped + " more\", shape=plaintext];\n");
+        out.write("  " + node + " -> " + quote(type) + " [style=dotted];\n");
+    }
+
+    private static boolean implementsEdge(ClassSnapshot subtype, String supertype) {
+        if (subtype.isInterface()) {
+            return false;
+        }
+        List<String> supertypes = TypeHierarchy.supertypes(subtype);
+        int extendsCount = supertypes.size() - subtype.implementsInterfaces().size();
+        for (int i = extendsCount; i < supertypes.size(); i++) {
+            if (TypeHierarchy.simpleName(supertypes.get(i)).equals(supertype)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Labels may hold \n escapes, which must reach Graphviz as they are
+    private static String quote(String id) {
+        return "\"" + id.replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,197 @@
+package builder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import model.ClassSnapshot;
+import model.Constructor;
+import model.Field;
+import model.Method;
+import model.Parameter;
+import model.SourceSpan;
+import util.TypeIndex;
+import util.ValidationUtils;
+
+/**
+ * Adds the imports a class needs for the types its fields, methods, parameters
+ * and supertypes refer to. Workspace classes are looked up first, then the JDK
+ * and class path types of the TypeIndex. Existing imports are never removed.
+ *
+ * Types of the class's own package and its member types need no import and
+ * are never looked up elsewhere, even when the workspace index cannot hold
+ * them (enums and records): importing java.awt.Color for a Color enum next to
+ * the class would compile but change the type of every use.
+ */
+public class ImportResolver {
+    // When a name exists in several packages, the earliest of these wins
+    private static final List<String> PREFERRED_PACKAGES = List.of(
+            "java.lang", "java.util", "java.util.function", "java.util.concurrent", "java.util.stream",
+            "java.io", "java.nio.file", "java.time", "java.math", "java.net");
+    private static final Pattern MEMBER_TYPE = Pattern.compile("\\b(?:class|interface|enum|record)\\s+(\\w+)");
+
+    /**
+     * What a call to addMissingImports did: the imports it added and the type
+     * names it could not find anywhere
+     */
+    public record Result(List<String> added, Set<String> unresolved) {
+    }
+
+    private final WorkspaceIndex workspaceIndex;
+    private final TypeIndex typeIndex;
+
+    /**
+     * @param workspaceIndex Classes of the working folder, or null to use only the type index
+     */
+    public ImportResolver(WorkspaceIndex workspaceIndex, TypeIndex typeIndex) {
+        this.workspaceIndex = workspaceIndex;
+        this.typeIndex = typeIndex;
+    }
+
+    /**
+     * @param folder The folder the class is saved in, whose .java files are in its
+     *               package; null if it is not known
+     */
+    public Result addMissingImports(JavaClassBuilder builder, Path folder) {
+        String ownPackage = builder.getPackageName() == null ? "" : builder.getPackageName();
+        List<String> added = new ArrayList<>();
+        Set<String> unresolved = new TreeSet<>();
+        Set<String> memberTypes = memberTypes(builder);
+        for (String name : referencedTypes(builder)) {
+            if (name.equals(builder.getClassName()) || memberTypes.contains(name)
+                    || isImported(builder.getImports(), name)
+                    || (folder != null && Files.isRegularFile(folder.resolve(name + ".java")))) {
+                continue;
+            }
+            String packageName = resolve(name, ownPackage);
+            if (packageName == null) {
+                unresolved.add(name);
+            } else if (!packageName.isEmpty() && !packageName.equals("java.lang") && !packageName.equals(ownPackage)) {
+                String importStatement = packageName + "." + name;
+                builder.addImport(importStatement);
+                added.add(importStatement);
+            }
+        }
+        return new Result(added, unresolved);
+    }
+
+    /**
+     * Returns the names of the types declared inside the class, which the model
+     * keeps as verbatim members
+     */
+    private static Set<String> memberTypes(JavaClassBuilder builder) {
+        Set<String> names = new HashSet<>();
+        for (SourceSpan member : builder.getOtherMembers()) {
+            Matcher matcher = MEMBER_TYPE.matcher(member.getSource()).region(member.getStart(), member.getEnd());
+            while (matcher.find()) {
+                names.add(matcher.group(1));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the package declaring the type, "" for the default package, or
+     * null if the type is unknown
+     */
+    private String resolve(String name, String ownPackage) {
+        if (workspaceIndex != null) {
+            ClassSnapshot local = workspaceIndex.getByClassName(name);
+            if (local != null) {
+                return local.packageName() == null ? "" : local.packageName();
+            }
+        }
+        List<String> packages = typeIndex.packagesOf(name);
+        if (packages.isEmpty()) {
+            return null;
+        }
+        if (packages.contains(ownPackage)) {
+            return ownPackage;
+        }
+        return packages.stream().min(Comparator.comparingInt(ImportResolver::rank)).orElse(null);
+    }
+
+    private static int rank(String packageName) {
+        int preferred = PREFERRED_PACKAGES.indexOf(packageName);
+        if (preferred >= 0) {
+            return preferred;
+        }
+        if (packageName.startsWith("java.")) {
+            return PREFERRED_PACKAGES.size();
+        }
+        return packageName.startsWith("javax.") ? PREFERRED_PACKAGES.size() + 1 : PREFERRED_PACKAGES.size() + 2;
+    }
+
+    private boolean isImported(List<String> imports, String name) {
+        for (String importStatement : imports) {
+            if (importStatement.startsWith("static ")) {
+                continue;
+            }
+            if (importStatement.endsWith("." + name)) {
+                return true;
+            }
+            if (importStatement.endsWith(".*")) {
+                String packageName = importStatement.substring(0, importStatement.length() - 2);
+                if (typeIndex.contains(packageName, name)) {
+                    return true;
+                }
+                ClassSnapshot local = workspaceIndex == null ? null : workspaceIndex.getByClassName(name);
+                if (local != null && packageName.equals(local.packageName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the simple names of the types the declarations use, in order of
+     * appearance. Fully qualified names need no import and are left out.
+     */
+    static Set<String> referencedTypes(JavaClassBuilder builder) {
+        Set<String> names = new LinkedHashSet<>();
+        if (builder.getExtendsClass() != null) {
+            addTypeNames(builder.getExtendsClass(), names);
+        }
+        for (String implemented : builder.getImplementsInterfaces()) {
+            addTypeNames(implemented, names);
+        }
+        for (Field field : builder.getFields()) {
+            addTypeNames(field.getType(), names);
+        }
+        for (Constructor constructor : builder.getConstructors()) {
+            for (Parameter parameter : constructor.getParameters()) {
+                addTypeNames(parameter.getType(), names);
+            }
+        }
+        for (Method method : builder.getMethods()) {
+            addTypeNames(method.getReturnType(), names);
+            for (Parameter parameter : method.getParameters()) {
+                addTypeNames(parameter.getType(), names);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Adds the first segment of every name in a type, skipping fully qualified
+     * names and primitives
+     */
+    static void addTypeNames(String type, Set<String> names) {
+        TypeUniverse.forEachTypeName(type, name -> {
+            int dot = name.indexOf('.');
+            String first = dot < 0 ? name : name.substring(0, dot);
+            boolean qualified = dot >= 0 && Character.isLowerCase(first.charAt(0));
+            if (!qualified && !ValidationUtils.isPrimitiveType(first)) {
+                names.add(first);
+            }
+        });
+    }
+}
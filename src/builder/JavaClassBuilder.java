@@ -1,13 +1,28 @@
 package builder;
 
+import event.BuildEvent;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import model.ClassElement;
+import model.ClassSnapshot;
 import model.Constructor;
+import model.ConstructorSnapshot;
 import model.Field;
+import model.FieldSnapshot;
 import model.Method;
+import model.MethodSnapshot;
+import model.Parameter;
+import model.ParameterSnapshot;
+import model.SourceSpan;
+import util.Metrics;
 
 /**
- * Core builder class responsible for creating Java class files
+ * Core builder class responsible for creating Java class files.
+ * This is the mutable side of the model and is meant to be edited by a
+ * single thread; call snapshot() to hand an immutable copy to other threads.
  */
 public class JavaClassBuilder {
     private String className;
@@ -20,6 +35,24 @@ public class JavaClassBuilder {
     private boolean isInterface;
     private String extendsClass;
     private List<String> implementsInterfaces;
+    // Type parameters with their brackets, such as "<T extends Number>", or ""
+    private String typeParameters;
+    // Comments before the declaration; null generates a javadoc naming the class
+    private String javadoc;
+    private List<String> annotations;
+    // Everything before the declaration as scanned: comments, package and imports;
+    // cleared when the package changes or an import is added or removed
+    private SourceSpan preambleSpan;
+    // Comments before the package or first import, such as a license header, kept
+    // when the package and imports are regenerated
+    private SourceSpan leadingSpan;
+    // Declaration as scanned from source; cleared when any part of it is edited
+    private SourceSpan headerSpan;
+    // Everything between the class braces as scanned
+    private SourceSpan bodySpan;
+    // Scanned members the model does not represent, kept verbatim
+    private List<SourceSpan> otherMembers;
+    private boolean defaultConstructor;
     
     public JavaClassBuilder(String className) {
         this.className = className;
@@ -32,6 +65,12 @@ public class JavaClassBuilder {
         this.isInterface = false;
         this.extendsClass = null;
         this.implementsInterfaces = new ArrayList<>();
+        this.typeParameters = "";
+        this.javadoc = null;
+        this.annotations = new ArrayList<>();
+        this.headerSpan = null;
+        this.otherMembers = new ArrayList<>();
+        this.defaultConstructor = true;
     }
     
     // Getters and setters
@@ -41,6 +80,7 @@ public class JavaClassBuilder {
     
     public void setClassName(String className) {
         this.className = className;
+        this.headerSpan = null;
     }
     
     public String getPackageName() {
@@ -48,6 +88,9 @@ public class JavaClassBuilder {
     }
     
     public void setPackageName(String packageName) {
+        if (!Objects.equals(this.packageName, packageName)) {
+            preambleSpan = null;
+        }
         this.packageName = packageName;
     }
     
@@ -67,7 +110,7 @@ public class JavaClassBuilder {
     }
     
     public List<Field> getFields() {
-        return fields;
+        return Collections.unmodifiableList(fields);
     }
     
     public void addMethod(Method method) {
@@ -85,8 +128,29 @@ public class JavaClassBuilder {
                 .orElse(null);
     }
     
+    /**
+     * Returns every overload of a method name, in declaration order
+     */
+    public List<Method> getMethodsByName(String name) {
+        return methods.stream()
+                .filter(method -> method.getName().equals(name))
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Returns the method with a signature such as "draw(int, String)", written as
+     * TypeHierarchy.signature does but with any spacing, or null if there is none
+     */
+    public Method getMethodBySignature(String signature) {
+        String wanted = signature.replaceAll("\\s+", "");
+        return methods.stream()
+                .filter(method -> TypeHierarchy.signature(method.snapshot()).replace(" ", "").equals(wanted))
+                .findFirst()
+                .orElse(null);
+    }
+    
     public List<Method> getMethods() {
-        return methods;
+        return Collections.unmodifiableList(methods);
     }
     
     public void addConstructor(Constructor constructor) {
@@ -98,19 +162,24 @@ public class JavaClassBuilder {
     }
     
     public List<Constructor> getConstructors() {
-        return constructors;
+        return Collections.unmodifiableList(constructors);
     }
     
     public void addImport(String importStatement) {
-        imports.add(importStatement);
+        if (!imports.contains(importStatement)) {
+            imports.add(importStatement);
+            preambleSpan = null;
+        }
     }
     
     public void removeImport(String importStatement) {
-        imports.remove(importStatement);
+        if (imports.remove(importStatement)) {
+            preambleSpan = null;
+        }
     }
     
     public List<String> getImports() {
-        return imports;
+        return Collections.unmodifiableList(imports);
     }
     
     public boolean isAbstract() {
@@ -119,6 +188,7 @@ public class JavaClassBuilder {
     
     public void setAbstract(boolean isAbstract) {
         this.isAbstract = isAbstract;
+        this.headerSpan = null;
     }
     
     public boolean isInterface() {
@@ -127,6 +197,7 @@ public class JavaClassBuilder {
     
     public void setInterface(boolean isInterface) {
         this.isInterface = isInterface;
+        this.headerSpan = null;
     }
     
     public String getExtendsClass() {
@@ -135,136 +206,232 @@ public class JavaClassBuilder {
     
     public void setExtendsClass(String extendsClass) {
         this.extendsClass = extendsClass;
+        this.headerSpan = null;
     }
     
     public List<String> getImplementsInterfaces() {
-        return implementsInterfaces;
+        return Collections.unmodifiableList(implementsInterfaces);
     }
     
     public void addImplementsInterface(String interfaceName) {
         implementsInterfaces.add(interfaceName);
+        headerSpan = null;
     }
     
     public void removeImplementsInterface(String interfaceName) {
         implementsInterfaces.remove(interfaceName);
+        headerSpan = null;
     }
 
-    public JavaClassBuilder clone() {
-        JavaClassBuilder copy = new JavaClassBuilder(this.className);
-        copy.packageName = this.packageName;
-        // Deep copy fields
-        for (Field f : this.fields) {
-            Field fCopy = new Field(f.getName(), f.getType(), f.getVisibility());
-            fCopy.setFinal(f.isFinal());
-            fCopy.setStatic(f.isStatic());
-            fCopy.setInitialValue(f.getInitialValue());
-            copy.fields.add(fCopy);
-        }
-        // Deep copy methods
-        for (Method m : this.methods) {
-            Method mCopy = new Method(m.getName(), m.getReturnType(), m.getVisibility());
-            mCopy.setStatic(m.isStatic());
-            mCopy.setAbstract(m.isAbstract());
-            mCopy.setBody(m.getBody());
-            for (model.Parameter p : m.getParameters()) {
-                model.Parameter pCopy = new model.Parameter(p.getName(), p.getType(), p.isFinal());
-                mCopy.addParameter(pCopy);
-            }
-            copy.methods.add(mCopy);
-        }
-        // Deep copy constructors
-        for (model.Constructor c : this.constructors) {
-            model.Constructor cCopy = new model.Constructor(c.getName(), c.getVisibility());
-            cCopy.setBody(c.getBody());
-            for (model.Parameter p : c.getParameters()) {
-                model.Parameter pCopy = new model.Parameter(p.getName(), p.getType(), p.isFinal());
-                cCopy.addParameter(pCopy);
-            }
-            copy.constructors.add(cCopy);
-        }
-        copy.imports = new ArrayList<>(this.imports);
-        copy.isAbstract = this.isAbstract;
-        copy.isInterface = this.isInterface;
-        copy.extendsClass = this.extendsClass;
-        copy.implementsInterfaces = new ArrayList<>(this.implementsInterfaces);
-        return copy;
+    public void clearImplementsInterfaces() {
+        implementsInterfaces.clear();
+        headerSpan = null;
     }
 
-    public String buildClass() {
-        StringBuilder sb = new StringBuilder();
-        
+    public String getTypeParameters() {
+        return typeParameters;
+    }
 
-        if (packageName != null && !packageName.isEmpty()) {
-            sb.append("package ").append(packageName).append(";\n\n");
-        }
-        
-        // Import
-        if (!imports.isEmpty()) {
-            for (String importStmt : imports) {
-                sb.append("import ").append(importStmt).append(";\n");
-            }
-            sb.append("\n");
-        }
-        
-        // Class
-        sb.append("/**\n");
-        sb.append(" * ").append(className).append("\n");
-        sb.append(" */\n");
-        
-        sb.append("public ");
-        
-        if (isAbstract) {
-            sb.append("abstract ");
+    public void setTypeParameters(String typeParameters) {
+        this.typeParameters = typeParameters == null ? "" : typeParameters;
+        headerSpan = null;
+    }
+
+    public String getJavadoc() {
+        return javadoc;
+    }
+
+    /**
+     * @param javadoc The comments before the declaration, "" for none, or null
+     *                to generate a javadoc naming the class
+     */
+    public void setJavadoc(String javadoc) {
+        this.javadoc = javadoc;
+        headerSpan = null;
+    }
+
+    public List<String> getAnnotations() {
+        return Collections.unmodifiableList(annotations);
+    }
+
+    public void addAnnotation(String annotation) {
+        annotations.add(annotation);
+        headerSpan = null;
+    }
+
+    public SourceSpan getPreambleSpan() {
+        return preambleSpan;
+    }
+
+    public void setPreambleSpan(SourceSpan preambleSpan) {
+        this.preambleSpan = preambleSpan;
+    }
+
+    public SourceSpan getLeadingSpan() {
+        return leadingSpan;
+    }
+
+    public void setLeadingSpan(SourceSpan leadingSpan) {
+        this.leadingSpan = leadingSpan;
+    }
+
+    public SourceSpan getHeaderSpan() {
+        return headerSpan;
+    }
+
+    public void setHeaderSpan(SourceSpan headerSpan) {
+        this.headerSpan = headerSpan;
+    }
+
+    public SourceSpan getBodySpan() {
+        return bodySpan;
+    }
+
+    public void setBodySpan(SourceSpan bodySpan) {
+        this.bodySpan = bodySpan;
+    }
+
+    public void addOtherMember(SourceSpan member) {
+        otherMembers.add(member);
+    }
+
+    public List<SourceSpan> getOtherMembers() {
+        return Collections.unmodifiableList(otherMembers);
+    }
+
+    /**
+     * Whether a public no-argument constructor is generated when none is declared.
+     * Off for scanned classes, which keep exactly the constructors they had.
+     */
+    public boolean hasDefaultConstructor() {
+        return defaultConstructor;
+    }
+
+    public void setDefaultConstructor(boolean defaultConstructor) {
+        this.defaultConstructor = defaultConstructor;
+    }
+
+    /**
+     * Forgets how the scanned source was laid out, so buildClass() regenerates the
+     * declaration and every member in the generator's format. Members keep their
+     * order; method bodies, members the model does not represent, and the comments,
+     * package and imports before the declaration are kept as is.
+     */
+    public void discardSourceLayout() {
+        headerSpan = null;
+        fields.forEach(ClassElement::markModified);
+        methods.forEach(ClassElement::markModified);
+        constructors.forEach(ClassElement::markModified);
+    }
+
+    /**
+     * Returns an immutable copy of the current state of this builder
+     */
+    public ClassSnapshot snapshot() {
+        List<FieldSnapshot> fieldSnapshots = new ArrayList<>(fields.size());
+        for (Field f : fields) {
+            fieldSnapshots.add(f.snapshot());
         }
-        
-        if (isInterface) {
-            sb.append("interface ");
-        } else {
-            sb.append("class ");
+        List<MethodSnapshot> methodSnapshots = new ArrayList<>(methods.size());
+        for (Method m : methods) {
+            methodSnapshots.add(m.snapshot());
         }
-        
-        sb.append(className);
-        
-        // Extends
-        if (extendsClass != null && !extendsClass.isEmpty()) {
-            sb.append(" extends ").append(extendsClass);
+        List<ConstructorSnapshot> constructorSnapshots = new ArrayList<>(constructors.size());
+        for (Constructor c : constructors) {
+            constructorSnapshots.add(c.snapshot());
         }
-        
-        // Implements
-        if (!implementsInterfaces.isEmpty() && !isInterface) {
-            sb.append(" implements ");
-            sb.append(String.join(", ", implementsInterfaces));
+        return new ClassSnapshot(className, packageName, fieldSnapshots, methodSnapshots, constructorSnapshots,
+                imports, isAbstract, isInterface, extendsClass, implementsInterfaces,
+                typeParameters, javadoc, annotations, preambleSpan, leadingSpan, headerSpan, bodySpan, otherMembers, defaultConstructor);
+    }
+
+    /**
+     * Creates a new, independently editable builder from a snapshot
+     */
+    public static JavaClassBuilder fromSnapshot(ClassSnapshot snapshot) {
+        JavaClassBuilder builder = new JavaClassBuilder(snapshot.className());
+        builder.packageName = snapshot.packageName();
+        for (FieldSnapshot f : snapshot.fields()) {
+            Field field = new Field(f.name(), f.type(), "");
+            field.setModifiers(f.modifiers());
+            field.setInitialValue(f.initialValue());
+            restoreSpan(field, f.span(), f.modified());
+            builder.fields.add(field);
         }
-        
-        sb.append(" {\n");
-        
-        // Fields
-        if (!fields.isEmpty()) {
-            for (Field field : fields) {
-                sb.append("    ").append(field.toJavaCode()).append("\n");
+        for (MethodSnapshot m : snapshot.methods()) {
+            Method method = new Method(m.name(), m.returnType(), "");
+            method.setModifiers(m.modifiers());
+            for (ParameterSnapshot p : m.parameters()) {
+                method.addParameter(new Parameter(p.name(), p.type(), p.isFinal()));
             }
-            sb.append("\n");
-        }
-        
-        // Constructors
-        if (!constructors.isEmpty()) {
-            for (Constructor constructor : constructors) {
-                sb.append("    ").append(constructor.toJavaCode().replace("\n", "\n    ")).append("\n\n");
+            if (m.body() == null) {
+                method.setBodySpan(m.bodySpan());
+            } else {
+                method.setBody(m.body());
             }
-        } else if (!isInterface && constructors.isEmpty()) {
-            // Default constructor if none provided
-            sb.append("    public ").append(className).append("() {\n    }\n\n");
+            restoreSpan(method, m.span(), m.modified());
+            builder.methods.add(method);
         }
-        
-        // Methods
-        if (!methods.isEmpty()) {
-            for (Method method : methods) {
-                sb.append("    ").append(method.toJavaCode().replace("\n", "\n    ")).append("\n\n");
+        for (ConstructorSnapshot c : snapshot.constructors()) {
+            Constructor constructor = new Constructor(c.name(), "");
+            constructor.setModifiers(c.modifiers());
+            for (ParameterSnapshot p : c.parameters()) {
+                constructor.addParameter(new Parameter(p.name(), p.type(), p.isFinal()));
             }
+            if (c.body() == null) {
+                constructor.setBodySpan(c.bodySpan());
+            } else {
+                constructor.setBody(c.body());
+            }
+            restoreSpan(constructor, c.span(), c.modified());
+            builder.constructors.add(constructor);
+        }
+        builder.imports.addAll(snapshot.imports());
+        builder.isAbstract = snapshot.isAbstract();
+        builder.isInterface = snapshot.isInterface();
+        builder.extendsClass = snapshot.extendsClass();
+        builder.implementsInterfaces.addAll(snapshot.implementsInterfaces());
+        builder.typeParameters = snapshot.typeParameters();
+        builder.javadoc = snapshot.javadoc();
+        builder.annotations.addAll(snapshot.annotations());
+        builder.preambleSpan = snapshot.preambleSpan();
+        builder.leadingSpan = snapshot.leadingSpan();
+        builder.headerSpan = snapshot.headerSpan();
+        builder.bodySpan = snapshot.bodySpan();
+        builder.otherMembers.addAll(snapshot.otherMembers());
+        builder.defaultConstructor = snapshot.defaultConstructor();
+        return builder;
+    }
+
+    private static void restoreSpan(ClassElement element, SourceSpan span, boolean modified) {
+        element.setSpan(span);
+        if (modified) {
+            element.markModified();
+        }
+    }
+
+    public JavaClassBuilder clone() {
+        return fromSnapshot(snapshot());
+    }
+
+    public String buildClass() {
+        long start = System.nanoTime();
+        BuildEvent event = new BuildEvent();
+        event.begin();
+        event.className = className;
+        event.fields = fields.size();
+        event.methods = methods.size();
+        event.constructors = constructors.size();
+        try {
+            String code = snapshot().toJavaCode();
+            event.outputChars = code.length();
+            event.ok();
+            return code;
+        } catch (RuntimeException e) {
+            event.failed(e);
+            throw e;
+        } finally {
+            Metrics.BUILD.recordSince(start);
         }
-        
-        sb.append("}");
-        
-        return sb.toString();
     }
 }
\ No newline at end of file
@@ -1,104 +1,806 @@
 package builder;
 
+import model.Constructor;
 import model.Field;
 import model.Method;
+import model.Modifiers;
+import model.Parameter;
+import model.SourceSpan;
+import event.ScanEvent;
 import exception.InvalidNameException;
+import exception.ScanLimitException;
+import util.Metrics;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Scans Java source into a JavaClassBuilder. Every member keeps a span into the
+ * original source instead of a copy of its text, so members that are not edited
+ * are written back exactly as they were.
+ */
 public class JavaClassScan {
 
+    /**
+     * Longest source, in chars, that is scanned at all
+     */
+    public static final int MAX_SOURCE_CHARS = 8 * 1024 * 1024;
+    /**
+     * Time one scan may take before it is abandoned, so a single pathological file
+     * cannot stall a batch of thousands
+     */
+    public static final long TIME_BUDGET_MILLIS = 2000;
+
+    // Compiled once, the first time a class is scanned. All patterns are matched
+    // against a single declaration header, never against a whole file. Names,
+    // whitespace runs and the throws clause are matched possessively, and no two
+    // adjacent parts can match the same whitespace, so a header that does not
+    // match fails in linear time instead of backtracking through every way to
+    // split its whitespace.
+    private static final String TYPE_LIST = "[\\w.$<>,]++(?:\\s++(?!implements\\b)[\\w.$<>,]++)*+";
+    private static final String THROWS = "(?:throws\\s++[\\w.$]++(?:\\s*+,\\s*+[\\w.$]++)*+\\s*+)?";
+
+    private static final Pattern CLASS_PATTERN = Pattern.compile(
+            "(?s)((?:(?:public|protected|private|abstract|final|static|strictfp)\\s++)*+)(interface|class)\\s++(\\w++)"
+                    + "(?:\\s*+(<[^{]*?>))?(?:\\s++extends\\s++(" + TYPE_LIST + "))?(?:\\s++implements\\s++(" + TYPE_LIST + "))?\\s*+");
+
+    private static final Pattern FIELD_PATTERN = Pattern.compile(
+            "(?s)((?:(?:public|protected|private|static|final|transient|volatile)\\s++)*+)"
+                    + "([\\w.$]++(?:\\s*+<[^;{}()=]*>)?(?:\\s*+\\[\\s*+\\])*+)\\s++(\\w++)\\s*+(?:=(.*))?;");
+
+    private static final Pattern METHOD_PATTERN = Pattern.compile(
+            "(?s)((?:(?:public|protected|private|static|abstract|final|synchronized|native|default|strictfp)(?:\\s++|(?=<)))*+)"
+                    + "(?:<[^>]*+>\\s*+)?([\\w.$]++(?:\\s*+<[^;{}()]*>)?(?:\\s*+\\[\\s*+\\])*+)\\s++(\\w++)\\s*+\\(([^)]*+)\\)"
+                    + "\\s*+" + THROWS + "[{;]");
+
+    private static final Pattern CONSTRUCTOR_PATTERN = Pattern.compile(
+            "(?s)((?:(?:public|protected|private)(?:\\s++|(?=<)))?+)(?:<[^>]*+>\\s*+)?(\\w++)\\s*+\\(([^)]*+)\\)"
+                    + "\\s*+" + THROWS + "\\{");
+
+    private static final Pattern PARAMETER_PATTERN = Pattern.compile(
+            "(final\\s++)?([\\w.$]++(?:\\s*+<.*>)?(?:\\s*+\\[\\s*+\\])*+(?:\\.\\.\\.)?)\\s++(\\w++)");
+
+    /**
+     * @throws ScanLimitException If the source is longer than MAX_SOURCE_CHARS or
+     *                            scanning it takes longer than TIME_BUDGET_MILLIS
+     */
     public static JavaClassBuilder scan(String source) throws InvalidNameException {
-        String[] lines = source.split("\\r?\\n");
-
-        String className = null;
-        boolean isAbstract = false;
-        boolean isInterface = false;
-        String extendsClass = null;
-        List<String> implementsInterfaces = new ArrayList<>();
-
-        List<Field> fields = new ArrayList<>();
-        List<Method> methods = new ArrayList<>();
-
-        // Regex patterns
-        Pattern classPattern = Pattern.compile(
-                "\\s*(public\\s+)?(abstract\\s+)?(interface|class)\\s+(\\w+)(\\s+extends\\s+(\\w+))?(\\s+implements\\s+([\\w,\\s]+))?\\s*\\{?");
-
-        Pattern fieldPattern = Pattern.compile(
-                "\\s*(public|protected|private)?\\s*(static\\s+)?(final\\s+)?([\\w<>\\[\\]]+)\\s+(\\w+)\\s*(=\\s*[^;]+)?;");
-
-        Pattern methodPattern = Pattern.compile(
-                "\\s*(public|protected|private)?\\s*(static\\s+)?(abstract\\s+)?([\\w<>\\[\\]]+)\\s+(\\w+)\\s*\\(([^)]*)\\)\\s*(\\{|;).*");
-
-        for (String line : lines) {
-            line = line.trim();
-
-            // Parse class declaration
-            if (className == null) {
-                Matcher cm = classPattern.matcher(line);
-                if (cm.find()) {
-                    isAbstract = cm.group(2) != null && cm.group(2).contains("abstract");
-                    isInterface = "interface".equals(cm.group(3));
-                    className = cm.group(4);
-                    extendsClass = cm.group(6);
-                    if (cm.group(8) != null) {
-                        String[] impls = cm.group(8).split(",");
-                        for (String impl : impls) {
-                            implementsInterfaces.add(impl.trim());
-                        }
-                    }
-                    continue;
-                }
+        long start = System.nanoTime();
+        ScanEvent event = new ScanEvent();
+        event.begin();
+        try {
+            JavaClassBuilder builder;
+            try {
+                builder = parse(new TimedSource(source, start));
+            } catch (TimeUp e) {
+                throw timedOut();
             }
+            describe(event, builder, source);
+            return builder;
+        } catch (InvalidNameException | RuntimeException e) {
+            event.sourceChars = source.length();
+            event.failed(e);
+            throw e;
+        } finally {
+            Metrics.SCAN.recordSince(start);
+        }
+    }
+
+    /**
+     * Throws if a source of this many chars is too long to scan
+     */
+    public static void checkSize(long chars) throws ScanLimitException {
+        if (chars > MAX_SOURCE_CHARS) {
+            Metrics.SCANS_ABORTED.increment();
+            throw new ScanLimitException("Source of " + chars + " chars is longer than the scan limit of "
+                    + MAX_SOURCE_CHARS);
+        }
+    }
+
+    private static ScanLimitException timedOut() {
+        Metrics.SCANS_ABORTED.increment();
+        return new ScanLimitException("Scanning took longer than " + TIME_BUDGET_MILLIS + " ms");
+    }
 
-            // Parse fields
-            Matcher fm = fieldPattern.matcher(line);
-            if (fm.find()) {
-                String visibility = fm.group(1) == null ? "" : fm.group(1);
-                String type = fm.group(4);
-                String name = fm.group(5);
+    private static JavaClassBuilder parse(TimedSource text) throws InvalidNameException {
+        String source = text.source;
+        int end = source.length();
+        String packageName = "";
+        List<String> imports = new ArrayList<>();
 
-                Field field = new Field(name, type, visibility);
-                fields.add(field);
+        // Package, imports, then the type declaration
+        int pos = 0;
+        Matcher header = null;
+        int headerStart = -1;
+        int firstStatement = -1;
+        int bodyOpen = -1;
+        while (pos < end) {
+            int triviaStart = SourceLexer.skipWhitespace(source, pos, end);
+            int p = SourceLexer.skipTrivia(source, pos, end);
+            if (p >= end) {
+                break;
+            }
+            if (SourceLexer.startsWithWord(source, p, end, "package") || SourceLexer.startsWithWord(source, p, end, "import")) {
+                int semicolon = indexOf(source, ';', p, end);
+                if (semicolon < 0) {
+                    break;
+                }
+                if (firstStatement < 0) {
+                    firstStatement = p;
+                }
+                boolean isPackage = source.charAt(p) == 'p';
+                String name = source.substring(p + (isPackage ? 7 : 6), semicolon).trim();
+                if (isPackage) {
+                    packageName = name;
+                } else {
+                    imports.add(name);
+                }
+                pos = semicolon + 1;
                 continue;
             }
-
-            // Parse methods (signature only)
-            Matcher mm = methodPattern.matcher(line);
-            if (mm.find()) {
-                String visibility = mm.group(1) == null ? "" : mm.group(1);
-                boolean isStatic = mm.group(2) != null && mm.group(2).contains("static");
-                boolean isAbstractMethod = mm.group(3) != null && mm.group(3).contains("abstract");
-                String returnType = mm.group(4);
-                String methodName = mm.group(5);
-                // Parameters parsing omitted for brevity; can be added later
-
-                Method method = new Method(methodName, returnType, visibility);
-                method.setStatic(isStatic);
-                method.setAbstract(isAbstractMethod);
-                methods.add(method);
+            bodyOpen = findBlockOrStatementEnd(source, p, end);
+            if (bodyOpen < 0 || source.charAt(bodyOpen) != '{') {
+                break;
+            }
+            Matcher m = CLASS_PATTERN.matcher(text).region(p, bodyOpen);
+            if (m.matches()) {
+                header = m;
+                headerStart = triviaStart;
+                break;
+            }
+            // Something we do not model before the class (e.g. a second type); skip it
+            int close = SourceLexer.findMatching(source, bodyOpen, end);
+            if (close < 0) {
+                break;
             }
+            pos = close + 1;
         }
 
-        if (className == null) {
+        if (header == null) {
             throw new InvalidNameException("Could not find class or interface declaration");
         }
 
+        String modifiers = header.group(1);
+        boolean isInterface = "interface".equals(header.group(2));
+        String className = header.group(3);
+
         JavaClassBuilder builder = new JavaClassBuilder(className);
-        builder.setAbstract(isAbstract);
+        builder.setPackageName(packageName);
+        for (String importStmt : imports) {
+            builder.addImport(importStmt);
+        }
+        builder.setAbstract(hasModifier(modifiers, "abstract"));
         builder.setInterface(isInterface);
-        builder.setExtendsClass(extendsClass);
-        for (String impl : implementsInterfaces) {
-            builder.addImplementsInterface(impl);
+        if (header.group(4) != null) {
+            builder.setTypeParameters(header.group(4));
+        }
+        if (header.group(5) != null) {
+            builder.setExtendsClass(header.group(5).trim());
+        }
+        if (header.group(6) != null) {
+            for (String impl : splitTopLevel(header.group(6))) {
+                builder.addImplementsInterface(impl);
+            }
         }
+        int declarationStart = header.regionStart();
+        readHeaderTrivia(source, headerStart, declarationStart, builder);
+        builder.setDefaultConstructor(false);
+        // Set after the package and imports, which would clear it
+        builder.setPreambleSpan(new SourceSpan(source, 0, headerStart, 0));
+        if (firstStatement > 0 && SourceLexer.skipWhitespace(source, 0, firstStatement) < firstStatement) {
+            builder.setLeadingSpan(new SourceSpan(source, 0, firstStatement, 0));
+        }
+        int headerEnd = trimEnd(source, headerStart, bodyOpen);
+        builder.setHeaderSpan(new SourceSpan(source, headerStart, headerEnd, SourceLexer.indentOf(source, headerStart), declarationStart));
 
-        // Add parsed fields and methods
-        for (Field f : fields) builder.addField(f);
-        for (Method m : methods) builder.addMethod(m);
+        int classClose = SourceLexer.findMatching(source, bodyOpen, end);
+        if (classClose >= 0) {
+            builder.setBodySpan(new SourceSpan(source, bodyOpen + 1, classClose, 0));
+        }
+        scanMembers(text, bodyOpen + 1, classClose < 0 ? end : classClose, builder);
+        return builder;
+    }
 
+    /**
+     * Reads the comments and annotations between start and the declaration into the
+     * builder, so a regenerated header keeps them. Comments after the first
+     * annotation are not kept.
+     */
+    private static void readHeaderTrivia(String source, int start, int declarationStart, JavaClassBuilder builder) {
+        int indent = SourceLexer.indentOf(source, start);
+        int commentsEnd = start;
+        boolean annotated = false;
+        int pos = start;
+        while (pos < declarationStart) {
+            int p = SourceLexer.skipWhitespace(source, pos, declarationStart);
+            int next = SourceLexer.skipComment(source, p, declarationStart);
+            if (next > p) {
+                if (!annotated) {
+                    commentsEnd = next;
+                }
+            } else {
+                next = SourceLexer.skipAnnotation(source, p, declarationStart);
+                if (next == p) {
+                    break;
+                }
+                annotated = true;
+                builder.addAnnotation(new SourceSpan(source, p, next, indent).text());
+            }
+            pos = next;
+        }
+        builder.setJavadoc(new SourceSpan(source, start, commentsEnd, indent).text().stripTrailing());
+    }
+
+    /**
+     * Re-parses a class after a single edit to its source, scanning only the members
+     * the edit touches. All other members are moved into the new source by shifting
+     * their spans, without being parsed again. Falls back to a full scan whenever the
+     * edit reaches the class declaration or its braces, or could change how the
+     * surrounding members are read (an opened comment or text block, an unbalanced
+     * brace). The result is the same as scan(newSource).
+     *
+     * @param previous The result of an earlier scan or rescan, not edited since. Its
+     *                 elements are moved into the returned builder, so it must not be
+     *                 used afterwards.
+     * @param newSource The source after the edit
+     * @param edit The edit, with offsets into the source previous was scanned from
+     * @throws ScanLimitException If the new source is over the limits scan enforces
+     */
+    public static JavaClassBuilder rescan(JavaClassBuilder previous, String newSource, TextEdit edit)
+            throws InvalidNameException {
+        long start = System.nanoTime();
+        ScanEvent event = new ScanEvent();
+        event.begin();
+        try {
+            JavaClassBuilder builder;
+            try {
+                builder = reparse(previous, new TimedSource(newSource, start), edit, event);
+            } catch (TimeUp e) {
+                throw timedOut();
+            }
+            describe(event, builder, newSource);
+            return builder;
+        } catch (InvalidNameException | RuntimeException e) {
+            event.sourceChars = newSource.length();
+            event.failed(e);
+            throw e;
+        } finally {
+            Metrics.SCAN.recordSince(start);
+        }
+    }
+
+    private static void describe(ScanEvent event, JavaClassBuilder builder, String source) {
+        event.className = builder.getClassName();
+        event.fields = builder.getFields().size();
+        event.methods = builder.getMethods().size();
+        event.constructors = builder.getConstructors().size();
+        event.sourceChars = source.length();
+        event.ok();
+    }
+
+    private static JavaClassBuilder reparse(JavaClassBuilder previous, TimedSource text, TextEdit edit, ScanEvent event)
+            throws InvalidNameException {
+        String newSource = text.source;
+        SourceSpan header = previous.getHeaderSpan();
+        SourceSpan body = previous.getBodySpan();
+        List<Placed> members = placedMembers(previous);
+        int editStart = edit.offset();
+        int editEnd = edit.offset() + edit.removedLength();
+        if (header == null || body == null || members == null
+                || editStart < body.getStart() || editEnd > body.getEnd()
+                || mayOpenCommentOrLiteral(header.getSource(), editStart, editEnd)
+                || mayOpenCommentOrLiteral(newSource, editStart, editStart + edit.insertedText().length())) {
+            return parse(text);
+        }
+        CharSequence oldSource = header.getSource();
+        int delta = edit.delta();
+
+        // The first affected member ends at or after the edit, or is followed by it on
+        // the same line (the edit may add a trailing comment to it)
+        int first = 0;
+        while (first < members.size() && members.get(first).span().getEnd() < editStart) {
+            first++;
+        }
+        if (first > 0 && !containsNewline(oldSource, members.get(first - 1).span().getEnd(), editStart)) {
+            first--;
+        }
+        // The last affected member ends at or after the end of the edit; if the edit is
+        // in the gap before it, it may have changed its leading comments
+        int last = first;
+        while (last < members.size() && members.get(last).span().getEnd() < editEnd) {
+            last++;
+        }
+        int regionStart = first > 0 ? members.get(first - 1).span().getEnd() : body.getStart();
+        int after = Math.min(last + 1, members.size());
+        int regionEnd = (after < members.size() ? members.get(after).span().getStart() : body.getEnd()) + delta;
+        // The region must not change where the class ends, and a comment added on its
+        // last line must not reach into the member after it
+        int depth = regionEnd < regionStart ? Integer.MIN_VALUE : braceDepth(newSource, regionStart, regionEnd);
+        if (depth == Integer.MIN_VALUE || depth != braceDepth(oldSource, regionStart, regionEnd - delta)
+                || !startsLine(newSource, regionEnd)) {
+            return parse(text);
+        }
+
+        JavaClassBuilder region = new JavaClassBuilder(previous.getClassName());
+        region.setInterface(previous.isInterface());
+        int scannedEnd = scanMembers(text, regionStart, regionEnd, region);
+        // Comments left at the end of the region would belong to the next member
+        if (scannedEnd < 0 || (after < members.size() && SourceLexer.skipWhitespace(newSource, scannedEnd, regionEnd) < regionEnd)) {
+            return parse(text);
+        }
+
+        JavaClassBuilder builder = new JavaClassBuilder(previous.getClassName());
+        builder.setPackageName(previous.getPackageName());
+        for (String importStmt : previous.getImports()) {
+            builder.addImport(importStmt);
+        }
+        builder.setAbstract(previous.isAbstract());
+        builder.setInterface(previous.isInterface());
+        builder.setExtendsClass(previous.getExtendsClass());
+        for (String impl : previous.getImplementsInterfaces()) {
+            builder.addImplementsInterface(impl);
+        }
+        builder.setTypeParameters(previous.getTypeParameters());
+        builder.setJavadoc(previous.getJavadoc());
+        for (String annotation : previous.getAnnotations()) {
+            builder.addAnnotation(annotation);
+        }
+        builder.setDefaultConstructor(false);
+        if (previous.getPreambleSpan() != null) {
+            builder.setPreambleSpan(previous.getPreambleSpan().shift(newSource, 0));
+        }
+        if (previous.getLeadingSpan() != null) {
+            builder.setLeadingSpan(previous.getLeadingSpan().shift(newSource, 0));
+        }
+        builder.setHeaderSpan(header.shift(newSource, 0));
+        builder.setBodySpan(new SourceSpan(newSource, body.getStart(), body.getEnd() + delta, 0));
+
+        for (int i = 0; i < first; i++) {
+            moveInto(builder, members.get(i).element(), newSource, 0);
+        }
+        List<Placed> rescanned = placedMembers(region);
+        for (Placed member : rescanned) {
+            moveInto(builder, member.element(), newSource, 0);
+        }
+        for (int i = after; i < members.size(); i++) {
+            moveInto(builder, members.get(i).element(), newSource, delta);
+        }
+        event.incremental = true;
         return builder;
     }
+
+    /**
+     * Convenience overload for callers that hold the edit rather than the new text
+     */
+    public static JavaClassBuilder rescan(JavaClassBuilder previous, TextEdit edit) throws InvalidNameException {
+        SourceSpan header = previous.getHeaderSpan();
+        if (header == null) {
+            throw new InvalidNameException("Class was not scanned from source");
+        }
+        return rescan(previous, edit.apply(header.getSource().toString()), edit);
+    }
+
+    /**
+     * The source as the patterns read it. Reads past the deadline abort the scan
+     * with TimeUp; the clock is only consulted every few thousand chars.
+     */
+    private static final class TimedSource implements CharSequence {
+        private final String source;
+        private final long deadline;
+        private int reads;
+
+        TimedSource(String source, long start) throws ScanLimitException {
+            checkSize(source.length());
+            this.source = source;
+            this.deadline = start + TIME_BUDGET_MILLIS * 1_000_000;
+        }
+
+        void checkDeadline() {
+            if (System.nanoTime() - deadline > 0) {
+                throw new TimeUp();
+            }
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((++reads & 0xFFF) == 0) {
+                checkDeadline();
+            }
+            return source.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return source.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return source.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return source;
+        }
+    }
+
+    // Unwinds a scan that ran out of time; turned into a ScanLimitException by scan and rescan
+    private static final class TimeUp extends RuntimeException {
+        TimeUp() {
+            super(null, null, false, false);
+        }
+    }
+
+    // A member of a scanned class: a Field, Method, Constructor or an unmodelled SourceSpan
+    private record Placed(SourceSpan span, Object element) {
+    }
+
+    /**
+     * Returns every member of the builder in source order, or null if any of them was
+     * edited or added after the scan and so has no trustworthy position
+     */
+    private static List<Placed> placedMembers(JavaClassBuilder builder) {
+        List<Placed> members = new ArrayList<>();
+        for (Field field : builder.getFields()) {
+            if (field.getSpan() == null || field.isModified()) {
+                return null;
+            }
+            members.add(new Placed(field.getSpan(), field));
+        }
+        for (Constructor constructor : builder.getConstructors()) {
+            if (constructor.getSpan() == null || constructor.isModified()) {
+                return null;
+            }
+            members.add(new Placed(constructor.getSpan(), constructor));
+        }
+        for (Method method : builder.getMethods()) {
+            if (method.getSpan() == null || method.isModified()) {
+                return null;
+            }
+            members.add(new Placed(method.getSpan(), method));
+        }
+        for (SourceSpan other : builder.getOtherMembers()) {
+            members.add(new Placed(other, other));
+        }
+        members.sort((a, b) -> Integer.compare(a.span().getStart(), b.span().getStart()));
+        return members;
+    }
+
+    private static void moveInto(JavaClassBuilder builder, Object element, CharSequence newSource, int delta) {
+        if (element instanceof Field field) {
+            field.setSpan(field.getSpan().shift(newSource, delta));
+            builder.addField(field);
+        } else if (element instanceof Constructor constructor) {
+            if (constructor.getBodySpan() != null) {
+                constructor.setBodySpan(constructor.getBodySpan().shift(newSource, delta));
+            }
+            constructor.setSpan(constructor.getSpan().shift(newSource, delta));
+            builder.addConstructor(constructor);
+        } else if (element instanceof Method method) {
+            if (method.getBodySpan() != null) {
+                method.setBodySpan(method.getBodySpan().shift(newSource, delta));
+            }
+            method.setSpan(method.getSpan().shift(newSource, delta));
+            builder.addMethod(method);
+        } else {
+            builder.addOtherMember(((SourceSpan) element).shift(newSource, delta));
+        }
+    }
+
+    /**
+     * True if the text around [start, end) contains a comment or text block delimiter,
+     * which could change how everything after it is read
+     */
+    private static boolean mayOpenCommentOrLiteral(CharSequence source, int start, int end) {
+        int from = Math.max(0, start - 2);
+        int to = Math.min(source.length(), end + 2);
+        for (int i = from; i + 1 < to; i++) {
+            char c = source.charAt(i);
+            char next = source.charAt(i + 1);
+            if ((c == '/' && next == '*') || (c == '*' && next == '/')
+                    || (c == '"' && next == '"' && i + 2 < to && source.charAt(i + 2) == '"')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsLine(CharSequence source, int pos) {
+        int lineStart = SourceLexer.lineStart(source, pos);
+        return lineStart > 0 && SourceLexer.skipWhitespace(source, lineStart, pos) == pos;
+    }
+
+    /**
+     * Returns how many braces [start, end) leaves open, outside comments and literals,
+     * or Integer.MIN_VALUE if it closes one opened before start
+     */
+    private static int braceDepth(CharSequence source, int start, int end) {
+        int depth = 0;
+        int i = start;
+        while (i < end) {
+            int skipped = SourceLexer.skipComment(source, i, end);
+            if (skipped == i) {
+                skipped = SourceLexer.skipLiteral(source, i, end);
+            }
+            if (skipped != i) {
+                i = skipped;
+                continue;
+            }
+            char c = source.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth < 0) {
+                return Integer.MIN_VALUE;
+            }
+            i++;
+        }
+        return depth;
+    }
+
+    private static boolean containsNewline(CharSequence source, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (source.charAt(i) == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scans the members between start and end and adds them to the builder. Returns
+     * the offset after the last whole member, or -1 if a member runs past end, i.e.
+     * the region does not hold whole members.
+     */
+    private static int scanMembers(TimedSource text, int start, int end, JavaClassBuilder builder) {
+        String source = text.source;
+        int pos = start;
+        int lastMemberEnd = start;
+        while (pos < end) {
+            text.checkDeadline();
+            int memberStart = SourceLexer.skipWhitespace(source, pos, end);
+            int p = SourceLexer.skipTrivia(source, memberStart, end);
+            if (p >= end) {
+                // Trailing comments before the closing brace
+                if (memberStart < end) {
+                    int trimmed = trimEnd(source, memberStart, end);
+                    builder.addOtherMember(new SourceSpan(source, memberStart, trimmed, SourceLexer.indentOf(source, memberStart)));
+                }
+                break;
+            }
+            if (source.charAt(p) == ';') {
+                pos = p + 1;
+                continue;
+            }
+            int headerEnd = findBlockOrStatementEnd(source, p, end);
+            if (headerEnd < 0) {
+                return -1;
+            }
+            int blockClose = -1;
+            int memberEnd;
+            if (source.charAt(headerEnd) == '{') {
+                blockClose = SourceLexer.findMatching(source, headerEnd, end);
+                if (blockClose < 0) {
+                    builder.addOtherMember(new SourceSpan(source, memberStart, end, SourceLexer.indentOf(source, memberStart)));
+                    return -1;
+                }
+                memberEnd = blockClose + 1;
+            } else {
+                memberEnd = headerEnd + 1;
+            }
+            int spanEnd = includeTrailingComment(source, memberEnd, end);
+            SourceSpan span = new SourceSpan(source, memberStart, spanEnd, SourceLexer.indentOf(source, memberStart), p);
+            addMember(text, p, headerEnd, blockClose, memberEnd, span, builder);
+            pos = spanEnd;
+            lastMemberEnd = spanEnd;
+        }
+        return lastMemberEnd;
+    }
+
+    private static void addMember(TimedSource text, int p, int headerEnd, int blockClose, int memberEnd,
+                                  SourceSpan span, JavaClassBuilder builder) {
+        String source = text.source;
+        if (blockClose < 0 && source.charAt(headerEnd) == ';') {
+            Matcher fm = FIELD_PATTERN.matcher(text).region(p, memberEnd);
+            if (fm.matches()) {
+                Field field = new Field(fm.group(3), fm.group(2), "");
+                field.setModifiers(Modifiers.parse(fm.group(1)));
+                if (fm.group(4) != null) {
+                    field.setInitialValue(fm.group(4).trim());
+                }
+                field.setSpan(span);
+                builder.addField(field);
+                return;
+            }
+        }
+
+        if (blockClose >= 0) {
+            Matcher cm = CONSTRUCTOR_PATTERN.matcher(text).region(p, headerEnd + 1);
+            if (cm.matches() && cm.group(2).equals(builder.getClassName())) {
+                List<Parameter> parameters = parseParameters(cm.group(3));
+                if (parameters != null) {
+                    Constructor constructor = new Constructor(cm.group(2), "");
+                    constructor.setModifiers(Modifiers.parse(cm.group(1)));
+                    for (Parameter parameter : parameters) {
+                        constructor.addParameter(parameter);
+                    }
+                    constructor.setBodySpan(bodySpan(source, headerEnd, blockClose));
+                    constructor.setSpan(span);
+                    builder.addConstructor(constructor);
+                    return;
+                }
+            }
+        }
+
+        Matcher mm = METHOD_PATTERN.matcher(text).region(p, headerEnd + 1);
+        // "record" cannot name a type, so this is a nested record, not a method
+        if (mm.matches() && !mm.group(2).equals("record")) {
+            List<Parameter> parameters = parseParameters(mm.group(4));
+            if (parameters != null) {
+                String modifiers = mm.group(1);
+                Method method = new Method(mm.group(3), mm.group(2), "");
+                method.setModifiers(Modifiers.parse(modifiers));
+                // Interface methods without a body are implicitly abstract
+                boolean bodyless = blockClose < 0;
+                if (bodyless && builder.isInterface() && !hasModifier(modifiers, "native")) {
+                    method.setAbstract(true);
+                }
+                for (Parameter parameter : parameters) {
+                    method.addParameter(parameter);
+                }
+                if (!bodyless) {
+                    method.setBodySpan(bodySpan(source, headerEnd, blockClose));
+                }
+                method.setSpan(span);
+                builder.addMethod(method);
+                return;
+            }
+        }
+
+        // Initializers, nested types, multi-variable fields, ...
+        builder.addOtherMember(span);
+    }
+
+    /**
+     * Returns the offset of the '{' opening a block declaration or of the ';' ending a
+     * statement, whichever comes first outside parentheses, comments and literals.
+     * A '{' after an '=' belongs to an initializer and does not end the header.
+     */
+    private static int findBlockOrStatementEnd(String source, int pos, int end) {
+        int parenDepth = 0;
+        boolean afterEquals = false;
+        int i = pos;
+        while (i < end) {
+            int skipped = SourceLexer.skipComment(source, i, end);
+            if (skipped == i) {
+                skipped = SourceLexer.skipLiteral(source, i, end);
+            }
+            if (skipped != i) {
+                i = skipped;
+                continue;
+            }
+            char c = source.charAt(i);
+            if (c == '(') {
+                parenDepth++;
+            } else if (c == ')') {
+                parenDepth--;
+            } else if (parenDepth == 0) {
+                if (c == '=') {
+                    afterEquals = true;
+                } else if (c == ';') {
+                    return i;
+                } else if (c == '{') {
+                    if (!afterEquals) {
+                        return i;
+                    }
+                    int close = SourceLexer.findMatching(source, i, end);
+                    if (close < 0) {
+                        return -1;
+                    }
+                    i = close;
+                } else if (c == '}') {
+                    return -1;
+                }
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Extends a member to the end of its line if only a // comment follows it there
+     */
+    private static int includeTrailingComment(String source, int memberEnd, int end) {
+        int i = memberEnd;
+        while (i < end && (source.charAt(i) == ' ' || source.charAt(i) == '\t')) {
+            i++;
+        }
+        if (i + 1 < end && source.charAt(i) == '/' && source.charAt(i + 1) == '/') {
+            return trimEnd(source, memberEnd, SourceLexer.lineEnd(source, i, end));
+        }
+        return memberEnd;
+    }
+
+    /**
+     * Returns the span of a block body without its braces and surrounding blank space,
+     * or null for an empty body
+     */
+    private static SourceSpan bodySpan(String source, int open, int close) {
+        int start = SourceLexer.skipWhitespace(source, open + 1, close);
+        int end = trimEnd(source, start, close);
+        if (start >= end) {
+            return null;
+        }
+        return new SourceSpan(source, start, end, SourceLexer.indentOf(source, start));
+    }
+
+    private static List<Parameter> parseParameters(String parameterList) {
+        List<Parameter> parameters = new ArrayList<>();
+        if (parameterList.isBlank()) {
+            return parameters;
+        }
+        for (String declaration : splitTopLevel(parameterList)) {
+            Matcher pm = PARAMETER_PATTERN.matcher(declaration);
+            if (!pm.matches()) {
+                return null;
+            }
+            parameters.add(new Parameter(pm.group(3), pm.group(2), pm.group(1) != null));
+        }
+        return parameters;
+    }
+
+    /**
+     * Splits a comma separated list, ignoring commas inside generic arguments
+     */
+    static List<String> splitTopLevel(String list) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int partStart = 0;
+        for (int i = 0; i < list.length(); i++) {
+            char c = list.charAt(i);
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                addTrimmed(parts, list.substring(partStart, i));
+                partStart = i + 1;
+            }
+        }
+        addTrimmed(parts, list.substring(partStart));
+        return parts;
+    }
+
+    private static void addTrimmed(List<String> parts, String part) {
+        String trimmed = part.trim();
+        if (!trimmed.isEmpty()) {
+            parts.add(trimmed);
+        }
+    }
+
+    private static boolean hasModifier(String modifiers, String modifier) {
+        if (modifiers == null) {
+            return false;
+        }
+        for (String token : modifiers.trim().split("\\s+")) {
+            if (token.equals(modifier)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int indexOf(String source, char c, int from, int end) {
+        int i = source.indexOf(c, from);
+        return i < end ? i : -1;
+    }
+
+    private static int trimEnd(String source, int start, int end) {
+        while (end > start && Character.isWhitespace(source.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
 }
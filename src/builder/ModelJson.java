@@ -0,0 +1,548 @@
+package builder;
+
+import exception.InvalidNameException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import model.ClassElement;
+import model.ClassSnapshot;
+import model.Constructor;
+import model.Field;
+import model.Method;
+import model.Modifiers;
+import model.Parameter;
+import model.SourceSpan;
+import util.JsonReader;
+import util.JsonWriter;
+import util.ValidationUtils;
+
+/**
+ * Exchanges class models as JSON, so other tools can produce or consume class
+ * definitions without going through Java source. Both directions stream: a
+ * ModelJson.Writer puts each model straight into an array on the Writer, and
+ * readAll hands each model to a sink as soon as its object has been read.
+ *
+ * A file is an array of class objects (a single object is accepted as well):
+ * <pre>
+ * {"name": "Order", "package": "com.acme", "abstract": false, "interface": false,
+ *  "typeParameters": "&lt;T&gt;", "javadoc": "/** An order *\/", "annotations": ["@Deprecated"],
+ *  "extends": "Base", "implements": ["Serializable"], "imports": ["java.util.List"],
+ *  "defaultConstructor": true,
+ *  "members": [{"kind": "field", "name": "id", "type": "long", "visibility": "private",
+ *               "static": false, "final": false, "abstract": false, "initialValue": "0",
+ *               "leadingText": "// Database key\n@Id\n"},
+ *              {"kind": "constructor", "visibility": "public", ..., "parameters": [...], "body": "..."},
+ *              {"kind": "method", "name": "total", "returnType": "int", "visibility": "public",
+ *               "static": false, "final": false, "abstract": false,
+ *               "parameters": [{"name": "x", "type": "int", "final": false}], "body": "return x;"},
+ *              {"kind": "other", "source": "enum Status { OPEN }"}]}
+ * </pre>
+ * Members are listed in source order, each with a boolean for every modifier
+ * in Modifiers.KEYWORDS, and leadingText holds its comments and annotations.
+ * A class without "javadoc" gets one naming it; "" means none. The separate
+ * "fields", "constructors", "methods" and "otherMembers" arrays of older files
+ * are still read, in that order.
+ * Absent keys take the builder's defaults and unknown keys are ignored. Names
+ * must be legal identifiers, and types and visibilities are validated; naming
+ * conventions are not enforced, so every model the scanner produces reads back.
+ */
+public final class ModelJson {
+    private ModelJson() {
+    }
+
+    /**
+     * Writes models into one JSON array; close() ends the array and the document
+     */
+    public static final class Writer implements AutoCloseable {
+        private final JsonWriter json;
+        private int count;
+
+        public Writer(java.io.Writer out, boolean pretty) throws IOException {
+            this.json = new JsonWriter(out, pretty);
+            json.beginArray();
+        }
+
+        public void write(JavaClassBuilder model) throws IOException {
+            ModelJson.write(model, json);
+            count++;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            json.endArray();
+            json.close();
+        }
+    }
+
+    /**
+     * Writes one model as a JSON object
+     */
+    public static void write(JavaClassBuilder model, JsonWriter json) throws IOException {
+        json.beginObject();
+        json.name("name").value(model.getClassName());
+        if (model.getPackageName() != null && !model.getPackageName().isEmpty()) {
+            json.name("package").value(model.getPackageName());
+        }
+        json.name("abstract").value(model.isAbstract());
+        json.name("interface").value(model.isInterface());
+        if (!model.getTypeParameters().isEmpty()) {
+            json.name("typeParameters").value(model.getTypeParameters());
+        }
+        if (model.getJavadoc() != null) {
+            json.name("javadoc").value(model.getJavadoc());
+        }
+        writeStrings(json, "annotations", model.getAnnotations());
+        if (model.getExtendsClass() != null) {
+            json.name("extends").value(model.getExtendsClass());
+        }
+        writeStrings(json, "implements", model.getImplementsInterfaces());
+        writeStrings(json, "imports", model.getImports());
+        json.name("defaultConstructor").value(model.hasDefaultConstructor());
+
+        json.name("members").beginArray();
+        for (ClassSnapshot.MemberRef member : model.snapshot().memberOrder()) {
+            json.beginObject();
+            switch (member.kind()) {
+                case FIELD:
+                    Field field = model.getFields().get(member.index());
+                    json.name("kind").value("field");
+                    json.name("name").value(field.getName());
+                    json.name("type").value(field.getType());
+                    writeModifiers(json, field);
+                    if (field.getInitialValue() != null) {
+                        json.name("initialValue").value(field.getInitialValue());
+                    }
+                    writeLeadingText(json, field);
+                    break;
+                case CONSTRUCTOR:
+                    Constructor constructor = model.getConstructors().get(member.index());
+                    json.name("kind").value("constructor");
+                    writeModifiers(json, constructor);
+                    writeParameters(json, constructor.getParameters());
+                    json.name("body").value(body(constructor.getBodySpan(), constructor.getBody()));
+                    writeLeadingText(json, constructor);
+                    break;
+                case METHOD:
+                    Method method = model.getMethods().get(member.index());
+                    json.name("kind").value("method");
+                    json.name("name").value(method.getName());
+                    json.name("returnType").value(method.getReturnType());
+                    writeModifiers(json, method);
+                    writeParameters(json, method.getParameters());
+                    json.name("body").value(body(method.getBodySpan(), method.getBody()));
+                    writeLeadingText(json, method);
+                    break;
+                default:
+                    json.name("kind").value("other");
+                    json.name("source").value(model.getOtherMembers().get(member.index()).text());
+            }
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    // A scanned body is rendered from its span without being cached in the model
+    private static String body(SourceSpan span, String body) {
+        return span != null ? span.text() : body;
+    }
+
+    private static void writeLeadingText(JsonWriter json, ClassElement element) throws IOException {
+        String leadingText = element.getSpan() == null ? "" : element.getSpan().leadingText();
+        if (!leadingText.isEmpty()) {
+            json.name("leadingText").value(leadingText);
+        }
+    }
+
+    private static void writeModifiers(JsonWriter json, ClassElement element) throws IOException {
+        json.name("visibility").value(element.getVisibility());
+        for (String keyword : Modifiers.KEYWORDS) {
+            json.name(keyword).value(Modifiers.has(element.getModifiers(), Modifiers.flag(keyword)));
+        }
+    }
+
+    private static void writeStrings(JsonWriter json, String name, List<String> values) throws IOException {
+        json.name(name).beginArray();
+        for (String value : values) {
+            json.value(value);
+        }
+        json.endArray();
+    }
+
+    private static void writeParameters(JsonWriter json, List<Parameter> parameters) throws IOException {
+        json.name("parameters").beginArray();
+        for (Parameter parameter : parameters) {
+            json.beginObject();
+            json.name("name").value(parameter.getName());
+            json.name("type").value(parameter.getType());
+            json.name("final").value(parameter.isFinal());
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    /**
+     * Reads every model of an array (or a single model object) and hands each to
+     * the sink before reading the next
+     *
+     * @return The number of models read
+     * @throws InvalidNameException If a model has an invalid name, type or visibility;
+     *                              the models before it have been handed over
+     */
+    public static int readAll(Reader reader, ModelSink sink) throws IOException, InvalidNameException {
+        JsonReader json = new JsonReader(reader);
+        int count = 0;
+        if (json.peek() == JsonReader.Token.BEGIN_ARRAY) {
+            json.beginArray();
+            while (json.hasNext()) {
+                sink.accept(read(json));
+                count++;
+            }
+            json.endArray();
+        } else {
+            sink.accept(read(json));
+            count++;
+        }
+        json.peek();
+        return count;
+    }
+
+    /**
+     * Reads one model object
+     */
+    public static JavaClassBuilder read(JsonReader json) throws IOException, InvalidNameException {
+        int line = json.getLine();
+        try {
+            return readClass(json);
+        } catch (InvalidNameException e) {
+            throw new InvalidNameException("Invalid model starting at line " + line + ": " + e.getMessage());
+        }
+    }
+
+    private static JavaClassBuilder readClass(JsonReader json) throws IOException, InvalidNameException {
+        JavaClassBuilder model = new JavaClassBuilder(null);
+        List<Listed> members = new ArrayList<>();
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            switch (key) {
+                case "name":
+                    String name = json.nextString();
+                    ValidationUtils.validateIdentifier(name);
+                    model.setClassName(name);
+                    break;
+                case "package":
+                    String packageName = nullableString(json);
+                    ValidationUtils.validatePackageName(packageName);
+                    model.setPackageName(packageName == null ? "" : packageName);
+                    break;
+                case "abstract":
+                    model.setAbstract(json.nextBoolean());
+                    break;
+                case "interface":
+                    model.setInterface(json.nextBoolean());
+                    break;
+                case "typeParameters":
+                    String typeParameters = nullableString(json);
+                    if (typeParameters != null && !typeParameters.isEmpty()
+                            && !(typeParameters.startsWith("<") && typeParameters.endsWith(">"))) {
+                        throw new InvalidNameException("Type parameters must be in angle brackets: " + typeParameters);
+                    }
+                    model.setTypeParameters(typeParameters);
+                    break;
+                case "javadoc":
+                    model.setJavadoc(nullableString(json));
+                    break;
+                case "annotations":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        String annotation = json.nextString();
+                        if (!annotation.startsWith("@")) {
+                            throw new InvalidNameException("Invalid annotation: " + annotation);
+                        }
+                        model.addAnnotation(annotation);
+                    }
+                    json.endArray();
+                    break;
+                case "extends":
+                    String extendsClass = nullableString(json);
+                    if (extendsClass != null) {
+                        ValidationUtils.validateType(extendsClass);
+                    }
+                    model.setExtendsClass(extendsClass);
+                    break;
+                case "implements":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        String implemented = json.nextString();
+                        ValidationUtils.validateType(implemented);
+                        model.addImplementsInterface(implemented);
+                    }
+                    json.endArray();
+                    break;
+                case "imports":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        model.addImport(json.nextString());
+                    }
+                    json.endArray();
+                    break;
+                case "defaultConstructor":
+                    model.setDefaultConstructor(json.nextBoolean());
+                    break;
+                case "members":
+                    readMembers(json, null, members);
+                    break;
+                case "fields":
+                    readMembers(json, "field", members);
+                    break;
+                case "constructors":
+                    readMembers(json, "constructor", members);
+                    break;
+                case "methods":
+                    readMembers(json, "method", members);
+                    break;
+                case "otherMembers":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        members.add(new Listed(json.nextString(), ""));
+                    }
+                    json.endArray();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        if (model.getClassName() == null) {
+            throw new InvalidNameException("Class without a name");
+        }
+        for (Listed listed : members) {
+            if (listed.member() instanceof Constructor constructor) {
+                constructor.setName(model.getClassName());
+            }
+        }
+        addInOrder(model, members);
+        // Read from JSON, not scanned: everything is generated from the model
+        model.discardSourceLayout();
+        return model;
+    }
+
+    /**
+     * A member as listed: a ClassElement or the source of a member kept verbatim,
+     * and the comments and annotations before it
+     */
+    private record Listed(Object member, String leadingText) {
+    }
+
+    /**
+     * Renders the members one after another into a single buffer and adds them
+     * with spans into it, so the class keeps their order when it is generated
+     * and each member keeps its leading text
+     */
+    private static void addInOrder(JavaClassBuilder model, List<Listed> members) {
+        StringBuilder buffer = new StringBuilder();
+        int[] starts = new int[members.size()];
+        int[] declarationStarts = new int[members.size()];
+        int[] ends = new int[members.size()];
+        for (int i = 0; i < members.size(); i++) {
+            Object member = members.get(i).member();
+            if (i > 0) {
+                boolean fields = member instanceof Field && members.get(i - 1).member() instanceof Field;
+                buffer.append(fields ? "\n" : "\n\n");
+            }
+            starts[i] = buffer.length();
+            buffer.append(members.get(i).leadingText());
+            declarationStarts[i] = buffer.length();
+            buffer.append(member instanceof ClassElement element ? element.toJavaCode() : (String) member);
+            ends[i] = buffer.length();
+        }
+        String source = buffer.toString();
+        for (int i = 0; i < members.size(); i++) {
+            Object member = members.get(i).member();
+            SourceSpan span = new SourceSpan(source, starts[i], ends[i], 0, declarationStarts[i]);
+            if (member instanceof Field field) {
+                model.addField(field);
+                field.setSpan(span);
+            } else if (member instanceof Constructor constructor) {
+                model.addConstructor(constructor);
+                constructor.setSpan(span);
+            } else if (member instanceof Method method) {
+                model.addMethod(method);
+                method.setSpan(span);
+            } else {
+                model.addOtherMember(span);
+            }
+        }
+    }
+
+    /**
+     * Reads an array of members; an element without a "kind" is of defaultKind
+     */
+    private static void readMembers(JsonReader json, String defaultKind, List<Listed> members) throws IOException, InvalidNameException {
+        json.beginArray();
+        while (json.hasNext()) {
+            members.add(readMember(json, defaultKind));
+        }
+        json.endArray();
+    }
+
+    /**
+     * Reads one member: a Field, Constructor or Method, or the source of a
+     * member kept verbatim
+     */
+    private static Listed readMember(JsonReader json, String defaultKind) throws IOException, InvalidNameException {
+        String kind = defaultKind;
+        String name = null;
+        String type = null;
+        String returnType = "void";
+        String visibility = null;
+        boolean hasVisibility = false;
+        int flags = 0;
+        String initialValue = null;
+        List<Parameter> parameters = List.of();
+        String body = "";
+        String source = null;
+        String leadingText = "";
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            switch (key) {
+                case "kind":
+                    kind = json.nextString();
+                    break;
+                case "name":
+                    name = json.nextString();
+                    break;
+                case "type":
+                    type = json.nextString();
+                    break;
+                case "returnType":
+                    returnType = json.nextString();
+                    break;
+                case "visibility":
+                    visibility = nullableString(json);
+                    hasVisibility = true;
+                    break;
+                case "initialValue":
+                    initialValue = nullableString(json);
+                    break;
+                case "parameters":
+                    parameters = readParameters(json);
+                    break;
+                case "body":
+                    body = nullableString(json);
+                    break;
+                case "source":
+                    source = json.nextString();
+                    break;
+                case "leadingText":
+                    String leading = nullableString(json);
+                    leadingText = leading == null ? "" : leading;
+                    break;
+                default:
+                    int flag = Modifiers.flag(key);
+                    if (flag != 0) {
+                        flags = Modifiers.set(flags, flag, json.nextBoolean());
+                    } else {
+                        json.skipValue();
+                    }
+            }
+        }
+        json.endObject();
+        if (kind == null) {
+            throw new InvalidNameException("Member without a kind");
+        }
+        if (!hasVisibility) {
+            visibility = kind.equals("field") ? "private" : "public";
+        }
+        visibility = visibility == null ? "" : visibility;
+        ClassElement element;
+        switch (kind) {
+            case "field":
+                ValidationUtils.validateIdentifier(name);
+                ValidationUtils.validateType(type);
+                ValidationUtils.validateVisibility(visibility);
+                Field field = new Field(name, type, visibility);
+                field.setInitialValue(initialValue);
+                element = field;
+                break;
+            case "constructor":
+                ValidationUtils.validateVisibility(visibility);
+                // Named after the class once its name has been read
+                Constructor constructor = new Constructor(null, visibility);
+                for (Parameter parameter : parameters) {
+                    constructor.addParameter(parameter);
+                }
+                constructor.setBody(body == null ? "" : body);
+                element = constructor;
+                break;
+            case "method":
+                ValidationUtils.validateIdentifier(name);
+                ValidationUtils.validateType(returnType);
+                ValidationUtils.validateVisibility(visibility);
+                Method method = new Method(name, returnType, visibility);
+                for (Parameter parameter : parameters) {
+                    method.addParameter(parameter);
+                }
+                method.setBody(body == null ? "" : body);
+                element = method;
+                break;
+            case "other":
+                if (source == null) {
+                    throw new InvalidNameException("Member of kind other without a source");
+                }
+                return new Listed(source, "");
+            default:
+                throw new InvalidNameException("Unknown member kind: " + kind);
+        }
+        element.setModifiers(Modifiers.withVisibility(flags, element.getAccess()));
+        return new Listed(element, leadingText);
+    }
+
+    private static List<Parameter> readParameters(JsonReader json) throws IOException, InvalidNameException {
+        List<Parameter> parameters = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            String name = null;
+            String type = null;
+            boolean isFinal = false;
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "name":
+                        name = json.nextString();
+                        break;
+                    case "type":
+                        type = json.nextString();
+                        break;
+                    case "final":
+                        isFinal = json.nextBoolean();
+                        break;
+                    default:
+                        json.skipValue();
+                }
+            }
+            json.endObject();
+            ValidationUtils.validateIdentifier(name);
+            // The last parameter may be variable arity
+            ValidationUtils.validateType(type != null && type.endsWith("...") ? type.substring(0, type.length() - 3) : type);
+            parameters.add(new Parameter(name, type, isFinal));
+        }
+        json.endArray();
+        return parameters;
+    }
+
+    private static String nullableString(JsonReader json) throws IOException {
+        if (json.peek() == JsonReader.Token.NULL) {
+            json.nextNull();
+            return null;
+        }
+        return json.nextString();
+    }
+}
@@ -0,0 +1,11 @@
+package builder;
+
+import java.io.IOException;
+
+/**
+ * Receives class models one at a time as an importer completes them, so a file
+ * holding thousands of classes never has to be held in memory at once
+ */
+public interface ModelSink {
+    void accept(JavaClassBuilder model) throws IOException;
+}
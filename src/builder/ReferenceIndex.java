@@ -0,0 +1,118 @@
+package builder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import model.ClassSnapshot;
+import model.SourceSpan;
+import util.FileManager;
+
+/**
+ * Index of the identifiers each workspace file mentions outside comments and
+ * literals, kept in sync with a WorkspaceIndex. It lets a rename find the few
+ * files it can affect without reading the whole folder.
+ */
+public class ReferenceIndex implements WorkspaceIndex.Listener {
+    private final ConcurrentHashMap<String, Set<Path>> filesByIdentifier = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, Set<String>> identifiersByFile = new ConcurrentHashMap<>();
+    private final WorkspaceIndex workspaceIndex;
+
+    public ReferenceIndex(WorkspaceIndex workspaceIndex) {
+        this.workspaceIndex = workspaceIndex;
+        workspaceIndex.addListener(this);
+        for (Path file : workspaceIndex.getFiles()) {
+            ClassSnapshot snapshot = workspaceIndex.getByFile(file);
+            if (snapshot != null) {
+                update(file, snapshot);
+            }
+        }
+    }
+
+    @Override
+    public void classChanged(Path file, ClassSnapshot before, ClassSnapshot after) {
+        if (after == null) {
+            update(file, Set.of());
+        } else {
+            update(file, after);
+        }
+    }
+
+    /**
+     * Returns the files that mention the identifier, as of the last refresh
+     */
+    public Set<Path> filesMentioning(String identifier) {
+        Set<Path> files = filesByIdentifier.get(identifier);
+        return files == null ? Set.of() : Collections.unmodifiableSet(files);
+    }
+
+    /**
+     * Reads the .java files below the workspace root that the workspace index
+     * leaves out (enums, records, package-info.java, files over the scan limits)
+     * and returns the identifiers each one mentions. They are not tracked, so
+     * they are read again on every call.
+     */
+    public Map<Path, Set<String>> unindexedFiles() throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(workspaceIndex.getRoot())) {
+            files = walk.filter(file -> file.getFileName().toString().endsWith(".java") && Files.isRegularFile(file))
+                    .filter(file -> workspaceIndex.getByFile(file) == null)
+                    .collect(Collectors.toList());
+        }
+        try {
+            return files.parallelStream().collect(Collectors.toMap(file -> file, file -> {
+                try {
+                    return identifiers(FileManager.readFile(file));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void update(Path file, ClassSnapshot snapshot) {
+        SourceSpan header = snapshot.headerSpan();
+        update(file, identifiers(header != null ? header.getSource() : snapshot.toJavaCode()));
+    }
+
+    private static Set<String> identifiers(CharSequence source) {
+        Set<String> identifiers = new HashSet<>();
+        SourceLexer.forEachIdentifier(source, 0, source.length(),
+                (start, end) -> identifiers.add(source.subSequence(start, end).toString()));
+        return identifiers;
+    }
+
+    private void update(Path file, Set<String> identifiers) {
+        // Serialized per file, so a refresh racing with the initial fill cannot mix the two
+        identifiersByFile.compute(file, (key, previous) -> {
+            if (previous != null) {
+                for (String identifier : previous) {
+                    if (!identifiers.contains(identifier)) {
+                        filesByIdentifier.computeIfPresent(identifier, (id, files) -> {
+                            files.remove(key);
+                            return files.isEmpty() ? null : files;
+                        });
+                    }
+                }
+            }
+            for (String identifier : identifiers) {
+                filesByIdentifier.compute(identifier, (id, files) -> {
+                    Set<Path> mentioning = files != null ? files : ConcurrentHashMap.newKeySet();
+                    mentioning.add(key);
+                    return mentioning;
+                });
+            }
+            return identifiers.isEmpty() ? null : identifiers;
+        });
+    }
+}
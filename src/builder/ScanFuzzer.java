@@ -0,0 +1,216 @@
+package builder;
+
+import exception.InvalidNameException;
+import exception.ScanLimitException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+/**
+ * Feeds JavaClassScan generated sources and measures how fast it gets through
+ * them: well-formed classes, random mutations of them, random token soup, and
+ * adversarial inputs built to make regular expressions backtrack (long
+ * whitespace runs inside headers, piles of angle brackets, huge initializers,
+ * unterminated comments and literals). Rejecting an input is fine; throwing
+ * anything else, or running into the scan time budget, is a failure.
+ */
+public class ScanFuzzer {
+    private static final String[] KEYWORDS = {"public", "private", "protected", "static", "final", "abstract",
+            "class", "interface", "extends", "implements", "throws", "void", "int", "String", "return", "new",
+            "package", "import", "synchronized", "default", "record", "enum"};
+    private static final String PUNCTUATION = "{}()<>[];=,.\"'/*@?&\n \t";
+    private static final String[] TYPES = {"int", "String", "List<String>", "Map<String, List<Integer>>", "long[]",
+            "Optional<? extends Number>", "java.util.Set<T>"};
+
+    /**
+     * Throughput of one generator
+     *
+     * @param rejected    Inputs the scanner refused as not a class
+     * @param overBudget  Inputs that hit the scan time or size limit
+     * @param failures    One line per input that made the scanner throw something
+     *                    else, naming the file the input was saved to
+     */
+    public record Result(String generator, long inputs, long chars, long nanos, long maxNanos, long rejected,
+                         long overBudget, List<String> failures) {
+
+        public double megabytesPerSecond() {
+            return nanos == 0 ? 0 : chars / 1e6 / (nanos / 1e9);
+        }
+    }
+
+    private record Generator(String name, BiFunction<Random, Integer, String> generate) {
+    }
+
+    private static final List<Generator> GENERATORS = List.of(
+            new Generator("valid", ScanFuzzer::validClass),
+            new Generator("mutated", ScanFuzzer::mutatedClass),
+            new Generator("tokens", ScanFuzzer::tokenSoup),
+            new Generator("adversarial", ScanFuzzer::adversarial));
+
+    private ScanFuzzer() {
+    }
+
+    /**
+     * Runs every generator for the given time
+     *
+     * @param seed Makes the run repeatable, apart from how many inputs fit in the time
+     */
+    public static List<Result> run(long seed, long millisPerGenerator) {
+        List<Result> results = new ArrayList<>();
+        Random random = new Random(seed);
+        for (Generator generator : GENERATORS) {
+            results.add(run(generator, random.nextLong(), millisPerGenerator));
+        }
+        return results;
+    }
+
+    private static Result run(Generator generator, long seed, long millis) {
+        Random random = new Random(seed);
+        long inputs = 0;
+        long chars = 0;
+        long nanos = 0;
+        long maxNanos = 0;
+        long rejected = 0;
+        long overBudget = 0;
+        List<String> failures = new ArrayList<>();
+        long stop = System.nanoTime() + millis * 1_000_000;
+        while (System.nanoTime() < stop) {
+            // Mostly small inputs, now and then a large one
+            int size = random.nextInt(10) == 0 ? 1 + random.nextInt(200_000) : 1 + random.nextInt(2_000);
+            String source = generator.generate().apply(random, size);
+            long start = System.nanoTime();
+            try {
+                JavaClassScan.scan(source);
+            } catch (ScanLimitException e) {
+                overBudget++;
+            } catch (InvalidNameException e) {
+                rejected++;
+            } catch (RuntimeException | StackOverflowError e) {
+                failures.add(save(generator.name(), source) + ": " + e);
+            }
+            long elapsed = System.nanoTime() - start;
+            inputs++;
+            chars += source.length();
+            nanos += elapsed;
+            maxNanos = Math.max(maxNanos, elapsed);
+        }
+        return new Result(generator.name(), inputs, chars, nanos, maxNanos, rejected, overBudget, failures);
+    }
+
+    // Keeps an input that broke the scanner, so it can be reproduced
+    private static String save(String generator, String source) {
+        try {
+            Path file = Files.createTempFile("scan-fuzz-" + generator + "-", ".java");
+            Files.writeString(file, source);
+            return file.toString();
+        } catch (IOException e) {
+            return generator + " input (not saved: " + e.getMessage() + ")";
+        }
+    }
+
+    private static String validClass(Random random, int size) {
+        StringBuilder sb = new StringBuilder("package fuzz.p").append(random.nextInt(10)).append(";\n\n");
+        sb.append("import java.util.*;\n\n");
+        sb.append(random.nextBoolean() ? "public class C" : "public abstract class C").append(random.nextInt(1000));
+        if (random.nextBoolean()) {
+            sb.append("<T extends Comparable<T>>");
+        }
+        if (random.nextBoolean()) {
+            sb.append(" extends Base");
+        }
+        if (random.nextBoolean()) {
+            sb.append(" implements Runnable, java.io.Serializable");
+        }
+        sb.append(" {\n");
+        int member = 0;
+        while (sb.length() < size) {
+            String type = TYPES[random.nextInt(TYPES.length)];
+            switch (random.nextInt(4)) {
+                case 0:
+                    sb.append("    private ").append(type).append(" field").append(member).append(";\n");
+                    break;
+                case 1:
+                    sb.append("    // comment with { and \" in it\n    static final String S").append(member)
+                            .append(" = \"a;b{c}\" + \"").append(member).append("\";\n");
+                    break;
+                case 2:
+                    sb.append("    public ").append(type).append(" method").append(member).append("(")
+                            .append(type).append(" a, final int... rest) throws IllegalStateException, java.io.IOException {\n")
+                            .append("        return null;\n    }\n");
+                    break;
+                default:
+                    sb.append("    /** Javadoc */\n    protected <E> void generic").append(member)
+                            .append("(List<E> items) {\n        for (E item : items) { }\n    }\n");
+            }
+            member++;
+        }
+        return sb.append("}\n").toString();
+    }
+
+    private static String mutatedClass(Random random, int size) {
+        StringBuilder sb = new StringBuilder(validClass(random, size));
+        int edits = 1 + random.nextInt(8);
+        for (int i = 0; i < edits && sb.length() > 0; i++) {
+            int at = random.nextInt(sb.length());
+            int length = Math.min(sb.length() - at, 1 + random.nextInt(40));
+            switch (random.nextInt(3)) {
+                case 0:
+                    sb.delete(at, at + length);
+                    break;
+                case 1:
+                    sb.insert(at, sb.substring(at, at + length));
+                    break;
+                default:
+                    for (int j = 0; j < length; j++) {
+                        sb.insert(at, PUNCTUATION.charAt(random.nextInt(PUNCTUATION.length())));
+                    }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String tokenSoup(Random random, int size) {
+        StringBuilder sb = new StringBuilder(random.nextBoolean() ? "class Soup {\n" : "");
+        while (sb.length() < size) {
+            if (random.nextBoolean()) {
+                sb.append(KEYWORDS[random.nextInt(KEYWORDS.length)]);
+            } else if (random.nextBoolean()) {
+                sb.append("id").append(random.nextInt(100));
+            } else {
+                sb.append(PUNCTUATION.charAt(random.nextInt(PUNCTUATION.length())));
+            }
+            sb.append(random.nextInt(4) == 0 ? "" : " ");
+        }
+        return sb.toString();
+    }
+
+    private static String adversarial(Random random, int size) {
+        String spaces = " ".repeat(size);
+        switch (random.nextInt(10)) {
+            case 0:
+                return "class A {\n    void f() throws A," + spaces + "@ {\n    }\n}\n";
+            case 1:
+                return "class A extends B" + spaces + "implements" + spaces + "C" + spaces + "@ {\n}\n";
+            case 2:
+                return "class A {\n    int x = a" + spaces + "b;\n    int y = " + "1, ".repeat(size / 3) + "2;\n}\n";
+            case 3:
+                return "class A {\n    A() throws X" + spaces + "@ {\n    }\n}\n";
+            case 4:
+                return "class A<" + "T> ".repeat(size / 3) + "x {\n}\n";
+            case 5:
+                return "class A {\n    Map<" + "a>".repeat(size / 2) + " f(" + "List<".repeat(size / 10) + ") {\n    }\n}\n";
+            case 6:
+                return "class A {\n    " + "public static final ".repeat(size / 20 + 1) + "@ int x;\n}\n";
+            case 7:
+                return "class A {\n    /* " + "{ \" ".repeat(size / 4) + "\n    String s = \"" + "\\\\".repeat(size / 2) + "\n";
+            case 8:
+                return "class A {\n" + "{".repeat(size) + "}".repeat(size / 2) + "\n}\n";
+            default:
+                return "class A {\n    String s = \"\"\"\n" + "\" ".repeat(size / 2) + "\n    void f() {}\n}\n";
+        }
+    }
+}
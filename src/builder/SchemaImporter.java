@@ -0,0 +1,526 @@
+package builder;
+
+import exception.InvalidNameException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import model.Field;
+import util.CsvReader;
+import util.JsonReader;
+import util.StringFormatter;
+import util.ValidationUtils;
+
+/**
+ * Turns JSON or CSV schema exports into class models. The file is read as a
+ * stream and every model is handed to a sink as soon as its entity is complete,
+ * so memory use depends on the largest entity rather than on the whole file.
+ *
+ * JSON: an array of entities, or an object holding one under "entities",
+ * "tables", "classes" or "models", or JSON Schema "definitions"/"$defs" keyed by
+ * entity name. An entity has a "name" and its fields under "fields", "columns",
+ * "attributes" or "properties", either as an array of objects with "name",
+ * "type" and "nullable", or as an object keyed by field name.
+ *
+ * CSV (or TSV): a header row naming the table, column, type and optionally
+ * nullable and package columns, then one row per column. The rows of one
+ * table must be next to each other.
+ */
+public class SchemaImporter {
+    // Problems listed in the summary; the rest are only counted
+    private static final int MAX_REPORTED = 20;
+
+    public record Summary(int classes, int fields, int problems, List<String> reported) {
+    }
+
+    // A field as read from the schema, before it is named and typed
+    private static final class FieldDef {
+        String name;
+        String type;
+        String format;
+        // Element type of an array, or the entity a reference points to
+        String items;
+        String reference;
+        Boolean nullable;
+    }
+
+    private final String defaultPackage;
+    private final ModelSink sink;
+    // Qualified names already handed to the sink
+    private final Set<String> emitted = new HashSet<>();
+    private final List<String> reported = new ArrayList<>();
+    private int problems;
+    private int classes;
+    private int fields;
+
+    private SchemaImporter(String defaultPackage, ModelSink sink) {
+        this.defaultPackage = defaultPackage == null ? "" : defaultPackage;
+        this.sink = sink;
+    }
+
+    /**
+     * Imports a .json, .csv or .tsv schema file
+     *
+     * @param defaultPackage Package of entities that do not name one
+     * @throws IOException If the file cannot be read or is malformed, or the sink fails;
+     *                     the models handed over before that are kept
+     */
+    public static Summary importFile(Path file, String defaultPackage, ModelSink sink) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        SchemaImporter importer = new SchemaImporter(defaultPackage, sink);
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (name.endsWith(".json")) {
+                importer.readJson(new JsonReader(reader));
+            } else if (name.endsWith(".csv") || name.endsWith(".tsv")) {
+                importer.readCsv(new CsvReader(reader, name.endsWith(".tsv") ? '\t' : ','));
+            } else {
+                throw new IOException("Unsupported schema file (expected .json, .csv or .tsv): " + file.getFileName());
+            }
+        }
+        return new Summary(importer.classes, importer.fields, importer.problems, importer.reported);
+    }
+
+    public static Summary importJson(Reader reader, String defaultPackage, ModelSink sink) throws IOException {
+        SchemaImporter importer = new SchemaImporter(defaultPackage, sink);
+        importer.readJson(new JsonReader(reader));
+        return new Summary(importer.classes, importer.fields, importer.problems, importer.reported);
+    }
+
+    public static Summary importCsv(Reader reader, char delimiter, String defaultPackage, ModelSink sink) throws IOException {
+        SchemaImporter importer = new SchemaImporter(defaultPackage, sink);
+        importer.readCsv(new CsvReader(reader, delimiter));
+        return new Summary(importer.classes, importer.fields, importer.problems, importer.reported);
+    }
+
+    // --- JSON ---
+
+    private void readJson(JsonReader json) throws IOException {
+        if (json.peek() == JsonReader.Token.BEGIN_ARRAY) {
+            readEntityArray(json, defaultPackage);
+        } else {
+            String packageName = defaultPackage;
+            json.beginObject();
+            while (json.hasNext()) {
+                String key = json.nextName();
+                switch (key) {
+                    case "package":
+                    case "namespace":
+                        // Applies to the entities that follow it
+                        packageName = json.nextString();
+                        break;
+                    case "entities":
+                    case "tables":
+                    case "classes":
+                    case "models":
+                        if (json.peek() == JsonReader.Token.BEGIN_ARRAY) {
+                            readEntityArray(json, packageName);
+                        } else {
+                            readEntityMap(json, packageName);
+                        }
+                        break;
+                    case "definitions":
+                    case "$defs":
+                        readEntityMap(json, packageName);
+                        break;
+                    default:
+                        json.skipValue();
+                }
+            }
+            json.endObject();
+        }
+        json.peek();
+    }
+
+    private void readEntityArray(JsonReader json, String packageName) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            readEntity(json, null, packageName);
+        }
+        json.endArray();
+    }
+
+    private void readEntityMap(JsonReader json, String packageName) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            readEntity(json, name, packageName);
+        }
+        json.endObject();
+    }
+
+    private void readEntity(JsonReader json, String name, String packageName) throws IOException {
+        if (json.peek() != JsonReader.Token.BEGIN_OBJECT) {
+            problem("Skipped a non-object entity near line " + json.getLine());
+            json.skipValue();
+            return;
+        }
+        List<FieldDef> defs = new ArrayList<>();
+        Set<String> required = new HashSet<>();
+        // JSON Schema properties are optional unless listed as required
+        boolean optionalByDefault = false;
+        int line = json.getLine();
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            switch (key) {
+                case "name":
+                case "table":
+                case "entity":
+                case "title":
+                    String value = stringOrNull(json);
+                    if (name == null || key.equals("name")) {
+                        name = value;
+                    }
+                    break;
+                case "package":
+                case "namespace":
+                    packageName = stringOrNull(json);
+                    break;
+                case "fields":
+                case "columns":
+                case "attributes":
+                    readFields(json, defs);
+                    break;
+                case "properties":
+                    optionalByDefault = true;
+                    readFields(json, defs);
+                    break;
+                case "required":
+                    if (json.peek() == JsonReader.Token.BEGIN_ARRAY) {
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            required.add(json.nextString());
+                        }
+                        json.endArray();
+                    } else {
+                        json.skipValue();
+                    }
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        if (name == null) {
+            problem("Skipped an entity without a name at line " + line);
+            return;
+        }
+        for (FieldDef def : defs) {
+            if (def.nullable == null) {
+                def.nullable = optionalByDefault && !required.contains(def.name);
+            }
+        }
+        emit(name, packageName, defs);
+    }
+
+    private void readFields(JsonReader json, List<FieldDef> defs) throws IOException {
+        if (json.peek() == JsonReader.Token.BEGIN_ARRAY) {
+            json.beginArray();
+            while (json.hasNext()) {
+                FieldDef def = new FieldDef();
+                if (json.peek() == JsonReader.Token.BEGIN_OBJECT) {
+                    readField(json, def);
+                } else {
+                    problem("Skipped a field that is not an object near line " + json.getLine());
+                    json.skipValue();
+                    continue;
+                }
+                defs.add(def);
+            }
+            json.endArray();
+        } else if (json.peek() == JsonReader.Token.BEGIN_OBJECT) {
+            json.beginObject();
+            while (json.hasNext()) {
+                FieldDef def = new FieldDef();
+                def.name = json.nextName();
+                if (json.peek() == JsonReader.Token.BEGIN_OBJECT) {
+                    readField(json, def);
+                } else {
+                    // "column": "varchar(40)"
+                    def.type = stringOrNull(json);
+                }
+                defs.add(def);
+            }
+            json.endObject();
+        } else {
+            json.skipValue();
+        }
+    }
+
+    private void readField(JsonReader json, FieldDef def) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            switch (key) {
+                case "name":
+                case "column":
+                    def.name = stringOrNull(json);
+                    break;
+                case "type":
+                case "dataType":
+                case "data_type":
+                    if (json.peek() == JsonReader.Token.BEGIN_ARRAY) {
+                        readTypeUnion(json, def);
+                    } else {
+                        def.type = stringOrNull(json);
+                    }
+                    break;
+                case "format":
+                    def.format = stringOrNull(json);
+                    break;
+                case "$ref":
+                    def.reference = stringOrNull(json);
+                    break;
+                case "items":
+                    readItems(json, def);
+                    break;
+                case "nullable":
+                case "optional":
+                    def.nullable = booleanValue(json);
+                    break;
+                case "required":
+                    if (json.peek() == JsonReader.Token.BOOLEAN) {
+                        def.nullable = !json.nextBoolean();
+                    } else {
+                        json.skipValue();
+                    }
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+
+    // JSON Schema ["string", "null"]: the non-null type, nullable
+    private void readTypeUnion(JsonReader json, FieldDef def) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            String type = stringOrNull(json);
+            if ("null".equals(type)) {
+                def.nullable = true;
+            } else if (def.type == null) {
+                def.type = type;
+            }
+        }
+        json.endArray();
+    }
+
+    private void readItems(JsonReader json, FieldDef def) throws IOException {
+        if (json.peek() != JsonReader.Token.BEGIN_OBJECT) {
+            json.skipValue();
+            return;
+        }
+        FieldDef item = new FieldDef();
+        readField(json, item);
+        def.items = item.reference != null ? referencedClass(item.reference)
+                : item.type == null ? null : SchemaTypes.toJava(item.type, item.format, true);
+    }
+
+    private static String stringOrNull(JsonReader json) throws IOException {
+        JsonReader.Token token = json.peek();
+        if (token == JsonReader.Token.STRING || token == JsonReader.Token.NUMBER) {
+            return json.nextString();
+        }
+        json.skipValue();
+        return null;
+    }
+
+    private static Boolean booleanValue(JsonReader json) throws IOException {
+        JsonReader.Token token = json.peek();
+        if (token == JsonReader.Token.BOOLEAN) {
+            return json.nextBoolean();
+        }
+        String text = stringOrNull(json);
+        return text == null ? null : isYes(text);
+    }
+
+    // --- CSV ---
+
+    private void readCsv(CsvReader csv) throws IOException {
+        List<String> record = new ArrayList<>();
+        if (!csv.readRecord(record)) {
+            return;
+        }
+        int entityColumn = -1;
+        int nameColumn = -1;
+        int typeColumn = -1;
+        int nullableColumn = -1;
+        int packageColumn = -1;
+        for (int i = 0; i < record.size(); i++) {
+            switch (record.get(i).trim().toLowerCase(Locale.ROOT)) {
+                case "table":
+                case "table_name":
+                case "entity":
+                case "class":
+                    entityColumn = i;
+                    break;
+                case "column":
+                case "column_name":
+                case "field":
+                case "name":
+                case "attribute":
+                    nameColumn = i;
+                    break;
+                case "type":
+                case "data_type":
+                case "column_type":
+                    typeColumn = i;
+                    break;
+                case "nullable":
+                case "is_nullable":
+                case "optional":
+                    nullableColumn = i;
+                    break;
+                case "package":
+                    packageColumn = i;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (entityColumn < 0 || nameColumn < 0 || typeColumn < 0) {
+            throw new IOException("The header must name a table, a column and a type column: " + String.join(",", record));
+        }
+
+        String entity = null;
+        String packageName = defaultPackage;
+        List<FieldDef> defs = new ArrayList<>();
+        while (csv.readRecord(record)) {
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue;
+            }
+            String rowEntity = cell(record, entityColumn);
+            if (rowEntity.isEmpty()) {
+                problem("Skipped a row without a table at line " + csv.getRecordLine());
+                continue;
+            }
+            if (!rowEntity.equals(entity)) {
+                if (entity != null) {
+                    emit(entity, packageName, defs);
+                    defs = new ArrayList<>();
+                }
+                entity = rowEntity;
+                String rowPackage = cell(record, packageColumn);
+                packageName = rowPackage.isEmpty() ? defaultPackage : rowPackage;
+            }
+            FieldDef def = new FieldDef();
+            def.name = cell(record, nameColumn);
+            def.type = cell(record, typeColumn);
+            def.nullable = nullableColumn >= 0 && isYes(cell(record, nullableColumn));
+            defs.add(def);
+        }
+        if (entity != null) {
+            emit(entity, packageName, defs);
+        }
+    }
+
+    private static String cell(List<String> record, int column) {
+        return column >= 0 && column < record.size() ? record.get(column).trim() : "";
+    }
+
+    private static boolean isYes(String value) {
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "y":
+            case "yes":
+            case "true":
+            case "1":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // --- Models ---
+
+    private void emit(String entity, String packageName, List<FieldDef> defs) throws IOException {
+        // "sales.customer_order" names the table customer_order of schema sales
+        String className = StringFormatter.toPascalCase(entity.substring(entity.lastIndexOf('.') + 1));
+        String pkg = packageName == null ? defaultPackage : packageName;
+        try {
+            ValidationUtils.validateClassName(className);
+            ValidationUtils.validatePackageName(pkg);
+        } catch (InvalidNameException e) {
+            problem("Skipped " + entity + ": " + e.getMessage());
+            return;
+        }
+        if (!emitted.add(pkg.isEmpty() ? className : pkg + "." + className)) {
+            problem("Skipped " + entity + ": " + className + " was already imported"
+                    + " (rows of one table must be next to each other)");
+            return;
+        }
+
+        JavaClassBuilder model = new JavaClassBuilder(className);
+        model.setPackageName(pkg);
+        Set<String> names = new HashSet<>();
+        for (FieldDef def : defs) {
+            Field field = toField(entity, def, names);
+            if (field != null) {
+                model.addField(field);
+                TypeUniverse.forEachTypeName(field.getType(), name -> {
+                    String importStatement = SchemaTypes.importFor(name);
+                    if (importStatement != null && !model.getImports().contains(importStatement)) {
+                        model.addImport(importStatement);
+                    }
+                });
+            }
+        }
+        sink.accept(model);
+        classes++;
+        fields += model.getFields().size();
+    }
+
+    private Field toField(String entity, FieldDef def, Set<String> names) {
+        if (def.name == null || def.name.isBlank()) {
+            problem("Skipped a field without a name in " + entity);
+            return null;
+        }
+        String name = StringFormatter.toCamelCase(def.name.trim());
+        try {
+            ValidationUtils.validateVariableName(name);
+        } catch (InvalidNameException e) {
+            problem("Skipped " + entity + "." + def.name + ": " + e.getMessage());
+            return null;
+        }
+        if (!names.add(name)) {
+            problem("Skipped " + entity + "." + def.name + ": another column is also named " + name);
+            return null;
+        }
+        boolean nullable = def.nullable != null && def.nullable;
+        String type;
+        if (def.reference != null) {
+            type = referencedClass(def.reference);
+        } else if (def.type == null) {
+            problem(entity + "." + def.name + " has no type; using Object");
+            type = "Object";
+        } else {
+            type = SchemaTypes.toJava(def.type, def.format, nullable);
+            if (type != null && type.equals("List<Object>") && def.items != null) {
+                type = "List<" + def.items + ">";
+            }
+            if (type == null) {
+                problem(entity + "." + def.name + " has unknown type " + def.type + "; using Object");
+                type = "Object";
+            }
+        }
+        return new Field(name, type, "private");
+    }
+
+    // "#/definitions/postal_address" refers to the class PostalAddress
+    private static String referencedClass(String reference) {
+        return StringFormatter.toPascalCase(reference.substring(reference.lastIndexOf('/') + 1));
+    }
+
+    private void problem(String message) {
+        problems++;
+        if (reported.size() < MAX_REPORTED) {
+            reported.add(message);
+        }
+    }
+}
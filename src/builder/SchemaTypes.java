@@ -0,0 +1,137 @@
+package builder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Maps the column types of SQL schema exports and the types of JSON Schema to
+ * Java types. Nullable columns get the boxed type of a primitive.
+ */
+final class SchemaTypes {
+    private static final Map<String, String> TYPES = new HashMap<>();
+    // Imports the mapped types need
+    private static final Map<String, String> IMPORTS = Map.of(
+            "BigDecimal", "java.math.BigDecimal",
+            "BigInteger", "java.math.BigInteger",
+            "UUID", "java.util.UUID",
+            "LocalDate", "java.time.LocalDate",
+            "LocalTime", "java.time.LocalTime",
+            "LocalDateTime", "java.time.LocalDateTime",
+            "OffsetDateTime", "java.time.OffsetDateTime",
+            "List", "java.util.List",
+            "Map", "java.util.Map");
+    private static final Map<String, String> BOXED = Map.of(
+            "boolean", "Boolean", "byte", "Byte", "short", "Short", "int", "Integer",
+            "long", "Long", "float", "Float", "double", "Double");
+    // An unsigned integer column needs the next wider type to hold its upper half
+    private static final Map<String, String> UNSIGNED_WIDER = Map.of(
+            "byte", "short", "short", "int", "int", "long", "long", "BigInteger");
+    private static final Pattern UNSIGNED = Pattern.compile("(?i)\\bunsigned\\b");
+
+    static {
+        map("String", "string", "text", "varchar", "char", "character", "character varying", "nvarchar", "nchar",
+                "clob", "citext", "enum", "tinytext", "mediumtext", "longtext", "varchar2", "nvarchar2");
+        map("UUID", "uuid", "uniqueidentifier");
+        map("byte", "tinyint", "byte");
+        map("short", "smallint", "int2", "short", "smallserial");
+        map("int", "int", "integer", "int4", "mediumint", "serial", "int32");
+        map("long", "bigint", "int8", "long", "bigserial", "int64");
+        map("float", "float", "float4", "real");
+        map("double", "double", "float8", "double precision", "number");
+        map("BigDecimal", "decimal", "numeric", "money", "smallmoney");
+        map("boolean", "boolean", "bool", "bit");
+        map("LocalDate", "date");
+        map("LocalTime", "time", "time without time zone");
+        map("LocalDateTime", "timestamp", "datetime", "datetime2", "timestamp without time zone", "smalldatetime");
+        map("OffsetDateTime", "timestamptz", "timestamp with time zone", "datetimeoffset", "date-time");
+        map("Map<String, Object>", "json", "jsonb", "object", "map");
+        map("byte[]", "bytea", "blob", "binary", "varbinary", "longblob", "image");
+        map("List<Object>", "array");
+    }
+
+    private SchemaTypes() {
+    }
+
+    private static void map(String javaType, String... schemaTypes) {
+        for (String schemaType : schemaTypes) {
+            TYPES.put(schemaType, javaType);
+        }
+    }
+
+    /**
+     * Returns the Java type for a schema type such as "varchar(255)", "int unsigned",
+     * "text[]" or "integer" with JSON Schema format "int64", or null if it is unknown.
+     * Unsigned integers get the next wider type, so "int unsigned" is a long and
+     * "bigint unsigned" a BigInteger.
+     *
+     * @param format JSON Schema format, or null
+     */
+    static String toJava(String schemaType, String format, boolean nullable) {
+        String normalized = normalize(schemaType);
+        if (normalized.endsWith("[]")) {
+            String element = toJava(normalized.substring(0, normalized.length() - 2), null, true);
+            return element == null ? null : element.equals("byte") ? "byte[]" : "List<" + element + ">";
+        }
+        String javaType = null;
+        if (format != null) {
+            // JSON Schema: "string" with format "date", "integer" with format "int64", ...
+            javaType = TYPES.get(normalize(format));
+        }
+        if (javaType == null) {
+            javaType = TYPES.get(normalized);
+        }
+        if (javaType != null && UNSIGNED.matcher(schemaType).find()) {
+            javaType = UNSIGNED_WIDER.getOrDefault(javaType, javaType);
+        }
+        if (javaType != null && nullable) {
+            javaType = BOXED.getOrDefault(javaType, javaType);
+        }
+        return javaType;
+    }
+
+    /**
+     * Returns the import a mapped type needs, or null
+     */
+    static String importFor(String simpleName) {
+        return IMPORTS.get(simpleName);
+    }
+
+    // Lower case, single spaces, without length, precision and trailing attributes such as "unsigned"
+    private static String normalize(String schemaType) {
+        StringBuilder sb = new StringBuilder(schemaType.length());
+        boolean space = false;
+        int parentheses = 0;
+        for (int i = 0; i < schemaType.length(); i++) {
+            char c = schemaType.charAt(i);
+            if (c == '(') {
+                parentheses++;
+            } else if (c == ')') {
+                parentheses--;
+            } else if (parentheses > 0) {
+                continue;
+            } else if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) {
+                    sb.append(' ');
+                    space = false;
+                }
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        String normalized = sb.toString();
+        // In any order, as in "int unsigned not null"
+        boolean stripped = true;
+        while (stripped) {
+            stripped = false;
+            for (String suffix : new String[]{" unsigned", " signed", " zerofill", " not null", " identity"}) {
+                if (normalized.endsWith(suffix)) {
+                    normalized = normalized.substring(0, normalized.length() - suffix.length());
+                    stripped = true;
+                }
+            }
+        }
+        return normalized;
+    }
+}
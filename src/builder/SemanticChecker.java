@@ -0,0 +1,189 @@
+package builder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import model.ClassSnapshot;
+import model.ConstructorSnapshot;
+import model.MethodSnapshot;
+
+/**
+ * Checks classes against the rest of the workspace: unimplemented abstract and
+ * interface methods, extends and implements naming the wrong kind of type or an
+ * unknown one, and methods or constructors the compiler cannot tell apart.
+ * Results are cached per class; a change drops only the results of the changed
+ * class and the classes below it, as reported by the TypeHierarchy.
+ */
+public class SemanticChecker implements TypeHierarchy.Listener {
+
+    public enum Kind {
+        MISSING_IMPLEMENTATION("missing implementation"),
+        WRONG_SUPERTYPE("wrong supertype"),
+        UNKNOWN_SUPERTYPE("unknown supertype"),
+        SIGNATURE_CLASH("signature clash");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    public record Problem(String className, Kind kind, String message) {
+    }
+
+    /**
+     * Result of checking the whole workspace. analyzed counts the classes that
+     * were not cached and had to be checked again.
+     */
+    public record Report(List<Problem> problems, int classes, int analyzed, long millis) {
+    }
+
+    private final WorkspaceIndex workspaceIndex;
+    private final TypeHierarchy hierarchy;
+    private final TypeUniverse typeUniverse;
+    private final ConcurrentHashMap<String, List<Problem>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param typeUniverse Tells whether a supertype outside the workspace exists;
+     *                     may be null, then such supertypes are not checked
+     */
+    public SemanticChecker(WorkspaceIndex workspaceIndex, TypeHierarchy hierarchy, TypeUniverse typeUniverse) {
+        this.workspaceIndex = workspaceIndex;
+        this.hierarchy = hierarchy;
+        this.typeUniverse = typeUniverse;
+        hierarchy.addListener(this);
+    }
+
+    @Override
+    public void hierarchyChanged(Set<String> classNames) {
+        cache.keySet().removeAll(classNames);
+    }
+
+    /**
+     * Returns the problems of a workspace class, from the cache if it is current
+     */
+    public List<Problem> check(String className) {
+        List<Problem> problems = cache.get(className);
+        if (problems != null) {
+            return problems;
+        }
+        long version = hierarchy.getVersion();
+        ClassSnapshot snapshot = workspaceIndex.getByClassName(className);
+        if (snapshot == null) {
+            return List.of();
+        }
+        problems = analyze(snapshot, hierarchy.getMembers(className));
+        // Put before re-checking the version: a change that bumps it after the
+        // check also drops the entry, and one that bumped it before is caught here
+        cache.put(className, problems);
+        if (hierarchy.getVersion() != version) {
+            cache.remove(className, problems);
+        }
+        return problems;
+    }
+
+    /**
+     * Checks a class that need not be saved, such as the one being edited; not cached
+     */
+    public List<Problem> check(ClassSnapshot snapshot) {
+        return analyze(snapshot, hierarchy.getMembers(snapshot));
+    }
+
+    /**
+     * Checks every workspace class, re-analyzing only those without a current result
+     */
+    public Report checkAll() {
+        long start = System.nanoTime();
+        List<Problem> problems = new ArrayList<>();
+        int classes = 0;
+        int analyzed = 0;
+        for (ClassSnapshot snapshot : workspaceIndex.getClasses()) {
+            classes++;
+            if (!cache.containsKey(snapshot.className())) {
+                analyzed++;
+            }
+            problems.addAll(check(snapshot.className()));
+        }
+        problems.sort(Comparator.comparing(Problem::className).thenComparing(Problem::kind));
+        return new Report(problems, classes, analyzed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private List<Problem> analyze(ClassSnapshot snapshot, TypeHierarchy.Members members) {
+        List<Problem> problems = new ArrayList<>();
+        String className = snapshot.className();
+        checkSupertypes(snapshot, problems);
+
+        Map<String, Integer> signatures = new HashMap<>();
+        for (MethodSnapshot method : snapshot.methods()) {
+            signatures.merge(TypeHierarchy.signature(method), 1, Integer::sum);
+        }
+        signatures.forEach((signature, count) -> {
+            if (count > 1) {
+                problems.add(new Problem(className, Kind.SIGNATURE_CLASH,
+                        className + " declares " + signature + " " + count + " times"));
+            }
+        });
+        Map<String, Integer> constructors = new HashMap<>();
+        for (ConstructorSnapshot constructor : snapshot.constructors()) {
+            constructors.merge(TypeHierarchy.signature(className, constructor.parameters()), 1, Integer::sum);
+        }
+        constructors.forEach((signature, count) -> {
+            if (count > 1) {
+                problems.add(new Problem(className, Kind.SIGNATURE_CLASH,
+                        "Constructor " + signature + " is declared " + count + " times"));
+            }
+        });
+
+        // Methods a superclass outside the workspace may implement cannot be checked
+        if (!snapshot.isAbstract() && !snapshot.isInterface() && members.superclassKnown()) {
+            for (TypeHierarchy.InheritedMethod pending : members.pending()) {
+                problems.add(new Problem(className, Kind.MISSING_IMPLEMENTATION, className
+                        + " does not implement " + TypeHierarchy.signature(pending.method())
+                        + (pending.declaringClass().equals(className) ? "" : " from " + pending.declaringClass())
+                        + "; make it abstract or add the method"));
+            }
+        }
+        return List.copyOf(problems);
+    }
+
+    private void checkSupertypes(ClassSnapshot snapshot, List<Problem> problems) {
+        String className = snapshot.className();
+        List<String> supertypes = TypeHierarchy.supertypes(snapshot);
+        int extendsCount = supertypes.size() - snapshot.implementsInterfaces().size();
+        if (!snapshot.isInterface() && extendsCount > 1) {
+            problems.add(new Problem(className, Kind.WRONG_SUPERTYPE,
+                    className + " extends " + extendsCount + " classes; a class can extend only one"));
+        }
+        for (int i = 0; i < supertypes.size(); i++) {
+            String name = supertypes.get(i);
+            boolean extended = i < extendsCount;
+            ClassSnapshot supertype = workspaceIndex.getByClassName(TypeHierarchy.simpleName(name));
+            if (supertype == null) {
+                if (typeUniverse != null && typeUniverse.hasLibrary() && !typeUniverse.isKnown(name)) {
+                    problems.add(new Problem(className, Kind.UNKNOWN_SUPERTYPE, className
+                            + (extended ? " extends " : " implements ") + "unknown type " + name));
+                }
+            } else if (snapshot.isInterface()) {
+                if (!supertype.isInterface()) {
+                    problems.add(new Problem(className, Kind.WRONG_SUPERTYPE,
+                            "Interface " + className + " can only extend interfaces, but " + name + " is a class"));
+                }
+            } else if (extended && supertype.isInterface()) {
+                problems.add(new Problem(className, Kind.WRONG_SUPERTYPE,
+                        className + " extends interface " + name + "; use implements instead"));
+            } else if (!extended && !supertype.isInterface()) {
+                problems.add(new Problem(className, Kind.WRONG_SUPERTYPE,
+                        className + " implements class " + name + "; use extends instead"));
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package builder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import model.ClassSnapshot;
+import util.FileManager;
+import util.SourceArchive;
+
+/**
+ * Writes the generated source of many classes into one zip or jar. Classes are
+ * generated in parallel and streamed into the archive; no class file is written
+ * to disk on the way.
+ */
+public class SourceExporter {
+    // Generated sources waiting for the archive writer
+    private static final int QUEUE_CAPACITY = 64;
+
+    /**
+     * @param copied Files put in the archive as they are, because the index cannot model them
+     */
+    public record Summary(int classes, int copied, long sourceBytes, long archiveBytes, List<String> skipped) {
+    }
+
+    // One archive entry: generated from a snapshot, or copied from a file
+    private record Entry(String name, ClassSnapshot snapshot, Path file) {
+    }
+
+    private SourceExporter() {
+    }
+
+    /**
+     * Exports every class under its package path, e.g. com/acme/Order.java
+     *
+     * @param level Deflate level from 0 to 9, or -1 for the default
+     */
+    public static Summary exportArchive(Collection<ClassSnapshot> classes, Path target, int level) throws IOException {
+        return export(classes, Map.of(), target, level);
+    }
+
+    /**
+     * Exports every class of a workspace like exportArchive. The .java files the
+     * index cannot scan, such as enums, records, package-info.java and
+     * module-info.java, are copied unchanged under their path below the root.
+     */
+    public static Summary exportWorkspace(WorkspaceIndex index, Path target, int level) throws IOException {
+        Path root = index.getRoot();
+        Map<String, Path> unindexed;
+        try (Stream<Path> walk = Files.walk(root)) {
+            unindexed = walk.filter(file -> file.getFileName().toString().endsWith(".java") && Files.isRegularFile(file))
+                    .filter(file -> index.getByFile(file) == null)
+                    .collect(Collectors.toMap(file -> root.relativize(file).toString().replace('\\', '/'), file -> file));
+        }
+        return export(index.getClasses(), unindexed, target, level);
+    }
+
+    private static Summary export(Collection<ClassSnapshot> classes, Map<String, Path> files, Path target, int level)
+            throws IOException {
+        // Two classes with the same qualified name would collide in the archive
+        Map<String, Entry> byName = new HashMap<>();
+        List<String> skipped = new ArrayList<>();
+        for (ClassSnapshot snapshot : classes) {
+            String name = SourceArchive.entryName(snapshot.packageName(), snapshot.className());
+            if (byName.putIfAbsent(name, new Entry(name, snapshot, null)) != null) {
+                skipped.add(name + " (declared twice)");
+            }
+        }
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            if (byName.putIfAbsent(file.getKey(), new Entry(file.getKey(), null, file.getValue())) != null) {
+                skipped.add(file.getKey() + " (declared twice)");
+            }
+        }
+
+        SourceArchive archive = SourceArchive.open(target, level, QUEUE_CAPACITY);
+        try (archive) {
+            byName.values().parallelStream().forEach(entry -> {
+                try {
+                    String code = entry.file() != null ? FileManager.readFile(entry.file())
+                            : JavaClassBuilder.fromSnapshot(entry.snapshot()).buildClass();
+                    archive.add(entry.name(), code);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(target);
+            throw e.getCause();
+        }
+        skipped.sort(null);
+        int copied = (int) byName.values().stream().filter(entry -> entry.file() != null).count();
+        return new Summary((int) archive.getEntries() - copied, copied, archive.getUncompressedBytes(),
+                Files.size(target), skipped);
+    }
+}
@@ -0,0 +1,250 @@
+package builder;
+
+/**
+ * Low-level helpers for walking Java source text without copying it.
+ * All methods take and return offsets into the source.
+ */
+public class SourceLexer {
+
+    /**
+     * Returns the first offset at or after pos that is not whitespace
+     */
+    public static int skipWhitespace(CharSequence s, int pos, int end) {
+        while (pos < end && Character.isWhitespace(s.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * If a comment starts at pos, returns the offset just after it; otherwise pos
+     */
+    public static int skipComment(CharSequence s, int pos, int end) {
+        if (pos + 1 >= end || s.charAt(pos) != '/') {
+            return pos;
+        }
+        char next = s.charAt(pos + 1);
+        if (next == '/') {
+            int i = pos + 2;
+            while (i < end && s.charAt(i) != '\n') {
+                i++;
+            }
+            return i;
+        }
+        if (next == '*') {
+            for (int i = pos + 2; i + 1 < end; i++) {
+                if (s.charAt(i) == '*' && s.charAt(i + 1) == '/') {
+                    return i + 2;
+                }
+            }
+            return end;
+        }
+        return pos;
+    }
+
+    /**
+     * If a string, text block or character literal starts at pos, returns the
+     * offset just after it; otherwise pos
+     */
+    public static int skipLiteral(CharSequence s, int pos, int end) {
+        if (pos >= end) {
+            return pos;
+        }
+        char quote = s.charAt(pos);
+        if (quote != '"' && quote != '\'') {
+            return pos;
+        }
+        if (quote == '"' && pos + 2 < end && s.charAt(pos + 1) == '"' && s.charAt(pos + 2) == '"') {
+            // Text block
+            for (int i = pos + 3; i + 2 < end; i++) {
+                if (s.charAt(i) == '\\') {
+                    i++;
+                } else if (s.charAt(i) == '"' && s.charAt(i + 1) == '"' && s.charAt(i + 2) == '"') {
+                    return i + 3;
+                }
+            }
+            return end;
+        }
+        for (int i = pos + 1; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote || c == '\n') {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Skips whitespace, comments and annotations
+     */
+    public static int skipTrivia(CharSequence s, int pos, int end) {
+        while (true) {
+            int next = skipWhitespace(s, pos, end);
+            next = skipComment(s, next, end);
+            next = skipAnnotation(s, next, end);
+            if (next == pos) {
+                return pos;
+            }
+            pos = next;
+        }
+    }
+
+    /**
+     * If an annotation such as @Override or @SuppressWarnings("x") starts at pos,
+     * returns the offset just after it; otherwise pos. The declaration keyword
+     * {@code @interface} is not treated as an annotation.
+     */
+    public static int skipAnnotation(CharSequence s, int pos, int end) {
+        if (pos >= end || s.charAt(pos) != '@' || startsWithWord(s, pos + 1, end, "interface")) {
+            return pos;
+        }
+        int i = pos + 1;
+        while (i < end && (Character.isJavaIdentifierPart(s.charAt(i)) || s.charAt(i) == '.')) {
+            i++;
+        }
+        int afterName = skipWhitespace(s, i, end);
+        if (afterName < end && s.charAt(afterName) == '(') {
+            int close = findMatching(s, afterName, end);
+            return close < 0 ? end : close + 1;
+        }
+        return i;
+    }
+
+    /**
+     * Given the offset of an opening bracket, returns the offset of its matching
+     * closing bracket, skipping comments and literals, or -1 if it is never closed
+     */
+    public static int findMatching(CharSequence s, int open, int end) {
+        char openChar = s.charAt(open);
+        char closeChar = openChar == '{' ? '}' : openChar == '(' ? ')' : openChar == '[' ? ']' : '>';
+        int depth = 0;
+        int i = open;
+        while (i < end) {
+            int skipped = skipComment(s, i, end);
+            if (skipped == i) {
+                skipped = skipLiteral(s, i, end);
+            }
+            if (skipped != i) {
+                i = skipped;
+                continue;
+            }
+            char c = s.charAt(i);
+            if (c == openChar) {
+                depth++;
+            } else if (c == closeChar) {
+                depth--;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Receives the offsets of each identifier found by forEachIdentifier
+     */
+    public interface IdentifierVisitor {
+        void visit(int start, int end);
+    }
+
+    /**
+     * Calls the visitor for every identifier or keyword in [pos, end), skipping
+     * comments, literals and numbers
+     */
+    public static void forEachIdentifier(CharSequence s, int pos, int end, IdentifierVisitor visitor) {
+        int i = pos;
+        while (i < end) {
+            int skipped = skipComment(s, i, end);
+            if (skipped == i) {
+                skipped = skipLiteral(s, i, end);
+            }
+            if (skipped != i) {
+                i = skipped;
+                continue;
+            }
+            char c = s.charAt(i);
+            if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < end && Character.isJavaIdentifierPart(s.charAt(i))) {
+                    i++;
+                }
+                visitor.visit(start, i);
+            } else if (Character.isDigit(c)) {
+                // Numbers such as 0x1F or 10L are not identifiers
+                while (i < end && (Character.isJavaIdentifierPart(s.charAt(i)) || s.charAt(i) == '.')) {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the characters of s in [start, end) equal word
+     */
+    public static boolean regionEquals(CharSequence s, int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (s.charAt(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the offset of the first character of the line containing pos
+     */
+    public static int lineStart(CharSequence s, int pos) {
+        while (pos > 0 && s.charAt(pos - 1) != '\n') {
+            pos--;
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the offset of the line break ending the line containing pos, or end
+     */
+    public static int lineEnd(CharSequence s, int pos, int end) {
+        while (pos < end && s.charAt(pos) != '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the column of pos if only whitespace precedes it on its line, otherwise 0
+     */
+    public static int indentOf(CharSequence s, int pos) {
+        int lineStart = lineStart(s, pos);
+        for (int i = lineStart; i < pos; i++) {
+            if (s.charAt(i) != ' ' && s.charAt(i) != '\t') {
+                return 0;
+            }
+        }
+        return pos - lineStart;
+    }
+
+    /**
+     * Returns true if the given keyword starts at pos and is not part of a longer identifier
+     */
+    public static boolean startsWithWord(CharSequence s, int pos, int end, String word) {
+        int wordEnd = pos + word.length();
+        if (wordEnd > end) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (s.charAt(pos + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return wordEnd == end || !Character.isJavaIdentifierPart(s.charAt(wordEnd));
+    }
+}
@@ -0,0 +1,56 @@
+package builder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import model.ClassSnapshot;
+import model.Method;
+import model.MethodSnapshot;
+import model.Parameter;
+import model.ParameterSnapshot;
+
+/**
+ * Adds a method stub to a class for every abstract method it inherits from the
+ * workspace and does not implement yet. The supertypes come from the cached
+ * TypeHierarchy, so no file is read or scanned again.
+ */
+public class StubGenerator {
+
+    private StubGenerator() {
+    }
+
+    /**
+     * Adds the missing methods to a concrete class; does nothing for abstract
+     * classes and interfaces. Type variables of the supertypes are replaced by
+     * the type arguments the class gives them. Each stub returns a default value.
+     *
+     * @return The stubs added
+     */
+    public static List<Method> addStubs(JavaClassBuilder builder, TypeHierarchy hierarchy) {
+        if (builder.isAbstract() || builder.isInterface()) {
+            return List.of();
+        }
+        ClassSnapshot snapshot = builder.snapshot();
+        Map<String, TypeHierarchy.Bindings> typeArguments = hierarchy.getTypeArguments(snapshot);
+        List<Method> stubs = new ArrayList<>();
+        for (TypeHierarchy.InheritedMethod pending : hierarchy.getMembers(snapshot).pending()) {
+            if (pending.declaringClass().equals(snapshot.className())) {
+                // Declared abstract in the class itself; that is for the user to fix
+                continue;
+            }
+            TypeHierarchy.Bindings bindings = typeArguments.getOrDefault(pending.declaringClass(),
+                    TypeHierarchy.Bindings.NONE);
+            MethodSnapshot method = pending.method();
+            // Interface methods are implicitly public, and an implementation may not narrow that
+            String visibility = pending.declaredInInterface() ? "public" : method.visibility();
+            Method stub = new Method(method.name(), bindings.apply(method.returnType()), visibility);
+            for (ParameterSnapshot parameter : method.parameters()) {
+                stub.addParameter(new Parameter(parameter.name(),
+                        bindings.apply(parameter.type())));
+            }
+            builder.addMethod(stub);
+            stubs.add(stub);
+        }
+        return stubs;
+    }
+}
@@ -0,0 +1,38 @@
+package builder;
+
+/**
+ * A single replacement in a source text: removedLength characters at offset
+ * are replaced by insertedText
+ */
+public record TextEdit(int offset, int removedLength, String insertedText) {
+
+    public int delta() {
+        return insertedText.length() - removedLength;
+    }
+
+    public String apply(String source) {
+        return source.substring(0, offset) + insertedText + source.substring(offset + removedLength);
+    }
+
+    /**
+     * Returns the smallest single edit turning before into after, found from their
+     * common prefix and suffix, or null if the texts are equal
+     */
+    public static TextEdit between(String before, String after) {
+        int prefix = 0;
+        int max = Math.min(before.length(), after.length());
+        while (prefix < max && before.charAt(prefix) == after.charAt(prefix)) {
+            prefix++;
+        }
+        if (prefix == before.length() && prefix == after.length()) {
+            return null;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && before.charAt(before.length() - 1 - suffix) == after.charAt(after.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return new TextEdit(prefix, before.length() - prefix - suffix,
+                after.substring(prefix, after.length() - suffix));
+    }
+}
@@ -0,0 +1,455 @@
+package builder;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import model.ClassSnapshot;
+import model.MethodSnapshot;
+import model.ParameterSnapshot;
+
+/**
+ * Supertype links between the workspace classes, kept in sync with a
+ * WorkspaceIndex, and the methods each class inherits. What a class inherits
+ * is worked out once and cached until the class or one of its supertypes
+ * changes. Listeners then learn which classes are affected: the changed class
+ * and every class below it. Supertypes are matched to workspace classes by
+ * simple name.
+ */
+public class TypeHierarchy implements WorkspaceIndex.Listener {
+
+    /**
+     * Notified after classes changed, with the names of the classes whose
+     * supertypes or inherited methods may have changed
+     */
+    public interface Listener {
+        void hierarchyChanged(Set<String> classNames);
+    }
+
+    /**
+     * An abstract method and the class or interface declaring it
+     */
+    public record InheritedMethod(String declaringClass, boolean declaredInInterface, MethodSnapshot method) {
+    }
+
+    /**
+     * The methods of a class including inherited ones. concrete holds every
+     * method with a body, pending the abstract methods no concrete method
+     * implements. superclassKnown is false if some superclass is not in the
+     * workspace, so concrete methods may be missing.
+     */
+    public record Members(List<MethodSnapshot> concrete, List<InheritedMethod> pending, boolean superclassKnown) {
+    }
+
+    private final WorkspaceIndex workspaceIndex;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Supertype simple name -> names of the classes directly below it; guarded by this
+    private final Map<String, Set<String>> subtypes = new HashMap<>();
+    // Guarded by this
+    private final Map<String, Members> members = new HashMap<>();
+    // Type parameters of a class as {name, erased bound}; guarded by this
+    private final Map<String, List<String[]>> typeParameters = new HashMap<>();
+    private volatile long version;
+
+    public TypeHierarchy(WorkspaceIndex workspaceIndex) {
+        this.workspaceIndex = workspaceIndex;
+        workspaceIndex.addListener(this);
+        synchronized (this) {
+            for (ClassSnapshot snapshot : workspaceIndex.getClasses()) {
+                link(snapshot);
+            }
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Counts the changes seen; a result computed while it stayed the same is current
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void classChanged(Path file, ClassSnapshot before, ClassSnapshot after) {
+        Set<String> affected;
+        synchronized (this) {
+            List<String> changed = new ArrayList<>(2);
+            if (before != null) {
+                unlink(before);
+                changed.add(before.className());
+            }
+            if (after != null) {
+                link(after);
+                changed.add(after.className());
+            }
+            affected = below(changed);
+            members.keySet().removeAll(affected);
+            typeParameters.keySet().removeAll(changed);
+            version++;
+        }
+        for (Listener listener : listeners) {
+            listener.hierarchyChanged(affected);
+        }
+    }
+
+    /**
+     * Returns the names of the classes directly below a class or interface
+     */
+    public synchronized Set<String> getSubtypes(String className) {
+        Set<String> below = subtypes.get(className);
+        return below == null ? Set.of() : Set.copyOf(below);
+    }
+
+    /**
+     * Returns the methods of a workspace class including inherited ones, or null
+     * if the workspace has no such class
+     */
+    public synchronized Members getMembers(String className) {
+        ClassSnapshot snapshot = workspaceIndex.getByClassName(className);
+        if (snapshot == null) {
+            return null;
+        }
+        return members(snapshot, new HashSet<>());
+    }
+
+    /**
+     * Returns the methods of a class that need not be saved, such as the one
+     * being edited, including those it inherits from workspace classes
+     */
+    public synchronized Members getMembers(ClassSnapshot snapshot) {
+        Set<String> resolving = new HashSet<>();
+        resolving.add(snapshot.className());
+        return resolve(snapshot, resolving);
+    }
+
+    /**
+     * Returns, for every workspace supertype above a class, what its type
+     * variables stand for as seen from the class, following the type arguments
+     * along the path between them. A type variable the path leaves open, as
+     * with a raw supertype, stands for its bound.
+     */
+    public synchronized Map<String, Bindings> getTypeArguments(ClassSnapshot snapshot) {
+        Map<String, Bindings> found = new HashMap<>();
+        found.put(snapshot.className(), Bindings.NONE);
+        typeArguments(snapshot, Bindings.NONE, found);
+        found.remove(snapshot.className());
+        return found;
+    }
+
+    private void typeArguments(ClassSnapshot snapshot, Bindings bindings, Map<String, Bindings> found) {
+        List<String> declared = new ArrayList<>();
+        if (snapshot.extendsClass() != null) {
+            declared.addAll(JavaClassScan.splitTopLevel(snapshot.extendsClass()));
+        }
+        declared.addAll(snapshot.implementsInterfaces());
+        for (String type : declared) {
+            String name = simpleName(erase(type));
+            ClassSnapshot supertype = workspaceIndex.getByClassName(name);
+            if (supertype == null || found.containsKey(name)) {
+                continue;
+            }
+            int open = type.indexOf('<');
+            List<String> arguments = open < 0 ? List.of()
+                    : JavaClassScan.splitTopLevel(type.substring(open + 1, type.lastIndexOf('>')));
+            Map<String, String> variables = new HashMap<>();
+            List<String[]> parameters = typeParameters.computeIfAbsent(name, key -> typeParameters(supertype));
+            for (int i = 0; i < parameters.size(); i++) {
+                String[] parameter = parameters.get(i);
+                variables.put(parameter[0], i < arguments.size() ? bindings.apply(arguments.get(i)) : parameter[1]);
+            }
+            Bindings next = new Bindings(variables, bindings.raw() || (arguments.isEmpty() && !parameters.isEmpty()));
+            found.put(name, next);
+            typeArguments(supertype, next, found);
+        }
+    }
+
+    /**
+     * What the type variables of a supertype stand for. Members of a raw
+     * supertype, or of anything above one, are seen with erased types.
+     */
+    public record Bindings(Map<String, String> variables, boolean raw) {
+        static final Bindings NONE = new Bindings(Map.of(), false);
+
+        /**
+         * Returns a type as seen from the class the bindings were made for
+         */
+        public String apply(String type) {
+            return substitute(raw ? eraseArguments(type) : type, variables);
+        }
+    }
+
+    // java.util.List<T>[] -> java.util.List[]
+    private static String eraseArguments(String type) {
+        StringBuilder sb = new StringBuilder(type.length());
+        int depth = 0;
+        for (int i = 0; i < type.length(); i++) {
+            char c = type.charAt(i);
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            } else if (depth == 0) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String substitute(String type, Map<String, String> bindings) {
+        if (bindings.isEmpty()) {
+            return type;
+        }
+        StringBuilder sb = new StringBuilder(type.length());
+        int i = 0;
+        while (i < type.length()) {
+            char c = type.charAt(i);
+            if (!Character.isJavaIdentifierStart(c)) {
+                sb.append(c);
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < type.length() && Character.isJavaIdentifierPart(type.charAt(i))) {
+                i++;
+            }
+            String word = type.substring(start, i);
+            // A qualified name's segments are not type variables
+            String bound = start > 0 && type.charAt(start - 1) == '.' ? null : bindings.get(word);
+            sb.append(bound != null ? bound : word);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the type parameters a class declares as {name, erased bound}, read
+     * from its scanned header
+     */
+    private static List<String[]> typeParameters(ClassSnapshot snapshot) {
+        if (snapshot.headerSpan() == null) {
+            return List.of();
+        }
+        String header = snapshot.headerSpan().text();
+        Matcher m = Pattern.compile("\\b(?:class|interface)\\s+" + Pattern.quote(snapshot.className()) + "\\s*<")
+                .matcher(header);
+        if (!m.find()) {
+            return List.of();
+        }
+        int depth = 1;
+        int end = m.end();
+        while (end < header.length() && depth > 0) {
+            char c = header.charAt(end++);
+            depth += c == '<' ? 1 : c == '>' ? -1 : 0;
+        }
+        List<String[]> parameters = new ArrayList<>();
+        for (String parameter : JavaClassScan.splitTopLevel(header.substring(m.end(), end - 1))) {
+            String[] parts = parameter.split("\\s+extends\\s+", 2);
+            String bound = parts.length == 2 ? erase(parts[1].split("&")[0]) : "Object";
+            parameters.add(new String[]{parts[0].trim(), bound});
+        }
+        return parameters;
+    }
+
+    /**
+     * Returns the supertypes a class names, without type arguments: the
+     * superclass first, or for an interface every interface it extends
+     */
+    public static List<String> supertypes(ClassSnapshot snapshot) {
+        List<String> names = new ArrayList<>();
+        if (snapshot.extendsClass() != null) {
+            for (String type : JavaClassScan.splitTopLevel(snapshot.extendsClass())) {
+                names.add(erase(type));
+            }
+        }
+        for (String type : snapshot.implementsInterfaces()) {
+            names.add(erase(type));
+        }
+        return names;
+    }
+
+    public static String simpleName(String typeName) {
+        return typeName.substring(typeName.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Returns name(type, ...) with the parameter types erased, so two methods
+     * the compiler cannot tell apart get the same signature
+     */
+    public static String signature(MethodSnapshot method) {
+        return signature(method.name(), method.parameters());
+    }
+
+    public static String signature(String name, List<ParameterSnapshot> parameters) {
+        StringBuilder sb = new StringBuilder(name).append('(');
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(eraseParameter(parameters.get(i).type()));
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * Returns whether concrete implements abstractMethod: same name and parameter
+     * types, where a type variable of the abstract method matches any type
+     */
+    public static boolean implementsMethod(MethodSnapshot concrete, MethodSnapshot abstractMethod) {
+        if (!concrete.name().equals(abstractMethod.name())
+                || concrete.parameters().size() != abstractMethod.parameters().size()) {
+            return false;
+        }
+        for (int i = 0; i < concrete.parameters().size(); i++) {
+            String expected = eraseParameter(abstractMethod.parameters().get(i).type());
+            String actual = eraseParameter(concrete.parameters().get(i).type());
+            if (!expected.equals(actual) && !isTypeVariable(expected)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Members members(ClassSnapshot snapshot, Set<String> resolving) {
+        Members known = members.get(snapshot.className());
+        if (known == null) {
+            resolving.add(snapshot.className());
+            known = resolve(snapshot, resolving);
+            resolving.remove(snapshot.className());
+            members.put(snapshot.className(), known);
+        }
+        return known;
+    }
+
+    private Members resolve(ClassSnapshot snapshot, Set<String> resolving) {
+        Map<String, MethodSnapshot> concrete = new LinkedHashMap<>();
+        List<InheritedMethod> abstracts = new ArrayList<>();
+        boolean superclassKnown = true;
+        for (MethodSnapshot method : snapshot.methods()) {
+            if (method.isStatic()) {
+                continue;
+            }
+            if (method.isAbstract()) {
+                abstracts.add(new InheritedMethod(snapshot.className(), snapshot.isInterface(), method));
+            } else {
+                concrete.putIfAbsent(signature(method), method);
+            }
+        }
+        List<String> supertypes = supertypes(snapshot);
+        for (int i = 0; i < supertypes.size(); i++) {
+            boolean superclass = i == 0 && !snapshot.isInterface() && snapshot.extendsClass() != null;
+            String name = simpleName(supertypes.get(i));
+            ClassSnapshot supertype = workspaceIndex.getByClassName(name);
+            if (supertype == null || resolving.contains(name)) {
+                superclassKnown &= !superclass;
+                continue;
+            }
+            Members inherited = members(supertype, resolving);
+            for (MethodSnapshot method : inherited.concrete()) {
+                concrete.putIfAbsent(signature(method), method);
+            }
+            abstracts.addAll(inherited.pending());
+            superclassKnown &= !superclass || inherited.superclassKnown();
+        }
+
+        List<InheritedMethod> pending = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (InheritedMethod candidate : abstracts) {
+            if (!seen.add(signature(candidate.method()))) {
+                continue;
+            }
+            boolean implemented = false;
+            for (MethodSnapshot method : concrete.values()) {
+                if (implementsMethod(method, candidate.method())) {
+                    implemented = true;
+                    break;
+                }
+            }
+            if (!implemented) {
+                pending.add(candidate);
+            }
+        }
+        return new Members(List.copyOf(concrete.values()), List.copyOf(pending), superclassKnown);
+    }
+
+    private void link(ClassSnapshot snapshot) {
+        for (String supertype : supertypes(snapshot)) {
+            subtypes.computeIfAbsent(simpleName(supertype), name -> new HashSet<>()).add(snapshot.className());
+        }
+    }
+
+    private void unlink(ClassSnapshot snapshot) {
+        for (String supertype : supertypes(snapshot)) {
+            Set<String> below = subtypes.get(simpleName(supertype));
+            if (below != null) {
+                below.remove(snapshot.className());
+                if (below.isEmpty()) {
+                    subtypes.remove(simpleName(supertype));
+                }
+            }
+        }
+    }
+
+    // The classes and everything below them
+    private Set<String> below(List<String> classNames) {
+        Set<String> affected = new HashSet<>(classNames);
+        ArrayDeque<String> queue = new ArrayDeque<>(classNames);
+        while (!queue.isEmpty()) {
+            Set<String> direct = subtypes.get(queue.poll());
+            if (direct != null) {
+                for (String subtype : direct) {
+                    if (affected.add(subtype)) {
+                        queue.add(subtype);
+                    }
+                }
+            }
+        }
+        return affected;
+    }
+
+    private static String erase(String type) {
+        int generic = type.indexOf('<');
+        return (generic < 0 ? type : type.substring(0, generic)).trim();
+    }
+
+    // java.util.List<String> -> List, String... -> String[]
+    private static String eraseParameter(String type) {
+        StringBuilder sb = new StringBuilder(type.length());
+        int depth = 0;
+        for (int i = 0; i < type.length(); i++) {
+            char c = type.charAt(i);
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            } else if (depth == 0 && !Character.isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        String erased = sb.toString();
+        if (erased.endsWith("...")) {
+            erased = erased.substring(0, erased.length() - 3) + "[]";
+        }
+        int dims = erased.indexOf('[');
+        String base = dims < 0 ? erased : erased.substring(0, dims);
+        return simpleName(base) + (dims < 0 ? "" : erased.substring(dims));
+    }
+
+    private static boolean isTypeVariable(String erasedType) {
+        return !erasedType.isEmpty() && Character.isUpperCase(erasedType.charAt(0))
+                && (erasedType.length() == 1 || erasedType.charAt(1) == '[');
+    }
+}
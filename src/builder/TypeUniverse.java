@@ -0,0 +1,341 @@
+package builder;
+
+import exception.InvalidNameException;
+import exception.UnknownTypeException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import model.ClassSnapshot;
+import util.PrefixTrie;
+import util.TypeIndex;
+import util.ValidationUtils;
+
+/**
+ * Every type name a field, method or parameter may use: primitives, the JDK and
+ * class path types of the TypeIndex, and the types of the workspace. Checks
+ * that a type refers only to known names and completes partial names.
+ *
+ * The JDK and class path names go into one trie built on first use. Workspace
+ * names are the indexed classes plus the name of every .java file, so enums and
+ * records, which the index cannot hold, are known too. The files are listed by
+ * one walk of the workspace and then kept current through filesChanged, which
+ * the folder watcher feeds; lookups never walk the tree again. Completion uses a
+ * small trie of the workspace names, rebuilt from memory after they changed.
+ */
+public class TypeUniverse implements WorkspaceIndex.Listener {
+    private static final List<String> PRIMITIVES = List.of(
+            "boolean", "byte", "char", "double", "float", "int", "long", "short", "void");
+
+    private final WorkspaceIndex workspaceIndex;
+    private PrefixTrie libraryTypes;
+    private TypeIndex typeIndex;
+    private volatile PrefixTrie workspaceTypes;
+    // Every .java file below the root with its name, and how many files have each name
+    private final Map<Path, String> workspaceFiles = new ConcurrentHashMap<>();
+    private final Map<String, Integer> fileNameCounts = new ConcurrentHashMap<>();
+    private volatile boolean filesListed;
+
+    public TypeUniverse(WorkspaceIndex workspaceIndex) {
+        this.workspaceIndex = workspaceIndex;
+        workspaceIndex.addListener(this);
+    }
+
+    @Override
+    public void classChanged(Path file, ClassSnapshot before, ClassSnapshot after) {
+        if (before == null || after == null || !before.className().equals(after.className())) {
+            workspaceTypes = null;
+        }
+    }
+
+    /**
+     * Updates the workspace file names for paths reported changed, as
+     * WorkspaceIndex.refresh does for classes: a folder is listed again and a path
+     * that no longer exists drops every file at or below it
+     */
+    public synchronized void filesChanged(Collection<Path> changed) {
+        if (!filesListed) {
+            // The first listing has yet to run and will see these files
+            return;
+        }
+        for (Path path : changed) {
+            Path normalized = path.toAbsolutePath().normalize();
+            if (Files.isDirectory(normalized)) {
+                removeMissing(normalized);
+                addFiles(normalized);
+            } else if (Files.isRegularFile(normalized)) {
+                addFile(normalized);
+            } else {
+                removeMissing(normalized);
+            }
+        }
+    }
+
+    public void validate(String type) throws InvalidNameException {
+        validate(type, Set.of());
+    }
+
+    /**
+     * Checks the syntax of a type and that every name in it is known. Single
+     * capital letters are accepted as type variables.
+     *
+     * @param localNames Further names valid where the type is used, such as the
+     *                   class being edited and its type variables
+     * @throws UnknownTypeException If the type names an unknown type; the message
+     *                              suggests close matches
+     * @throws InvalidNameException If the type is malformed
+     */
+    public void validate(String type, Set<String> localNames) throws InvalidNameException {
+        ValidationUtils.validateType(type);
+        if (!hasLibrary()) {
+            // No type index available: fall back to the syntax check alone
+            return;
+        }
+        List<String> unknown = new ArrayList<>();
+        forEachTypeName(type, name -> {
+            if (!localNames.contains(name) && !isKnown(name)) {
+                unknown.add(name);
+            }
+        });
+        if (!unknown.isEmpty()) {
+            String name = unknown.get(0);
+            List<String> suggestions = suggest(name.substring(name.lastIndexOf('.') + 1), 5);
+            throw new UnknownTypeException("Unknown type: " + name
+                    + (suggestions.isEmpty() ? "" : ". Did you mean " + String.join(", ", suggestions) + "?"));
+        }
+    }
+
+    /**
+     * Returns whether the JDK and class path types are known, so a name missing
+     * from the universe really is unknown
+     */
+    public boolean hasLibrary() {
+        return library().size() > 0;
+    }
+
+    /**
+     * Returns whether a simple (String), nested (Map.Entry) or qualified
+     * (java.util.List) type name is known
+     */
+    public boolean isKnown(String dottedName) {
+        String[] parts = dottedName.split("\\.");
+        if (!Character.isLowerCase(parts[0].charAt(0)) || parts.length == 1) {
+            // Simple name, possibly followed by nested type names the index does not list
+            return isKnownSimpleName(parts[0]);
+        }
+        // Package segments up to the first capitalized one
+        int first = 0;
+        while (first < parts.length && Character.isLowerCase(parts[first].charAt(0))) {
+            first++;
+        }
+        if (first == parts.length) {
+            return false;
+        }
+        String packageName = String.join(".", List.of(parts).subList(0, first));
+        String simpleName = parts[first];
+        ClassSnapshot local = workspaceIndex.getByClassName(simpleName);
+        if (local != null && packageName.equals(local.packageName())) {
+            return true;
+        }
+        library();
+        return typeIndex.contains(packageName, simpleName);
+    }
+
+    private boolean isKnownSimpleName(String name) {
+        if (name.length() == 1 && Character.isUpperCase(name.charAt(0))) {
+            return true;
+        }
+        return library().contains(name) || workspaceIndex.getByClassName(name) != null
+                || listFiles().containsKey(name);
+    }
+
+    /**
+     * Returns up to limit known names starting with prefix, in sorted order
+     */
+    public List<String> complete(String prefix, int limit) {
+        TreeSet<String> merged = new TreeSet<>(library().complete(prefix, limit));
+        merged.addAll(workspace().complete(prefix, limit));
+        List<String> completions = new ArrayList<>(limit);
+        for (String name : merged) {
+            if (completions.size() == limit) {
+                break;
+            }
+            completions.add(name);
+        }
+        return completions;
+    }
+
+    public int countCompletions(String prefix) {
+        return library().countCompletions(prefix) + workspace().countCompletions(prefix);
+    }
+
+    /**
+     * Suggests names for a misspelled one: the names it is a prefix of, or else
+     * names with the same first letter at most two edits away
+     */
+    public List<String> suggest(String name, int limit) {
+        if (name.isEmpty()) {
+            return List.of();
+        }
+        List<String> completions = complete(name, limit);
+        if (!completions.isEmpty()) {
+            return completions;
+        }
+        String first = name.substring(0, 1);
+        List<String> candidates = new ArrayList<>(library().complete(first, Integer.MAX_VALUE));
+        candidates.addAll(workspace().complete(first, Integer.MAX_VALUE));
+        List<String> close = new ArrayList<>();
+        List<Integer> distances = new ArrayList<>();
+        for (String candidate : candidates) {
+            int distance = editDistance(name, candidate, 2);
+            if (distance <= 2) {
+                close.add(candidate);
+                distances.add(distance);
+            }
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < close.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingInt((Integer i) -> distances.get(i)).thenComparing(close::get));
+        List<String> suggestions = new ArrayList<>();
+        for (int i = 0; i < order.size() && i < limit; i++) {
+            suggestions.add(close.get(order.get(i)));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Levenshtein distance, or max + 1 once it is certain to exceed max
+     */
+    private static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private synchronized PrefixTrie library() {
+        if (libraryTypes == null) {
+            typeIndex = TypeIndex.get();
+            Set<String> names = new HashSet<>(typeIndex.simpleNames());
+            if (!names.isEmpty()) {
+                names.addAll(PRIMITIVES);
+            }
+            libraryTypes = new PrefixTrie(names);
+        }
+        return libraryTypes;
+    }
+
+    private PrefixTrie workspace() {
+        PrefixTrie trie = workspaceTypes;
+        if (trie == null) {
+            Set<String> names = new HashSet<>(listFiles().keySet());
+            for (ClassSnapshot snapshot : workspaceIndex.getClasses()) {
+                names.add(snapshot.className());
+            }
+            trie = new PrefixTrie(names);
+            workspaceTypes = trie;
+        }
+        return trie;
+    }
+
+    // The names of the workspace's .java files, listing them on first use
+    private Map<String, Integer> listFiles() {
+        if (!filesListed) {
+            synchronized (this) {
+                if (!filesListed) {
+                    addFiles(workspaceIndex.getRoot());
+                    filesListed = true;
+                }
+            }
+        }
+        return fileNameCounts;
+    }
+
+    private void addFiles(Path folder) {
+        try (Stream<Path> walk = Files.walk(folder)) {
+            walk.filter(Files::isRegularFile).forEach(file -> addFile(file.toAbsolutePath().normalize()));
+        } catch (IOException | UncheckedIOException e) {
+            // Files that cannot be listed are not known
+        }
+    }
+
+    private void addFile(Path file) {
+        String fileName = file.getFileName().toString();
+        if (!fileName.endsWith(".java") || fileName.contains("-")) {
+            return;
+        }
+        String name = fileName.substring(0, fileName.length() - ".java".length());
+        if (workspaceFiles.put(file, name) == null) {
+            fileNameCounts.merge(name, 1, Integer::sum);
+            workspaceTypes = null;
+        }
+    }
+
+    // Forgets the files at or below path that no longer exist
+    private void removeMissing(Path path) {
+        for (Path known : new ArrayList<>(workspaceFiles.keySet())) {
+            if (known.startsWith(path) && !Files.exists(known)) {
+                String name = workspaceFiles.remove(known);
+                if (name != null) {
+                    fileNameCounts.computeIfPresent(name, (key, count) -> count == 1 ? null : count - 1);
+                    workspaceTypes = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls action with every dotted name in a type such as
+     * Map.Entry&lt;String, List&lt;? extends Number&gt;&gt;[], skipping wildcard keywords
+     */
+    static void forEachTypeName(String type, Consumer<String> action) {
+        int i = 0;
+        while (i < type.length()) {
+            if (!Character.isJavaIdentifierStart(type.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < type.length() && (type.charAt(i) == '.' || Character.isJavaIdentifierPart(type.charAt(i)))) {
+                i++;
+            }
+            String name = type.substring(start, i);
+            if (!name.equals("extends") && !name.equals("super")) {
+                action.accept(name);
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package builder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import exception.InvalidNameException;
+import model.ClassSnapshot;
+import util.FileManager;
+import util.Metrics;
+import util.SourceArchive;
+
+/**
+ * Index of the classes in a working folder, keyed by file and by class name.
+ * Holds the scanned snapshot of every file so other features can look classes
+ * up without re-reading them. Safe to read from any thread while it is refreshed.
+ *
+ * An index can also be opened on a zip or jar of sources; its files are then
+ * entries of the archive, read in place, and it must be closed after use.
+ */
+public class WorkspaceIndex implements Closeable {
+
+    /**
+     * Notified after a file was re-scanned; before or after is null when the
+     * class was added or removed
+     */
+    public interface Listener {
+        void classChanged(Path file, ClassSnapshot before, ClassSnapshot after);
+    }
+
+    private final Path root;
+    private final ConcurrentHashMap<Path, ClassSnapshot> byFile = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Path> byClassName = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final CountDownLatch firstScan = new CountDownLatch(1);
+    // The zip file system of an archive index, null for a folder
+    private final FileSystem archive;
+
+    public WorkspaceIndex(Path root) {
+        this(root, null);
+    }
+
+    private WorkspaceIndex(Path root, FileSystem archive) {
+        this.root = root.toAbsolutePath().normalize();
+        this.archive = archive;
+    }
+
+    /**
+     * Opens an index on the sources in a zip or jar. Nothing is scanned until
+     * refreshAll, which scans the entries in parallel like the files of a folder.
+     */
+    public static WorkspaceIndex ofArchive(Path archive) throws IOException {
+        FileSystem fileSystem = SourceArchive.mount(archive);
+        return new WorkspaceIndex(fileSystem.getPath("/"), fileSystem);
+    }
+
+    /**
+     * Releases the archive of an archive index; does nothing for a folder
+     */
+    @Override
+    public void close() throws IOException {
+        if (archive != null) {
+            archive.close();
+        }
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public ClassSnapshot getByClassName(String className) {
+        Path file = byClassName.get(className);
+        return file == null ? null : byFile.get(file);
+    }
+
+    public Path getPath(String className) {
+        return byClassName.get(className);
+    }
+
+    /**
+     * Returns the file declaring a class, wherever its package put it. A class the
+     * index does not know is waited for until the first scan is done, then looked
+     * for as Name.java in the root. Returns null if there is no such file.
+     */
+    public Path locate(String className) {
+        Path file = byClassName.get(className);
+        if (file == null && !isFirstScanDone()) {
+            try {
+                awaitFirstScan();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            file = byClassName.get(className);
+        }
+        if (file != null && Files.isRegularFile(file)) {
+            return file;
+        }
+        Path flat = root.resolve(className + ".java");
+        return Files.isRegularFile(flat) ? flat : null;
+    }
+
+    public ClassSnapshot getByFile(Path file) {
+        return byFile.get(normalize(file));
+    }
+
+    public Collection<ClassSnapshot> getClasses() {
+        return byFile.values();
+    }
+
+    public Collection<Path> getFiles() {
+        return byFile.keySet();
+    }
+
+    public int size() {
+        return byFile.size();
+    }
+
+    /**
+     * Blocks until the whole root has been scanned once, so lookups see every class
+     */
+    public void awaitFirstScan() throws InterruptedException {
+        firstScan.await();
+    }
+
+    public boolean isFirstScanDone() {
+        return firstScan.getCount() == 0;
+    }
+
+    /**
+     * Re-scans every Java file under the root and drops entries whose files are gone
+     */
+    public void refreshAll() {
+        refresh(root);
+    }
+
+    /**
+     * Re-scans only the given paths. A directory is re-scanned recursively and a
+     * path that no longer exists removes every entry at or below it.
+     */
+    public void refresh(Collection<Path> changed) {
+        for (Path path : changed) {
+            refresh(path);
+        }
+    }
+
+    private void refresh(Path path) {
+        Path normalized = normalize(path);
+        try {
+            refreshPath(normalized);
+        } finally {
+            if (normalized.equals(root)) {
+                firstScan.countDown();
+            }
+        }
+    }
+
+    private void refreshPath(Path normalized) {
+        if (Files.isDirectory(normalized)) {
+            List<Path> javaFiles;
+            try (Stream<Path> walk = Files.walk(normalized)) {
+                javaFiles = walk.filter(WorkspaceIndex::isJavaFile).map(WorkspaceIndex::normalize)
+                        .collect(Collectors.toList());
+            } catch (IOException e) {
+                return;
+            }
+            javaFiles.parallelStream().forEach(this::refreshFile);
+            // Files that disappeared below this directory
+            for (Path known : new ArrayList<>(byFile.keySet())) {
+                if (known.startsWith(normalized) && !Files.exists(known)) {
+                    removeFile(known);
+                }
+            }
+        } else if (Files.exists(normalized)) {
+            if (isJavaFile(normalized)) {
+                refreshFile(normalized);
+            }
+        } else {
+            for (Path known : new ArrayList<>(byFile.keySet())) {
+                if (known.startsWith(normalized)) {
+                    removeFile(known);
+                }
+            }
+        }
+    }
+
+    private void refreshFile(Path file) {
+        ClassSnapshot after;
+        try {
+            JavaClassScan.checkSize(Files.size(file));
+            after = scan(byFile.get(file), FileManager.readFile(file));
+            if (after == null) {
+                return;
+            }
+        } catch (Exception e) {
+            // Unreadable, over the scan limits or not a class: it is not part of the index
+            removeFile(file);
+            return;
+        }
+        ClassSnapshot before = byFile.put(file, after);
+        if (before != null && !before.className().equals(after.className())) {
+            byClassName.remove(before.className(), file);
+        }
+        byClassName.put(after.className(), file);
+        if (!after.equals(before)) {
+            fireChanged(file, before, after);
+        }
+    }
+
+    /**
+     * Scans the new text of a file. If it was indexed before, only the members around
+     * the changed range are re-parsed; the range is found by comparing the old and new
+     * text from both ends. Returns null if the text did not change.
+     */
+    private static ClassSnapshot scan(ClassSnapshot previous, String source) throws InvalidNameException {
+        if (previous == null || previous.headerSpan() == null) {
+            Metrics.CACHE_MISSES.increment();
+            return JavaClassScan.scan(source).snapshot();
+        }
+        TextEdit edit = TextEdit.between(previous.headerSpan().getSource().toString(), source);
+        if (edit == null) {
+            Metrics.CACHE_HITS.increment();
+            return null;
+        }
+        Metrics.CACHE_MISSES.increment();
+        return JavaClassScan.rescan(JavaClassBuilder.fromSnapshot(previous), source, edit).snapshot();
+    }
+
+    private void removeFile(Path file) {
+        ClassSnapshot before = byFile.remove(file);
+        if (before != null) {
+            byClassName.remove(before.className(), file);
+            fireChanged(file, before, null);
+        }
+    }
+
+    private void fireChanged(Path file, ClassSnapshot before, ClassSnapshot after) {
+        for (Listener listener : listeners) {
+            listener.classChanged(file, before, after);
+        }
+    }
+
+    private static boolean isJavaFile(Path path) {
+        return path.getFileName() != null && path.getFileName().toString().endsWith(".java")
+                && Files.isRegularFile(path);
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
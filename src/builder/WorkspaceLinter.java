@@ -0,0 +1,287 @@
+package builder;
+
+import exception.InvalidNameException;
+import exception.ScanLimitException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import model.ClassSnapshot;
+import model.Constructor;
+import model.Field;
+import model.Method;
+import model.Parameter;
+import model.SourceSpan;
+import util.FileManager;
+import util.SourceArchive;
+import util.ValidationUtils;
+
+/**
+ * Checks every class below a folder against the ValidationUtils rules: class,
+ * package, field, method and parameter names (including keyword clashes) and
+ * every type the class declares. Directories and files are linted in parallel
+ * on the common fork-join pool, and each finding is reported as soon as it is
+ * found. Hidden directories are skipped.
+ */
+public final class WorkspaceLinter {
+    // Files per task once a directory's files are split up
+    private static final int BATCH = 16;
+
+    /**
+     * A rule a class broke. line counts from 1, or is 0 if the element has no
+     * position in the file.
+     */
+    public record Finding(Path file, int line, String rule, String message) {
+    }
+
+    /**
+     * Result of a run. unparsed counts the .java files that do not declare a
+     * class or interface the scanner can read (enums, records, module-info, ...);
+     * they are not linted. Files too large or too slow to scan are reported as
+     * "scan limit" findings instead.
+     */
+    public record Summary(long files, long unparsed, long unreadable, Map<String, Long> findingsByRule, long millis) {
+        public long findings() {
+            long total = 0;
+            for (long count : findingsByRule.values()) {
+                total += count;
+            }
+            return total;
+        }
+    }
+
+    private interface Check {
+        void check(String value) throws InvalidNameException;
+    }
+
+    private final Consumer<Finding> listener;
+    private final LongAdder files = new LongAdder();
+    private final LongAdder unparsed = new LongAdder();
+    private final LongAdder unreadable = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> byRule = new ConcurrentHashMap<>();
+
+    private WorkspaceLinter(Consumer<Finding> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Lints every .java file below root, a folder or a zip or jar of sources
+     *
+     * @param listener Receives each finding as it is found; called from pool
+     *                 threads, possibly at the same time
+     */
+    public static Summary lint(Path root, Consumer<Finding> listener) throws IOException {
+        if (SourceArchive.isArchive(root)) {
+            // Its entries are linted like files, paths inside the archive
+            try (FileSystem archive = SourceArchive.mount(root)) {
+                return lint(archive.getPath("/"), listener);
+            }
+        }
+        if (!Files.isDirectory(root)) {
+            throw new IOException("Not a folder or a zip or jar archive: " + root);
+        }
+        long start = System.nanoTime();
+        WorkspaceLinter linter = new WorkspaceLinter(listener);
+        ForkJoinPool.commonPool().invoke(linter.new FolderTask(root));
+        return linter.summary(start);
+    }
+
+    /**
+     * Lints every class of an index, such as one opened on a source archive,
+     * from the snapshots it holds, without reading or scanning files again
+     */
+    public static Summary lint(WorkspaceIndex index, Consumer<Finding> listener) {
+        long start = System.nanoTime();
+        WorkspaceLinter linter = new WorkspaceLinter(listener);
+        index.getFiles().parallelStream().forEach(file -> {
+            ClassSnapshot snapshot = index.getByFile(file);
+            if (snapshot != null) {
+                linter.files.increment();
+                linter.check(JavaClassBuilder.fromSnapshot(snapshot), file);
+            }
+        });
+        return linter.summary(start);
+    }
+
+    private Summary summary(long start) {
+        Map<String, Long> findingsByRule = new TreeMap<>();
+        byRule.forEach((rule, count) -> findingsByRule.put(rule, count.sum()));
+        return new Summary(files.sum(), unparsed.sum(), unreadable.sum(), findingsByRule,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Lints one scanned class
+     */
+    public static void lint(JavaClassBuilder builder, Path file, Consumer<Finding> listener) {
+        new WorkspaceLinter(listener).check(builder, file);
+    }
+
+    /**
+     * Forks a task per subfolder and lints the folder's own files in batches
+     */
+    private final class FolderTask extends RecursiveAction {
+        private final Path folder;
+
+        FolderTask(Path folder) {
+            this.folder = folder;
+        }
+
+        @Override
+        protected void compute() {
+            List<RecursiveAction> tasks = new ArrayList<>();
+            List<Path> javaFiles = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+                for (Path entry : entries) {
+                    String name = entry.getFileName().toString();
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        if (!name.startsWith(".")) {
+                            tasks.add(new FolderTask(entry));
+                        }
+                    } else if (name.endsWith(".java")) {
+                        javaFiles.add(entry);
+                    }
+                }
+            } catch (IOException e) {
+                unreadable.increment();
+                return;
+            }
+            for (int from = 0; from < javaFiles.size(); from += BATCH) {
+                tasks.add(new FilesTask(javaFiles, from, Math.min(from + BATCH, javaFiles.size())));
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    private final class FilesTask extends RecursiveAction {
+        private final List<Path> javaFiles;
+        private final int from;
+        private final int to;
+
+        FilesTask(List<Path> javaFiles, int from, int to) {
+            this.javaFiles = javaFiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = from; i < to; i++) {
+                lintFile(javaFiles.get(i));
+            }
+        }
+    }
+
+    private void lintFile(Path file) {
+        files.increment();
+        String source;
+        JavaClassBuilder builder;
+        try {
+            // Before reading, so a huge file is not loaded at all
+            JavaClassScan.checkSize(Files.size(file));
+            source = FileManager.readFile(file);
+            builder = JavaClassScan.scan(source);
+        } catch (IOException e) {
+            unreadable.increment();
+            return;
+        } catch (ScanLimitException e) {
+            report(new Finding(file, 0, "scan limit", e.getMessage()));
+            return;
+        } catch (InvalidNameException | RuntimeException e) {
+            unparsed.increment();
+            return;
+        }
+        check(builder, file);
+    }
+
+    private void check(JavaClassBuilder builder, Path file) {
+        SourceSpan header = builder.getHeaderSpan();
+        run(file, header, "class name", builder.getClassName(), ValidationUtils::validateClassName);
+        run(file, header, "package name", builder.getPackageName(), ValidationUtils::validatePackageName);
+        if (builder.getExtendsClass() != null) {
+            // An interface may extend several
+            for (String type : JavaClassScan.splitTopLevel(builder.getExtendsClass())) {
+                run(file, header, "type", type, ValidationUtils::validateType);
+            }
+        }
+        for (String type : builder.getImplementsInterfaces()) {
+            run(file, header, "type", type, ValidationUtils::validateType);
+        }
+
+        for (Field field : builder.getFields()) {
+            SourceSpan span = field.getSpan();
+            // Constants are conventionally upper case, so only their identifier is checked
+            if (builder.isInterface() || (field.isStatic() && field.isFinal())) {
+                run(file, span, "constant name", field.getName(), ValidationUtils::validateIdentifier);
+            } else {
+                run(file, span, "field name", field.getName(), ValidationUtils::validateVariableName);
+            }
+            run(file, span, "visibility", field.getVisibility(), ValidationUtils::validateVisibility);
+            run(file, span, "type", field.getType(), ValidationUtils::validateType);
+        }
+        for (Method method : builder.getMethods()) {
+            SourceSpan span = method.getSpan();
+            run(file, span, "method name", method.getName(), ValidationUtils::validateMethodName);
+            run(file, span, "visibility", method.getVisibility(), ValidationUtils::validateVisibility);
+            run(file, span, "type", method.getReturnType(), ValidationUtils::validateType);
+            checkParameters(file, span, method.getParameters());
+        }
+        for (Constructor constructor : builder.getConstructors()) {
+            SourceSpan span = constructor.getSpan();
+            run(file, span, "visibility", constructor.getVisibility(), ValidationUtils::validateVisibility);
+            checkParameters(file, span, constructor.getParameters());
+        }
+    }
+
+    private void checkParameters(Path file, SourceSpan span, List<Parameter> parameters) {
+        for (Parameter parameter : parameters) {
+            run(file, span, "parameter name", parameter.getName(), ValidationUtils::validateVariableName);
+            String type = parameter.getType();
+            if (type.endsWith("...")) {
+                type = type.substring(0, type.length() - 3).trim();
+            }
+            run(file, span, "type", type, ValidationUtils::validateType);
+        }
+    }
+
+    private void run(Path file, SourceSpan span, String rule, String value, Check check) {
+        try {
+            check.check(value);
+        } catch (InvalidNameException e) {
+            report(new Finding(file, lineOf(span, value), rule, e.getMessage()));
+        }
+    }
+
+    private void report(Finding finding) {
+        byRule.computeIfAbsent(finding.rule(), r -> new LongAdder()).increment();
+        listener.accept(finding);
+    }
+
+    // Line of the value within the element, past any javadoc and annotations it starts with
+    private static int lineOf(SourceSpan span, String value) {
+        if (span == null) {
+            return 0;
+        }
+        String source = span.getSource().toString();
+        int at = value == null || value.isEmpty() ? -1 : source.indexOf(value, span.getStart());
+        int end = at >= 0 && at < span.getEnd() ? at : span.getStart();
+        int line = 1;
+        for (int i = 0; i < end; i++) {
+            if (source.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+}
@@ -0,0 +1,290 @@
+package builder;
+
+import exception.DuplicateElementException;
+import exception.InvalidNameException;
+import exception.StaleFileException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import model.ClassSnapshot;
+import util.FileChange;
+import util.FileManager;
+import util.FileVersion;
+import util.VersionedContent;
+
+/**
+ * Renames a class, field or method in every workspace file that uses it. Only the
+ * files the reference index lists as mentioning the old name are read, along with
+ * the few files the index cannot scan, such as enums and records; they are
+ * rewritten in parallel and written back as one batch. Edits are spliced into the
+ * text as stored, so line endings and the final newline stay as they were.
+ *
+ * Renames work on identifier tokens, not on resolved types: a member is renamed
+ * everywhere in its class and subtypes, and only where it is accessed with a
+ * qualifier ("x.name", "X::name") in other files that mention one of them.
+ * The plan should be previewed before it is applied.
+ */
+public class WorkspaceRefactoring {
+
+    public enum Kind {
+        CLASS, FIELD, METHOD
+    }
+
+    /**
+     * The new content of one file and how many identifiers changed in it. For a
+     * class rename, the declaring file also moves to newFile.
+     */
+    public record FileRewrite(Path file, Path newFile, String before, String after, FileVersion version,
+                              int occurrences) {
+    }
+
+    public record Plan(Kind kind, String className, String oldName, String newName, List<FileRewrite> rewrites) {
+
+        public int occurrences() {
+            return rewrites.stream().mapToInt(FileRewrite::occurrences).sum();
+        }
+    }
+
+    private final WorkspaceIndex workspaceIndex;
+    private final ReferenceIndex referenceIndex;
+
+    public WorkspaceRefactoring(WorkspaceIndex workspaceIndex, ReferenceIndex referenceIndex) {
+        this.workspaceIndex = workspaceIndex;
+        this.referenceIndex = referenceIndex;
+    }
+
+    /**
+     * Computes the changes for renaming a class, its constructors and file, without writing anything
+     */
+    public Plan planClassRename(String oldName, String newName)
+            throws InvalidNameException, DuplicateElementException, IOException {
+        Path declaring = requireClass(oldName);
+        if (workspaceIndex.getPath(newName) != null) {
+            throw new DuplicateElementException("A class named " + newName + " already exists");
+        }
+        Set<Path> candidates = new HashSet<>(referenceIndex.filesMentioning(oldName));
+        referenceIndex.unindexedFiles().forEach((file, identifiers) -> {
+            if (identifiers.contains(oldName)) {
+                candidates.add(file);
+            }
+        });
+        List<FileRewrite> rewrites = rewriteAll(candidates, file -> (source, start, end) -> true, oldName, newName);
+        List<FileRewrite> moved = new ArrayList<>(rewrites.size());
+        for (FileRewrite rewrite : rewrites) {
+            Path newFile = rewrite.file().equals(declaring)
+                    ? declaring.resolveSibling(newName + ".java") : rewrite.file();
+            moved.add(new FileRewrite(rewrite.file(), newFile, rewrite.before(), rewrite.after(), rewrite.version(),
+                    rewrite.occurrences()));
+        }
+        return new Plan(Kind.CLASS, oldName, oldName, newName, moved);
+    }
+
+    /**
+     * Computes the changes for renaming a field or method declared in className
+     */
+    public Plan planMemberRename(Kind kind, String className, String oldName, String newName)
+            throws InvalidNameException, DuplicateElementException, IOException {
+        requireClass(className);
+        ClassSnapshot declaring = workspaceIndex.getByClassName(className);
+        if (kind == Kind.FIELD) {
+            if (declaring.getFieldByName(oldName) == null) {
+                throw new InvalidNameException("Class " + className + " has no field " + oldName);
+            }
+            if (declaring.getFieldByName(newName) != null) {
+                throw new DuplicateElementException("Class " + className + " already has a field " + newName);
+            }
+        } else {
+            if (declaring.getMethodByName(oldName) == null) {
+                throw new InvalidNameException("Class " + className + " has no method " + oldName);
+            }
+            if (declaring.getMethodByName(newName) != null) {
+                throw new DuplicateElementException("Class " + className + " already has a method " + newName);
+            }
+        }
+
+        // The member is visible unqualified in the class and its subtypes
+        Set<String> family = subtypesOf(className);
+        family.add(className);
+        Set<Path> familyFiles = family.stream().map(workspaceIndex::getPath).filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<Path> mentioningFamily = new HashSet<>();
+        for (String name : family) {
+            mentioningFamily.addAll(referenceIndex.filesMentioning(name));
+        }
+        Set<Path> candidates = new HashSet<>(referenceIndex.filesMentioning(oldName));
+        candidates.retainAll(mentioningFamily);
+        referenceIndex.unindexedFiles().forEach((file, identifiers) -> {
+            if (identifiers.contains(oldName) && family.stream().anyMatch(identifiers::contains)) {
+                candidates.add(file);
+            }
+        });
+
+        List<FileRewrite> rewrites = rewriteAll(candidates,
+                file -> memberFilter(kind, !familyFiles.contains(file)), oldName, newName);
+        return new Plan(kind, className, oldName, newName, rewrites);
+    }
+
+    /**
+     * Writes every rewrite of the plan as one batch, then refreshes the index for
+     * those files so a following rename sees the result
+     *
+     * @throws StaleFileException If a file changed since the plan was made; nothing is written then
+     */
+    public void apply(Plan plan) throws IOException, StaleFileException {
+        List<FileChange> changes = new ArrayList<>();
+        Set<Path> touched = new HashSet<>();
+        for (FileRewrite rewrite : plan.rewrites()) {
+            touched.add(rewrite.file());
+            touched.add(rewrite.newFile());
+            String folder = rewrite.newFile().getParent().toString();
+            String fileName = stem(rewrite.newFile());
+            if (rewrite.newFile().equals(rewrite.file())) {
+                changes.add(new FileChange(folder, fileName, rewrite.after(), rewrite.version()));
+            } else {
+                changes.add(new FileChange(folder, fileName, rewrite.after(), FileVersion.ABSENT));
+                changes.add(FileChange.delete(rewrite.file().getParent().toString(), stem(rewrite.file()),
+                        rewrite.version()));
+            }
+        }
+        FileManager.writeBatch(changes);
+        workspaceIndex.refresh(touched);
+    }
+
+    /**
+     * Decides whether an identifier token matching the old name is renamed
+     */
+    private interface TokenFilter {
+        boolean accept(CharSequence source, int start, int end);
+    }
+
+    private interface FilterFactory {
+        TokenFilter forFile(Path file);
+    }
+
+    private static List<FileRewrite> rewriteAll(Set<Path> candidates, FilterFactory filters, String oldName,
+                                                String newName) throws IOException {
+        try {
+            return candidates.parallelStream()
+                    .map(file -> rewrite(file, filters.forFile(file), oldName, newName))
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparing(FileRewrite::file))
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static FileRewrite rewrite(Path file, TokenFilter filter, String oldName, String newName) {
+        VersionedContent read;
+        try {
+            read = FileManager.readFileVersioned(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String source = read.content();
+        StringBuilder out = new StringBuilder(source.length() + 16);
+        int[] copied = {0};
+        int[] occurrences = {0};
+        SourceLexer.forEachIdentifier(source, 0, source.length(), (start, end) -> {
+            if (SourceLexer.regionEquals(source, start, end, oldName) && filter.accept(source, start, end)) {
+                out.append(source, copied[0], start).append(newName);
+                copied[0] = end;
+                occurrences[0]++;
+            }
+        });
+        if (occurrences[0] == 0) {
+            return null;
+        }
+        out.append(source, copied[0], source.length());
+        return new FileRewrite(file, file, source, out.toString(), read.version(), occurrences[0]);
+    }
+
+    /**
+     * Fields are identifiers not followed by '(' and methods identifiers followed by
+     * '(' or preceded by '::'. Outside the class family only qualified uses count.
+     */
+    private static TokenFilter memberFilter(Kind kind, boolean qualifiedOnly) {
+        return (source, start, end) -> {
+            int before = previousNonWhitespace(source, start);
+            boolean methodReference = before > 0 && source.charAt(before) == ':' && source.charAt(before - 1) == ':';
+            boolean qualified = methodReference || (before >= 0 && source.charAt(before) == '.');
+            if (qualifiedOnly && !qualified) {
+                return false;
+            }
+            int after = SourceLexer.skipWhitespace(source, end, source.length());
+            boolean call = after < source.length() && source.charAt(after) == '(';
+            return kind == Kind.METHOD ? call || methodReference : !call && !methodReference;
+        };
+    }
+
+    private static int previousNonWhitespace(CharSequence source, int pos) {
+        int i = pos - 1;
+        while (i >= 0 && Character.isWhitespace(source.charAt(i))) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the workspace classes and interfaces that extend or implement
+     * typeName, directly or not
+     */
+    private Set<String> subtypesOf(String typeName) {
+        Set<String> found = new HashSet<>();
+        List<String> frontier = new ArrayList<>(List.of(typeName));
+        while (!frontier.isEmpty()) {
+            Set<String> parents = new HashSet<>(frontier);
+            frontier.clear();
+            for (ClassSnapshot snapshot : workspaceIndex.getClasses()) {
+                if (!found.contains(snapshot.className()) && extendsAny(snapshot, parents)) {
+                    found.add(snapshot.className());
+                    frontier.add(snapshot.className());
+                }
+            }
+        }
+        return found;
+    }
+
+    private static boolean extendsAny(ClassSnapshot snapshot, Set<String> parents) {
+        if (snapshot.extendsClass() != null) {
+            // An interface may extend several interfaces
+            for (String parent : snapshot.extendsClass().split(",")) {
+                if (parents.contains(simpleName(parent))) {
+                    return true;
+                }
+            }
+        }
+        for (String parent : snapshot.implementsInterfaces()) {
+            if (parents.contains(simpleName(parent))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Path requireClass(String className) throws InvalidNameException {
+        Path file = workspaceIndex.getPath(className);
+        if (file == null) {
+            throw new InvalidNameException("No class named " + className + " in the workspace");
+        }
+        return file;
+    }
+
+    private static String simpleName(String type) {
+        int generic = type.indexOf('<');
+        String raw = (generic < 0 ? type : type.substring(0, generic)).trim();
+        return raw.substring(raw.lastIndexOf('.') + 1);
+    }
+
+    private static String stem(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".java") ? name.substring(0, name.length() - 5) : name;
+    }
+}
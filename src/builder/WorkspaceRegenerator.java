@@ -0,0 +1,126 @@
+package builder;
+
+import exception.InvalidNameException;
+import exception.StaleFileException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import util.Diff;
+import util.FileChange;
+import util.FileManager;
+import util.FileVersion;
+import util.VersionedContent;
+
+/**
+ * Regenerates every workspace class with buildClass() and writes the results
+ * back. preview() is the dry run: it compares each generated class with the
+ * file on disk, in parallel, and writes nothing. Generated files keep the line
+ * separator and final newline of the file they replace.
+ */
+public class WorkspaceRegenerator {
+
+    /**
+     * A file whose generated content differs from the one on disk. The diff is
+     * empty when only line ends differ, as in a file mixing \n and \r\n.
+     */
+    public record FileDiff(Path file, String generated, FileVersion version, Diff.Result diff) {
+    }
+
+    /**
+     * Result of a dry run. Unchanged files were recognized by their content hash
+     * and never diffed; skipped files could not be read or scanned.
+     */
+    public record Preview(List<FileDiff> changed, int unchanged, List<String> skipped) {
+    }
+
+    private final WorkspaceIndex workspaceIndex;
+
+    public WorkspaceRegenerator(WorkspaceIndex workspaceIndex) {
+        this.workspaceIndex = workspaceIndex;
+    }
+
+    /**
+     * Regenerates every class and diffs it against its file, without writing anything
+     *
+     * @param reformat If true, members are regenerated in the generator's format
+     *                 instead of keeping their scanned text
+     */
+    public Preview preview(boolean reformat) {
+        List<Outcome> outcomes = workspaceIndex.getFiles().parallelStream()
+                .map(file -> regenerate(file, reformat))
+                .collect(Collectors.toList());
+        List<FileDiff> changed = new ArrayList<>();
+        List<String> skipped = new ArrayList<>();
+        int unchanged = 0;
+        for (Outcome outcome : outcomes) {
+            if (outcome.error() != null) {
+                skipped.add(outcome.file().getFileName() + ": " + outcome.error());
+            } else if (outcome.diff() == null) {
+                unchanged++;
+            } else {
+                changed.add(outcome.diff());
+            }
+        }
+        changed.sort(Comparator.comparing(FileDiff::file));
+        skipped.sort(null);
+        return new Preview(changed, unchanged, skipped);
+    }
+
+    /**
+     * Writes the changed files of a preview as one batch
+     *
+     * @throws StaleFileException If a file changed since the preview; nothing is written then
+     */
+    public void apply(Preview preview) throws IOException, StaleFileException {
+        List<FileChange> changes = new ArrayList<>();
+        Set<Path> touched = new HashSet<>();
+        for (FileDiff diff : preview.changed()) {
+            String name = diff.file().getFileName().toString();
+            changes.add(new FileChange(diff.file().getParent().toString(),
+                    name.substring(0, name.length() - ".java".length()), diff.generated(), diff.version()));
+            touched.add(diff.file());
+        }
+        FileManager.writeBatch(changes);
+        workspaceIndex.refresh(touched);
+    }
+
+    private record Outcome(Path file, FileDiff diff, String error) {
+    }
+
+    private static Outcome regenerate(Path file, boolean reformat) {
+        try {
+            VersionedContent read = FileManager.readFileVersioned(file);
+            JavaClassBuilder builder = JavaClassScan.scan(read.content());
+            if (reformat) {
+                builder.discardSourceLayout();
+            }
+            String generated = withLineEnds(builder.buildClass(), read.content());
+            // Same bytes as on disk: writing would change nothing, so do not diff
+            if (FileVersion.hash(generated.getBytes(Charset.defaultCharset())).equals(read.version().hash())) {
+                return new Outcome(file, null, null);
+            }
+            Diff.Result diff = Diff.compare(read.content(), generated);
+            return new Outcome(file, new FileDiff(file, generated, read.version(), diff), null);
+        } catch (IOException | InvalidNameException e) {
+            return new Outcome(file, null, e.getMessage());
+        }
+    }
+
+    /**
+     * Converts generated code, which ends lines with \n and has no final newline,
+     * to the line separator of the original text, and ends it with a newline if
+     * the original did
+     */
+    private static String withLineEnds(String generated, String original) {
+        int newline = original.indexOf('\n');
+        String separator = newline > 0 && original.charAt(newline - 1) == '\r' ? "\r\n" : "\n";
+        String text = separator.equals("\n") ? generated : generated.replace("\n", separator);
+        return original.endsWith("\n") ? text + separator : text;
+    }
+}
@@ -0,0 +1,28 @@
+package event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("jcb.Build")
+@Label("Build Class")
+@Category({"Java Class Builder", "Model"})
+@Description("Java source generated from a class model")
+public class BuildEvent extends OutcomeEvent {
+    @Label("Class Name")
+    public String className;
+
+    @Label("Fields")
+    public int fields;
+
+    @Label("Methods")
+    public int methods;
+
+    @Label("Constructors")
+    public int constructors;
+
+    @Label("Output Length")
+    @Description("Length of the generated source in chars")
+    public long outputChars;
+}
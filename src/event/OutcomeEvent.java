@@ -0,0 +1,29 @@
+package event;
+
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Base of the application's flight recorder events. Commit with ok() or
+ * failed(e) once the operation ends; both are cheap when recording is off.
+ */
+public abstract class OutcomeEvent extends Event {
+    @Label("Outcome")
+    public String outcome;
+
+    public void ok() {
+        finish("ok");
+    }
+
+    public void failed(Throwable error) {
+        finish(error.getClass().getSimpleName() + ": " + error.getMessage());
+    }
+
+    public void finish(String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
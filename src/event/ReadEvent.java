@@ -0,0 +1,20 @@
+package event;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("jcb.Read")
+@Label("Read Class File")
+@Category({"Java Class Builder", "File"})
+@Description("Class file read from disk")
+public class ReadEvent extends OutcomeEvent {
+    @Label("Path")
+    public String path;
+
+    @Label("Bytes Read")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+}
@@ -0,0 +1,32 @@
+package event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("jcb.Scan")
+@Label("Scan Class")
+@Category({"Java Class Builder", "Model"})
+@Description("Java source parsed into a class model")
+public class ScanEvent extends OutcomeEvent {
+    @Label("Class Name")
+    public String className;
+
+    @Label("Fields")
+    public int fields;
+
+    @Label("Methods")
+    public int methods;
+
+    @Label("Constructors")
+    public int constructors;
+
+    @Label("Source Length")
+    @Description("Length of the scanned source in chars; Read events carry its size in bytes")
+    public long sourceChars;
+
+    @Label("Incremental")
+    @Description("Only the members around an edit were parsed")
+    public boolean incremental;
+}
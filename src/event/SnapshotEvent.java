@@ -0,0 +1,28 @@
+package event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("jcb.Snapshot")
+@Label("Undo Snapshot")
+@Category({"Java Class Builder", "Model"})
+@Description("Class model captured or restored for undo and redo")
+public class SnapshotEvent extends OutcomeEvent {
+    @Label("Operation")
+    @Description("save, undo or redo")
+    public String operation;
+
+    @Label("Class Name")
+    public String className;
+
+    @Label("Members")
+    public int members;
+
+    @Label("Undo Depth")
+    public int undoDepth;
+
+    @Label("Redo Depth")
+    public int redoDepth;
+}
@@ -0,0 +1,18 @@
+package event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("jcb.Validate")
+@Label("Validate Name")
+@Category({"Java Class Builder", "Validation"})
+@Description("A name or type checked against the Java rules")
+public class ValidateEvent extends OutcomeEvent {
+    @Label("Rule")
+    public String rule;
+
+    @Label("Value")
+    public String value;
+}
@@ -0,0 +1,23 @@
+package event;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("jcb.Write")
+@Label("Write Class File")
+@Category({"Java Class Builder", "File"})
+@Description("Class file written atomically under its lock, including the version check")
+public class WriteEvent extends OutcomeEvent {
+    @Label("Class Name")
+    public String className;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Bytes Written")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+}
@@ -0,0 +1,12 @@
+package exception;
+
+/**
+ * Exception thrown when a source file is too large, or takes too long, to scan.
+ * A subclass of InvalidNameException, so callers that skip sources they cannot
+ * read skip these as well.
+ */
+public class ScanLimitException extends InvalidNameException {
+    public ScanLimitException(String message) {
+        super(message);
+    }
+}
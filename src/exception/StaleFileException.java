@@ -0,0 +1,10 @@
+package exception;
+
+/**
+ * Exception thrown when a file was changed by someone else since it was loaded
+ */
+public class StaleFileException extends Exception {
+    public StaleFileException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package exception;
+
+/**
+ * Exception thrown when a well-formed type names a type that is not known.
+ * A subclass of InvalidNameException, so callers can still treat it as an
+ * invalid type, or catch it first and let the user keep the type.
+ */
+public class UnknownTypeException extends InvalidNameException {
+    public UnknownTypeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,165 @@
+package menu;
+
+import java.util.BitSet;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import util.LineIndex;
+import util.Metrics;
+import util.StartupTimer;
+import util.SyntaxHighlighter;
+
+/**
+ * Shows a class preview one page at a time. Lines are highlighted the first
+ * time they are shown, so opening a very large class, or jumping around in
+ * it, only costs a page of highlighting (and, the first time, a pass over the
+ * lines above it to find where block comments open).
+ */
+public class ClassPager {
+    private static final int PAGE_SIZE = 40;
+
+    private final Scanner scanner;
+    private final LineIndex lines;
+    private final String[] highlighted;
+    // Lines that start inside a block comment, known for the lines before commentStatesKnown
+    private final BitSet inComment = new BitSet();
+    private int commentStatesKnown = 1;
+    private final int lineNumWidth;
+    private int top;
+    private String lastSearch;
+    // Line of the last search match, -1 before the first
+    private int lastMatch = -1;
+
+    public ClassPager(Scanner scanner, String code) {
+        this.scanner = scanner;
+        this.lines = new LineIndex(code);
+        this.highlighted = new String[lines.lineCount()];
+        this.lineNumWidth = String.valueOf(lines.lineCount()).length();
+    }
+
+    /**
+     * Prints a class that fits on one page as a whole; otherwise pages through
+     * it until the user closes the preview
+     */
+    public void show() {
+        long start = System.nanoTime();
+        printPage();
+        Metrics.RENDER.recordSince(start);
+        StartupTimer.markFirstPreview();
+        if (lines.lineCount() <= PAGE_SIZE) {
+            return;
+        }
+        while (true) {
+            System.out.printf("Lines %d-%d of %d. Enter: next page, p: previous, <line>: go to line, /name: find member, q: close%n",
+                    top + 1, Math.min(top + PAGE_SIZE, lines.lineCount()), lines.lineCount());
+            System.out.print("Preview: ");
+            String command = scanner.nextLine().trim();
+            if (command.equals("q")) {
+                return;
+            } else if (command.isEmpty() || command.equals("n")) {
+                if (top + PAGE_SIZE >= lines.lineCount()) {
+                    return;
+                }
+                top += PAGE_SIZE;
+            } else if (command.equals("p")) {
+                top = Math.max(0, top - PAGE_SIZE);
+            } else if (command.startsWith("/")) {
+                if (!find(command.substring(1).trim())) {
+                    continue;
+                }
+            } else if (command.matches("\\d+")) {
+                int line;
+                try {
+                    line = Integer.parseInt(command);
+                } catch (NumberFormatException e) {
+                    line = Integer.MAX_VALUE;
+                }
+                if (line < 1 || line > lines.lineCount()) {
+                    System.out.println("Enter a line number between 1 and " + lines.lineCount() + ".");
+                    continue;
+                }
+                scrollTo(line - 1);
+            } else {
+                System.out.println("Invalid command.");
+                continue;
+            }
+            start = System.nanoTime();
+            printPage();
+            Metrics.RENDER.recordSince(start);
+        }
+    }
+
+    /**
+     * Scrolls to the next declaration of a field or method with the given name
+     * after the last match if it is still shown, else after the top line,
+     * wrapping around; falls back to the next line that contains the text.
+     * An empty name repeats the last search.
+     */
+    private boolean find(String name) {
+        if (name.isEmpty()) {
+            name = lastSearch;
+        }
+        if (name == null) {
+            System.out.println("Enter a name to find, e.g. /getName.");
+            return false;
+        }
+        lastSearch = name;
+        Pattern declaration = Pattern.compile("(?m)^[ \\t]*(?!return\\b|throw\\b|new\\b)(?:[\\w$<>\\[\\],.?@]+[ \\t]+)+"
+                + Pattern.quote(name) + "[ \\t]*[(=;]");
+        int line = search(declaration.matcher(lines.getText()));
+        if (line < 0) {
+            line = search(Pattern.compile(Pattern.quote(name)).matcher(lines.getText()));
+        }
+        if (line < 0) {
+            System.out.println("\"" + name + "\" not found.");
+            return false;
+        }
+        lastMatch = line;
+        scrollTo(line);
+        return true;
+    }
+
+    // Line of the first match after the current one, else of the first match at all; -1 if none.
+    // On the last page the match need not be the top line, so it is tracked separately.
+    private int search(Matcher matcher) {
+        int current = lastMatch >= top && lastMatch < top + PAGE_SIZE ? lastMatch : top;
+        int from = current + 1 < lines.lineCount() ? lines.startOf(current + 1) : lines.getText().length();
+        if (matcher.find(from) || matcher.find(0)) {
+            return lines.lineAt(matcher.start());
+        }
+        return -1;
+    }
+
+    // Puts a line at the top of the page, or on the last page if it is near the end
+    private void scrollTo(int line) {
+        top = Math.max(0, Math.min(line, lines.lineCount() - PAGE_SIZE));
+    }
+
+    /**
+     * Whether a block comment is open where a line starts, following the lines
+     * before it the first time a line further down is asked for
+     */
+    private boolean startsInComment(int line) {
+        while (commentStatesKnown <= line) {
+            int previous = commentStatesKnown - 1;
+            inComment.set(commentStatesKnown,
+                    SyntaxHighlighter.endsInComment(lines.line(previous), inComment.get(previous)));
+            commentStatesKnown++;
+        }
+        return inComment.get(line);
+    }
+
+    private void printPage() {
+        System.out.println("\n╔══════════════════════════════════════════════════════════════════════╗");
+        System.out.println("║                          Class Preview                               ║");
+        System.out.println("╠══════════════════════════════════════════════════════════════════════╣");
+        int end = Math.min(top + PAGE_SIZE, lines.lineCount());
+        for (int i = top; i < end; i++) {
+            if (highlighted[i] == null) {
+                highlighted[i] = SyntaxHighlighter.highlightLine(lines.line(i), startsInComment(i));
+            }
+            System.out.printf("║ %" + lineNumWidth + "d | %s\n", i + 1, highlighted[i]);
+        }
+        System.out.println("╚══════════════════════════════════════════════════════════════════════╝\n");
+    }
+}
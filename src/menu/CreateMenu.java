@@ -1,33 +1,92 @@
 package menu;
 
+import builder.ImportResolver;
 import builder.JavaClassBuilder;
+import builder.JavaClassScan;
+import builder.SemanticChecker;
+import builder.StubGenerator;
+import builder.TypeHierarchy;
+import builder.TypeUniverse;
+import builder.WorkspaceIndex;
+import event.SnapshotEvent;
 import exception.InvalidNameException;
-import java.io.File;
+import exception.UnknownTypeException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import model.ClassSnapshot;
 import model.Field;
 import model.Method;
+import model.SourceSpan;
+import util.BackgroundWriter;
 import util.FileManager;
+import util.FileVersion;
+import util.Metrics;
+import util.StartupTimer;
+import util.SyntaxHighlighter;
+import util.TypeIndex;
 import util.ValidationUtils;
+import util.VersionedContent;
 
 public class CreateMenu  {
+    // Type completions listed at most at once
+    private static final int MAX_COMPLETIONS = 20;
+    // The type parameters of a class declaration, and the variable each one declares
+    private static final Pattern TYPE_PARAMETERS = Pattern.compile("\\b(?:class|interface)\\s+\\w+\\s*<([^{]*?)>\\s*(?:extends|implements|\\{|$)");
+    private static final Pattern TYPE_VARIABLE = Pattern.compile("\\w+");
+
     private final Scanner scanner;
     private final String folderPath;
-    private JavaClassBuilder classBuilder;
+    private final WorkspaceIndex workspaceIndex;
+    private final TypeUniverse typeUniverse;
+    private final TypeHierarchy typeHierarchy;
+    private final SemanticChecker semanticChecker;
+    private final BackgroundWriter backgroundWriter;
+    // Read by the folder watcher thread as well as the session
+    private volatile JavaClassBuilder classBuilder;
     private boolean isModifyMode = false;
-    private Stack<JavaClassBuilder> undoStack = new Stack<>();
-    private Stack<JavaClassBuilder> redoStack = new Stack<>();
-
-    public CreateMenu(Scanner scanner, String folderPath) {
+    // Version of the class file when it was loaded, used to detect concurrent changes on save
+    private volatile FileVersion loadedVersion = FileVersion.ABSENT;
+    // File the class was loaded from or last saved to, null until a new class is saved,
+    // and the package it declares there
+    private volatile Path classFile;
+    private volatile String filePackage = "";
+    private Stack<ClassSnapshot> undoStack = new Stack<>();
+    private Stack<ClassSnapshot> redoStack = new Stack<>();
+    // Disk version picked up by the watcher, applied before the next menu is shown
+    private final AtomicReference<ClassSnapshot> pendingReload = new AtomicReference<>();
+    private volatile FileVersion pendingReloadVersion;
+    private final WorkspaceIndex.Listener syncListener = this::onWorkspaceChange;
+
+    public CreateMenu(Scanner scanner, String folderPath, WorkspaceIndex workspaceIndex, TypeUniverse typeUniverse,
+                      TypeHierarchy typeHierarchy, SemanticChecker semanticChecker, BackgroundWriter backgroundWriter) {
         this.scanner = scanner;
         this.folderPath = folderPath;
+        this.workspaceIndex = workspaceIndex;
+        this.typeUniverse = typeUniverse;
+        this.typeHierarchy = typeHierarchy;
+        this.semanticChecker = semanticChecker;
+        this.backgroundWriter = backgroundWriter;
     }
 
-    public CreateMenu(Scanner scanner, String folderPath, String existingClassName) {
+    public CreateMenu(Scanner scanner, String folderPath, WorkspaceIndex workspaceIndex, TypeUniverse typeUniverse,
+                      TypeHierarchy typeHierarchy, SemanticChecker semanticChecker, BackgroundWriter backgroundWriter,
+                      String existingClassName) {
         this.scanner = scanner;
         this.folderPath = folderPath;
+        this.workspaceIndex = workspaceIndex;
+        this.typeUniverse = typeUniverse;
+        this.typeHierarchy = typeHierarchy;
+        this.semanticChecker = semanticChecker;
+        this.backgroundWriter = backgroundWriter;
         this.isModifyMode = true;
         this.classBuilder = loadClass(existingClassName);
     }
@@ -36,8 +95,18 @@ public class CreateMenu  {
         if (!isModifyMode) {
             ClassName();
         }
+        workspaceIndex.addListener(syncListener);
+        try {
+            runSession();
+        } finally {
+            workspaceIndex.removeListener(syncListener);
+        }
+    }
+
+    private void runSession() {
         boolean done = false;
         while (!done) {
+            applyPendingReload();
             printSubMenu();
             String choice = scanner.nextLine().trim();
             switch (choice) {
@@ -101,9 +170,8 @@ public class CreateMenu  {
             String name = scanner.nextLine().trim();
             try {
                 ValidationUtils.validateClassName(name);
-                // Check if class file already exists
-                File file = new File(folderPath, name + ".java");
-                if (file.exists()) {
+                // Check if the class already exists in any package
+                if (workspaceIndex.locate(name) != null || backgroundWriter.pendingFile(name) != null) {
                     System.out.println("Error: A class/interface with this name already exists in the selected folder.");
                     continue;
                 }
@@ -149,13 +217,8 @@ public class CreateMenu  {
                 return;
             }
 
-            System.out.print("Field type: ");
-            String type = scanner.nextLine().trim();
-            try {
-                ValidationUtils.validateType(type);
-            } catch (InvalidNameException e) {
-                System.out.println("Validation error: " + e.getMessage());
-                System.out.println("Suggestion: Use a valid Java type (e.g., int, String, double, or a valid class name). For arrays, use type[]");
+            String type = readType("Field type: ");
+            if (!acceptType(type, true)) {
                 return;
             }
 
@@ -189,19 +252,14 @@ public class CreateMenu  {
                 return;
             }
 
-            // Check for duplicate method name
-            if (classBuilder.getMethodByName(name) != null) {
-                System.out.println("Error: A method with this name already exists in the class.");
+            // Overloads are fine; the new method has no parameters, so only name() clashes
+            if (classBuilder.getMethodBySignature(name + "()") != null) {
+                System.out.println("Error: A method " + name + "() already exists in the class.");
                 return;
             }
 
-            System.out.print("Return type: ");
-            String returnType = scanner.nextLine().trim();
-            try {
-                ValidationUtils.validateType(returnType);
-            } catch (InvalidNameException e) {
-                System.out.println("Validation error: " + e.getMessage());
-                System.out.println("Suggestion: Use a valid Java type (e.g., int, String, double, or a valid class name). For arrays, use type[]");
+            String returnType = readType("Return type: ");
+            if (!acceptType(returnType, true)) {
                 return;
             }
 
@@ -255,20 +313,50 @@ public class CreateMenu  {
                         trimmed.add(ifaceTrim);
                     }
                 }
-                classBuilder.getImplementsInterfaces().clear();
+                classBuilder.clearImplementsInterfaces();
                 for (String iface : trimmed) {
                     classBuilder.addImplementsInterface(iface);
                 }
             } else {
-                classBuilder.getImplementsInterfaces().clear();
+                classBuilder.clearImplementsInterfaces();
             }
 
+            System.out.print("Package (e.g. com.acme.model, or leave blank for the default package): ");
+            String packageName = scanner.nextLine().trim();
+            ValidationUtils.validatePackageName(packageName);
+            classBuilder.setPackageName(packageName);
+
             System.out.println("Modifiers set.");
+            addStubs();
         } catch (InvalidNameException e) {
             System.out.println("Validation error: " + e.getMessage());
         }
     }
 
+    /**
+     * Adds a stub for every abstract method the supertypes leave to this class
+     */
+    private void addStubs() {
+        if (classBuilder.getExtendsClass() == null && classBuilder.getImplementsInterfaces().isEmpty()) {
+            return;
+        }
+        try {
+            workspaceIndex.awaitFirstScan();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        List<Method> stubs = StubGenerator.addStubs(classBuilder, typeHierarchy);
+        if (!stubs.isEmpty()) {
+            // Signatures, since overloads would otherwise read as duplicates
+            List<String> names = new ArrayList<>();
+            for (Method stub : stubs) {
+                names.add(TypeHierarchy.signature(stub.snapshot()));
+            }
+            System.out.println("Added " + stubs.size() + " method stub(s): " + String.join(", ", names));
+        }
+    }
+
     private void saveClass() {
         // Check for duplicate field names before saving
         List<Field> fields = classBuilder.getFields();
@@ -280,48 +368,146 @@ public class CreateMenu  {
                 hasDuplicateField = true;
             }
         }
-        // Check for duplicate method names before saving
+        // Check for duplicate method signatures before saving; overloads are fine
         List<Method> methods = classBuilder.getMethods();
-        java.util.Set<String> methodNames = new java.util.HashSet<>();
+        java.util.Set<String> methodSignatures = new java.util.HashSet<>();
         boolean hasDuplicateMethod = false;
         for (Method m : methods) {
-            if (!methodNames.add(m.getName())) {
-                System.out.println("Error: Duplicate method name detected: '" + m.getName() + "'. Please resolve duplicates before saving.");
+            String signature = TypeHierarchy.signature(m.snapshot());
+            if (!methodSignatures.add(signature)) {
+                System.out.println("Error: Duplicate method signature detected: '" + signature + "'. Please resolve duplicates before saving.");
                 hasDuplicateMethod = true;
             }
         }
         if (hasDuplicateField || hasDuplicateMethod) {
-            System.out.println("Class not saved due to duplicate field or method names.");
+            System.out.println("Class not saved due to duplicate field names or method signatures.");
+            return;
+        }
+        if (!confirmSemanticProblems()) {
+            System.out.println("Class not saved.");
             return;
         }
+        Path target = targetFile();
+        resolveImports(target);
         String code = classBuilder.buildClass();
-        String filePath = folderPath + File.separator + classBuilder.getClassName() + ".java";
-        try {
-            FileManager.writeAtomic(folderPath, classBuilder.getClassName(), code);
-            System.out.println("Class saved to " + filePath);
-        } catch (Exception e) {
-            System.out.println("Failed to save class: " + e.getMessage());
+        Path previous = classFile;
+        backgroundWriter.submit(new BackgroundWriter.Save(target, code, loadedVersion,
+                previous == null || previous.equals(target) ? null : previous));
+        System.out.println("Saving class to " + target + " in the background.");
+        loadedVersion = BackgroundWriter.versionOf(code);
+        classFile = target;
+        filePackage = classBuilder.getPackageName() == null ? "" : classBuilder.getPackageName();
+    }
+
+    /**
+     * Checks the class against the workspace and, if it would not compile there,
+     * lists the problems and asks whether to save it anyway
+     */
+    private boolean confirmSemanticProblems() {
+        List<SemanticChecker.Problem> problems = semanticChecker.check(classBuilder.snapshot());
+        if (problems.isEmpty()) {
+            return true;
         }
+        System.out.println("Warning: the class does not fit the rest of the workspace:");
+        for (SemanticChecker.Problem problem : problems) {
+            System.out.println("  - " + problem.message());
+        }
+        System.out.print("Save anyway? (y/n): ");
+        String answer = scanner.nextLine().trim().toLowerCase();
+        return answer.equals("y") || answer.equals("yes");
+    }
+
+    /**
+     * Returns the file the class is saved to: the one it was loaded from while it
+     * is still declared there, otherwise Name.java in the folder of its package
+     */
+    private Path targetFile() {
+        JavaClassBuilder current = classBuilder;
+        Path loaded = classFile;
+        String packageName = current.getPackageName() == null ? "" : current.getPackageName();
+        if (loaded != null && packageName.equals(filePackage)
+                && loaded.getFileName().toString().equals(current.getClassName() + ".java")) {
+            return loaded;
+        }
+        String folder = FileManager.packageFolder(folderPath, current.getPackageName());
+        return Paths.get(folder, current.getClassName() + ".java").toAbsolutePath().normalize();
     }
 
     private JavaClassBuilder loadClass(String className) {
-        File file = new File(folderPath, className + ".java");
-        if (!file.exists()) {
+        Path file = workspaceIndex.locate(className);
+        if (file == null) {
+            file = backgroundWriter.pendingFile(className);
+        }
+        if (file == null) {
             System.out.println("Class file not found.");
             return null;
         }
         try {
-            String content = FileManager.readFile(file.getAbsolutePath());
-            return new JavaClassBuilder(className);
+            BackgroundWriter.Save pending = backgroundWriter.pending(file);
+            if (pending != null) {
+                // Carry on from the save that is not on disk yet; saving again replaces it
+                JavaClassBuilder pendingClass = JavaClassScan.scan(pending.content());
+                loadedVersion = BackgroundWriter.versionOf(pending.content());
+                classFile = pending.target();
+                filePackage = pendingClass.getPackageName() == null ? "" : pendingClass.getPackageName();
+                return pendingClass;
+            }
+            VersionedContent loaded = FileManager.readFileVersioned(file.toString());
+            JavaClassBuilder loadedClass = JavaClassScan.scan(loaded.content());
+            loadedVersion = loaded.version();
+            classFile = file.toAbsolutePath().normalize();
+            filePackage = loadedClass.getPackageName() == null ? "" : loadedClass.getPackageName();
+            return loadedClass;
         } catch (Exception e) {
             System.out.println("Error loading class file: " + e.getMessage());
             return null;
         }
     }
 
+    // --- Live sync with the working folder ---
+    private void onWorkspaceChange(Path file, ClassSnapshot before, ClassSnapshot after) {
+        JavaClassBuilder current = classBuilder;
+        if (current == null || !file.equals(targetFile())) {
+            return;
+        }
+        FileVersion diskVersion;
+        try {
+            diskVersion = FileManager.currentVersion(file);
+        } catch (Exception e) {
+            return;
+        }
+        if (diskVersion.matches(loadedVersion)) {
+            // Our own save
+            return;
+        }
+        System.out.println();
+        if (after == null) {
+            System.out.println("[sync] " + file.getFileName() + " was deleted on disk.");
+        } else if (isModifyMode && undoStack.isEmpty()) {
+            // No local edits yet: follow the file
+            pendingReloadVersion = diskVersion;
+            pendingReload.set(after);
+            System.out.println("[sync] " + file.getFileName() + " changed on disk, preview refreshed:");
+            System.out.println(SyntaxHighlighter.highlight(after.toJavaCode()));
+        } else {
+            System.out.println("[sync] " + file.getFileName() + " changed on disk. Saving will ask before overwriting it.");
+        }
+        System.out.print("Enter your choice: ");
+    }
+
+    private void applyPendingReload() {
+        ClassSnapshot reloaded = pendingReload.getAndSet(null);
+        if (reloaded != null && undoStack.isEmpty()) {
+            classBuilder = JavaClassBuilder.fromSnapshot(reloaded);
+            loadedVersion = pendingReloadVersion;
+        }
+    }
+
     private void pushUndo() {
         if (classBuilder != null) {
-            undoStack.push(classBuilder.clone());
+            SnapshotEvent event = beginSnapshot("save");
+            undoStack.push(classBuilder.snapshot());
+            endSnapshot(event);
         }
     }
 
@@ -331,8 +517,10 @@ public class CreateMenu  {
 
     private void undo() {
         if (!undoStack.isEmpty()) {
-            redoStack.push(classBuilder.clone());
-            classBuilder = undoStack.pop();
+            SnapshotEvent event = beginSnapshot("undo");
+            redoStack.push(classBuilder.snapshot());
+            classBuilder = JavaClassBuilder.fromSnapshot(undoStack.pop());
+            endSnapshot(event);
             System.out.println("Undo performed.");
         } else {
             System.out.println("Nothing to undo.");
@@ -341,49 +529,152 @@ public class CreateMenu  {
 
     private void redo() {
         if (!redoStack.isEmpty()) {
-            undoStack.push(classBuilder.clone());
-            classBuilder = redoStack.pop();
+            SnapshotEvent event = beginSnapshot("redo");
+            undoStack.push(classBuilder.snapshot());
+            classBuilder = JavaClassBuilder.fromSnapshot(redoStack.pop());
+            endSnapshot(event);
             System.out.println("Redo performed.");
         } else {
             System.out.println("Nothing to redo.");
         }
     }
 
-    // --- Syntax Highlighting for Java code preview ---
-    private String highlightJava(String code) {
-        // Basic ANSI color codes
-        final String RESET = "\u001B[0m";
-        final String KEYWORD = "\u001B[34m"; // Blue
-        final String TYPE = "\u001B[36m";    // Cyan
-        final String STRING = "\u001B[32m";  // Green
-        final String COMMENT = "\u001B[90m"; // Bright black
+    private static SnapshotEvent beginSnapshot(String operation) {
+        SnapshotEvent event = new SnapshotEvent();
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    private void endSnapshot(SnapshotEvent event) {
+        event.className = classBuilder.getClassName();
+        event.members = classBuilder.getFields().size() + classBuilder.getMethods().size()
+                + classBuilder.getConstructors().size();
+        event.undoDepth = undoStack.size();
+        event.redoDepth = redoStack.size();
+        event.ok();
+    }
+
+    /**
+     * Validates a type entered by the user. A malformed type is rejected; a name
+     * found nowhere only warns, since it may be declared where the workspace and
+     * type index cannot see, and the user decides whether to keep it.
+     */
+    private boolean acceptType(String type, boolean suggest) {
+        try {
+            typeUniverse.validate(type, localTypeNames());
+            return true;
+        } catch (UnknownTypeException e) {
+            System.out.println("Warning: " + e.getMessage());
+            System.out.print("Use it anyway? (y/n): ");
+            String answer = scanner.nextLine().trim().toLowerCase();
+            return answer.equals("y") || answer.equals("yes");
+        } catch (InvalidNameException e) {
+            System.out.println("Validation error: " + e.getMessage());
+            if (suggest) {
+                System.out.println("Suggestion: Use a valid Java type (e.g., int, String, double, or a valid class name). For arrays, use type[]; for generics, e.g. List<String>. End the input with Tab or ? to list matching types");
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Type names valid in this class that the type universe does not list: the
+     * class itself, its type variables and the classes still waiting to be saved
+     */
+    private Set<String> localTypeNames() {
+        Set<String> names = new HashSet<>(backgroundWriter.pendingClassNames());
+        names.add(classBuilder.getClassName());
+        SourceSpan header = classBuilder.getHeaderSpan();
+        if (header != null) {
+            Matcher typeParameters = TYPE_PARAMETERS.matcher(header.text());
+            if (typeParameters.find()) {
+                for (String parameter : typeParameters.group(1).split(",")) {
+                    Matcher name = TYPE_VARIABLE.matcher(parameter);
+                    if (name.find()) {
+                        names.add(name.group());
+                    }
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Reads a type. The console only delivers whole lines, so completion happens
+     * on Enter: a line ending with Tab or '?' lists the known types its last name
+     * could be, fills in what all of them share, and prompts again with that text.
+     */
+    private String readType(String prompt) {
+        String pending = "";
+        while (true) {
+            System.out.print(prompt + pending);
+            String line = pending + scanner.nextLine();
+            String text = line.trim();
+            boolean question = text.endsWith("?");
+            if (!question && !line.endsWith("\t")) {
+                return text;
+            }
+            if (question) {
+                text = text.substring(0, text.length() - 1);
+            }
+            int start = text.length();
+            while (start > 0 && Character.isJavaIdentifierPart(text.charAt(start - 1))) {
+                start--;
+            }
+            String prefix = text.substring(start);
+            List<String> completions = typeUniverse.complete(prefix, MAX_COMPLETIONS);
+            int total = typeUniverse.countCompletions(prefix);
+            if (completions.isEmpty()) {
+                System.out.println("No known type starts with '" + prefix + "'.");
+            } else if (total > 1) {
+                System.out.println(String.join("  ", completions)
+                        + (total > completions.size() ? "  ... (" + (total - completions.size()) + " more)" : ""));
+            }
+            if (!completions.isEmpty() && total <= MAX_COMPLETIONS) {
+                text = text.substring(0, start) + commonPrefix(completions);
+            }
+            pending = text;
+        }
+    }
+
+    private static String commonPrefix(List<String> words) {
+        String first = words.get(0);
+        int length = first.length();
+        for (String word : words) {
+            int i = 0;
+            while (i < length && i < word.length() && word.charAt(i) == first.charAt(i)) {
+                i++;
+            }
+            length = i;
+        }
+        return first.substring(0, length);
+    }
 
-        // Highlight keywords, types, and comments (very basic)
-        String[] keywords = {"public", "private", "protected", "class", "interface", "abstract", "static", "final", "void", "extends", "implements", "return", "new"};
-        String[] types = {"int", "long", "short", "byte", "float", "double", "boolean", "char", "String"};
-        String highlighted = code;
-        // Comments (single-line)
-        highlighted = highlighted.replaceAll("(?m)//.*$", COMMENT + "$0" + RESET);
-        // Comments (multi-line)
-        highlighted = highlighted.replaceAll("(?s)/\\*.*?\\*/", COMMENT + "$0" + RESET);
-        // Strings
-        highlighted = highlighted.replaceAll("\"([^\"]*)\"", STRING + "\"$1\"" + RESET);
-        // Keywords
-        for (String kw : keywords) {
-            highlighted = highlighted.replaceAll("\\b" + kw + "\\b", KEYWORD + kw + RESET);
+    /**
+     * Adds imports for the types the class refers to and reports them. Only done
+     * when saving, so previews never change the class.
+     */
+    private void resolveImports(Path target) {
+        ImportResolver.Result result = new ImportResolver(workspaceIndex, TypeIndex.get())
+                .addMissingImports(classBuilder, target.getParent());
+        if (!result.added().isEmpty()) {
+            System.out.println("Added imports: " + String.join(", ", result.added()));
         }
-        // Types
-        for (String t : types) {
-            highlighted = highlighted.replaceAll("\\b" + t + "\\b", TYPE + t + RESET);
+        if (!result.unresolved().isEmpty()) {
+            System.out.println("Note: no class found for " + String.join(", ", result.unresolved())
+                    + "; add its import by hand if it needs one.");
         }
-        return highlighted;
     }
 
     private void showPreview() {
+        long start = System.nanoTime();
         System.out.println("\n--- Live Class Preview ---");
-        System.out.println(highlightJava(classBuilder.buildClass()));
+        System.out.println(SyntaxHighlighter.highlight(classBuilder.buildClass()));
         showInheritanceTree();
         System.out.println("--------------------------\n");
+        Metrics.RENDER.recordSince(start);
+        StartupTimer.markFirstPreview();
     }
 
     // --- Inheritance Visualization ---
@@ -445,17 +736,21 @@ public class CreateMenu  {
         }
     }
     private void renameMethod() {
-        System.out.print("Enter current method name: ");
-        String oldName = scanner.nextLine().trim();
-        Method method = classBuilder.getMethodByName(oldName);
+        System.out.print("Enter current method name or signature, e.g. draw(int): ");
+        Method method = chooseMethod(scanner.nextLine().trim());
         if (method == null) {
-            System.out.println("Method not found.");
             return;
         }
         System.out.print("Enter new method name: ");
         String newName = scanner.nextLine().trim();
         try {
             ValidationUtils.validateMethodName(newName);
+            String renamed = newName + TypeHierarchy.signature(method.snapshot()).substring(method.getName().length());
+            Method existing = classBuilder.getMethodBySignature(renamed);
+            if (existing != null && existing != method) {
+                System.out.println("Error: A method " + renamed + " already exists in the class.");
+                return;
+            }
             method.setName(newName);
             System.out.println("Method renamed.");
         } catch (InvalidNameException e) {
@@ -470,32 +765,60 @@ public class CreateMenu  {
             System.out.println("Field not found.");
             return;
         }
-        System.out.print("Enter new field type: ");
-        String newType = scanner.nextLine().trim();
-        try {
-            ValidationUtils.validateType(newType);
+        String newType = readType("Enter new field type: ");
+        if (acceptType(newType, false)) {
             field.setType(newType);
             System.out.println("Field type changed.");
-        } catch (InvalidNameException e) {
-            System.out.println("Validation error: " + e.getMessage());
         }
     }
     private void changeMethodReturnType() {
-        System.out.print("Enter method name: ");
-        String name = scanner.nextLine().trim();
-        Method method = classBuilder.getMethodByName(name);
+        System.out.print("Enter method name or signature, e.g. draw(int): ");
+        Method method = chooseMethod(scanner.nextLine().trim());
         if (method == null) {
-            System.out.println("Method not found.");
             return;
         }
-        System.out.print("Enter new return type: ");
-        String newType = scanner.nextLine().trim();
-        try {
-            ValidationUtils.validateType(newType);
+        String newType = readType("Enter new return type: ");
+        if (acceptType(newType, false)) {
             method.setReturnType(newType);
             System.out.println("Method return type changed.");
-        } catch (InvalidNameException e) {
-            System.out.println("Validation error: " + e.getMessage());
         }
     }
+
+    /**
+     * Finds a method by signature, or by name, asking which overload is meant
+     * if there are several; prints why and returns null if none is chosen
+     */
+    private Method chooseMethod(String nameOrSignature) {
+        if (nameOrSignature.contains("(")) {
+            Method method = classBuilder.getMethodBySignature(nameOrSignature);
+            if (method == null) {
+                System.out.println("Method not found.");
+            }
+            return method;
+        }
+        List<Method> overloads = classBuilder.getMethodsByName(nameOrSignature);
+        if (overloads.isEmpty()) {
+            System.out.println("Method not found.");
+            return null;
+        }
+        if (overloads.size() == 1) {
+            return overloads.get(0);
+        }
+        System.out.println(nameOrSignature + " is overloaded:");
+        for (int i = 0; i < overloads.size(); i++) {
+            System.out.println("  " + (i + 1) + ". " + TypeHierarchy.signature(overloads.get(i).snapshot()));
+        }
+        System.out.print("Choose an overload (1-" + overloads.size() + "): ");
+        String choice = scanner.nextLine().trim();
+        try {
+            int index = Integer.parseInt(choice);
+            if (index >= 1 && index <= overloads.size()) {
+                return overloads.get(index - 1);
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        System.out.println("Invalid choice.");
+        return null;
+    }
 }
@@ -2,30 +2,79 @@ package menu;
 
 import builder.JavaClassBuilder;
 import builder.JavaClassScan;
-import java.io.File;
+import builder.ReferenceIndex;
+import builder.SemanticChecker;
+import builder.TypeHierarchy;
+import builder.TypeUniverse;
+import builder.WorkspaceIndex;
+import exception.StaleFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Scanner;
 import model.Field;
 import model.Method;
+import util.BackgroundWriter;
 import util.FileManager;
+import util.FileVersion;
+import util.FolderWatcher;
+import util.Metrics;
+import util.TypeIndex;
+import util.VersionedContent;
 
 public class Menu implements ConsoleDisplay  {
     private final Scanner scanner;
     private final String folderPath;
+    private final WorkspaceIndex workspaceIndex;
+    private final ReferenceIndex referenceIndex;
+    private final TypeUniverse typeUniverse;
+    private final TypeHierarchy typeHierarchy;
+    private final SemanticChecker semanticChecker;
+    private final BackgroundWriter backgroundWriter;
+    private FolderWatcher folderWatcher;
 
     public Menu(Scanner scanner, String folderPath) {
         this.scanner = scanner;
         this.folderPath = folderPath;
+        this.workspaceIndex = new WorkspaceIndex(Paths.get(folderPath));
+        FileManager.setWorkspaceRoot(workspaceIndex.getRoot());
+        this.referenceIndex = new ReferenceIndex(workspaceIndex);
+        this.typeUniverse = new TypeUniverse(workspaceIndex);
+        this.typeHierarchy = new TypeHierarchy(workspaceIndex);
+        this.semanticChecker = new SemanticChecker(workspaceIndex, typeHierarchy, typeUniverse);
+        this.backgroundWriter = new BackgroundWriter(new BackgroundWriter.Listener() {
+            @Override
+            public void saved(BackgroundWriter.Save save) {
+                // Before the save stops being pending, so whoever waits for it finds the class
+                workspaceIndex.refresh(save.previous() == null ? List.of(save.target())
+                        : List.of(save.target(), save.previous()));
+                System.out.println("\n[save] " + save.className() + " saved to " + save.target()
+                        + (save.previous() == null ? "" : " (moved from " + save.previous() + ")"));
+            }
+
+            @Override
+            public void failed(BackgroundWriter.Failure failure) {
+                System.out.println("\n[save] Saving " + failure.save().className() + " failed: "
+                        + failure.error().getMessage() + ". You will be asked what to do with it.");
+            }
+        });
     }
 
 
     public void start() {
+        startLiveSync();
+        exportMetrics();
+        // Ready by the time the first class is previewed or saved
+        TypeIndex.preload();
         boolean exit = false;
         while (!exit) {
+            handleFailedSaves();
             printMenu();
             String choice = scanner.nextLine().trim();
             switch (choice) {
                 case "1":
-                    new CreateMenu(scanner, folderPath).start();
+                    new CreateMenu(scanner, folderPath, workspaceIndex, typeUniverse, typeHierarchy, semanticChecker,
+                            backgroundWriter).start();
                     break;
                 case "2":
                     readClass();
@@ -37,10 +86,111 @@ public class Menu implements ConsoleDisplay  {
                     deleteClass();
                     break;
                 case "5":
+                    // The tools work on the files on disk
+                    awaitSaves();
+                    new ToolsMenu(scanner, folderPath, workspaceIndex, referenceIndex, typeHierarchy, semanticChecker).start();
+                    break;
+                case "6":
                     exit = true;
                     break;
                 default:
-                    System.out.println("Invalid option. Please enter a number 1-5.");
+                    System.out.println("Invalid option. Please enter a number 1-6.");
+            }
+        }
+        flushSaves();
+        stopLiveSync();
+    }
+
+    /**
+     * Lists the saves that failed in the background and offers to retry each one
+     *
+     * @return True if a save was queued again
+     */
+    private boolean handleFailedSaves() {
+        boolean retried = false;
+        for (BackgroundWriter.Failure failure : backgroundWriter.takeFailures()) {
+            BackgroundWriter.Save save = failure.save();
+            if (failure.isConflict()) {
+                System.out.println("\nConflict saving " + save.className() + ": " + failure.error().getMessage() + ".");
+                System.out.print("Overwrite their changes with yours? (y/n): ");
+            } else {
+                System.out.println("\nFailed to save " + save.className() + ": " + failure.error().getMessage());
+                System.out.print("Try again? (y/n): ");
+            }
+            String answer = scanner.nextLine().trim().toLowerCase();
+            if (answer.equals("y") || answer.equals("yes")) {
+                backgroundWriter.submit(failure.isConflict() ? save.force() : save);
+                retried = true;
+            } else {
+                System.out.println(save.className() + " not saved. The file on disk was left unchanged.");
+            }
+        }
+        return retried;
+    }
+
+    private void awaitSaves() {
+        try {
+            backgroundWriter.awaitIdle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the saves still queued before exiting, until none failed or the
+     * user gave up on the failed ones
+     */
+    private void flushSaves() {
+        do {
+            awaitSaves();
+        } while (handleFailedSaves());
+        try {
+            backgroundWriter.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Finds a class in the workspace, or among the saves not written yet
+     */
+    private Path locate(String className) {
+        Path file = workspaceIndex.locate(className);
+        return file != null ? file : backgroundWriter.pendingFile(className);
+    }
+
+    /**
+     * Keeps the workspace index in sync with the folder in the background;
+     * the initial scan also runs there so the menu appears immediately
+     */
+    private void startLiveSync() {
+        try {
+            folderWatcher = FolderWatcher.start(workspaceIndex.getRoot(), 250, changed -> {
+                workspaceIndex.refresh(changed);
+                typeUniverse.filesChanged(changed);
+            });
+        } catch (Exception e) {
+            System.out.println("Live folder sync unavailable: " + e.getMessage());
+            workspaceIndex.refreshAll();
+        }
+    }
+
+    /**
+     * Publishes the metrics over JMX from a background thread, since starting the
+     * platform MBean server would otherwise delay the menu
+     */
+    private void exportMetrics() {
+        Thread thread = new Thread(Metrics::registerMBean, "jcb-metrics-jmx");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void stopLiveSync() {
+        if (folderWatcher != null) {
+            try {
+                folderWatcher.close();
+            } catch (Exception e) {
+                // Shutting down anyway
             }
         }
     }
@@ -53,41 +203,12 @@ public class Menu implements ConsoleDisplay  {
         System.out.println("║ 2. Read (display) a class                                                                  ║");
         System.out.println("║ 3. Modify an existing class                                                                ║");
         System.out.println("║ 4. Delete a class file                                                                     ║");
-        System.out.println("║ 5. Exit                                                                                    ║");
+        System.out.println("║ 5. Workspace tools                                                                         ║");
+        System.out.println("║ 6. Exit                                                                                    ║");
         System.out.println("╚════════════════════════════════════════════════════════════════════════════════════════════╝");
         System.out.print("Enter your choice: ");
     }
 
-    // --- Syntax Highlighting for Java code preview ---
-    private String highlightJava(String code) {
-        // Basic ANSI color codes
-        final String RESET = "\u001B[0m";
-        final String KEYWORD = "\u001B[34m"; // Blue
-        final String TYPE = "\u001B[36m";    // Cyan
-        final String STRING = "\u001B[32m";  // Green
-        final String COMMENT = "\u001B[90m"; // Bright black
-
-        // Highlight keywords, types, and comments (very basic)
-        String[] keywords = {"public", "private", "protected", "class", "interface", "abstract", "static", "final", "void", "extends", "implements", "return", "new"};
-        String[] types = {"int", "long", "short", "byte", "float", "double", "boolean", "char", "String"};
-        String highlighted = code;
-        // Comments (single-line)
-        highlighted = highlighted.replaceAll("(?m)//.*$", COMMENT + "$0" + RESET);
-        // Comments (multi-line)
-        highlighted = highlighted.replaceAll("(?s)/\\*.*?\\*/", COMMENT + "$0" + RESET);
-        // Strings
-        highlighted = highlighted.replaceAll("\"([^\"]*)\"", STRING + "\"$1\"" + RESET);
-        // Keywords
-        for (String kw : keywords) {
-            highlighted = highlighted.replaceAll("\\b" + kw + "\\b", KEYWORD + kw + RESET);
-        }
-        // Types
-        for (String t : types) {
-            highlighted = highlighted.replaceAll("\\b" + t + "\\b", TYPE + t + RESET);
-        }
-        return highlighted;
-    }
-
     private void showInheritanceTree(JavaClassBuilder classBuilder) {
         System.out.println("\n╔══════════════════════════════════════════════════════════════════════╗");
         System.out.println("║                        Inheritance Tree                            ║");
@@ -118,29 +239,22 @@ public class Menu implements ConsoleDisplay  {
     }
 
     private void displayClassPreview(String code) {
-        System.out.println("\n╔══════════════════════════════════════════════════════════════════════╗");
-        System.out.println("║                          Class Preview                               ║");
-        System.out.println("╠══════════════════════════════════════════════════════════════════════╣");
-        String[] lines = code.split("\n");
-        int lineNumWidth = String.valueOf(lines.length).length();
-        for (int i = 0; i < lines.length; i++) {
-            System.out.printf("║ %" + lineNumWidth + "d | %s\n", i + 1, highlightJava(lines[i]));
-        }
-        System.out.println("╚══════════════════════════════════════════════════════════════════════╝\n");
+        new ClassPager(scanner, code).show();
     }
 
     private void readClass() {
         System.out.print("\nEnter class name to read: ");
         String className = scanner.nextLine().trim();
-        File classFile = new File(folderPath, className + ".java");
+        Path classFile = locate(className);
 
-        if (!classFile.exists()) {
+        if (classFile == null) {
             System.out.println("Class file does not exist.\n");
             return;
         }
 
         try {
-            String content = FileManager.readFile(classFile.getAbsolutePath());
+            BackgroundWriter.Save pending = backgroundWriter.pending(classFile);
+            String content = pending != null ? pending.content() : FileManager.readFile(classFile);
             JavaClassBuilder builder = JavaClassScan.scan(content);
             showInheritanceTree(builder);
             displayClassPreview(builder.buildClass());
@@ -152,26 +266,47 @@ public class Menu implements ConsoleDisplay  {
     private void modifyClass() {
         System.out.print("Enter class name to modify: ");
         String className = scanner.nextLine().trim();
-        File classFile = new File(folderPath, className + ".java");
-        if (!classFile.exists()) {
+        if (locate(className) == null) {
             System.out.println("Class file does not exist.");
             return;
         }
-        new CreateMenu(scanner, folderPath, className).startModify();
+        new CreateMenu(scanner, folderPath, workspaceIndex, typeUniverse, typeHierarchy, semanticChecker,
+                backgroundWriter, className).startModify();
     }
 
     private void deleteClass() {
         System.out.print("Enter class name to delete: ");
         String className = scanner.nextLine().trim();
-        File classFile = new File(folderPath, className + ".java");
-        if (!classFile.exists()) {
+        // A queued save would bring the file back
+        awaitSaves();
+        Path classFile = workspaceIndex.locate(className);
+        if (classFile == null) {
             System.out.println("Class file does not exist.");
             return;
         }
-        if (classFile.delete()) {
-            System.out.println("Class file deleted successfully.");
-        } else {
-            System.out.println("Failed to delete class file.");
+        try {
+            // The version shown here is the one the delete is checked against, so a
+            // change made while the user decides is not deleted unseen
+            VersionedContent shown = FileManager.readFileVersioned(classFile);
+            long lines = shown.content().lines().count();
+            System.out.print("Delete " + workspaceIndex.getRoot().relativize(classFile.toAbsolutePath().normalize())
+                    + " (" + lines + " line" + (lines == 1 ? "" : "s") + ")? (y/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                System.out.println("Class file not deleted.");
+                return;
+            }
+            FileVersion version = shown.version();
+            String fileName = classFile.getFileName().toString();
+            if (FileManager.deleteFile(classFile.getParent().toString(),
+                    fileName.substring(0, fileName.length() - ".java".length()), version)) {
+                System.out.println("Class file deleted successfully.");
+            } else {
+                System.out.println("Failed to delete class file.");
+            }
+        } catch (StaleFileException e) {
+            System.out.println("Class file not deleted: " + e.getMessage() + ".");
+        } catch (Exception e) {
+            System.out.println("Failed to delete class file: " + e.getMessage());
         }
     }
     public void displayClass(JavaClassBuilder classBuilder) {
@@ -0,0 +1,669 @@
+package menu;
+
+import builder.HierarchyExporter;
+import builder.JavaClassBuilder;
+import builder.ModelJson;
+import builder.ModelSink;
+import builder.ReferenceIndex;
+import builder.SchemaImporter;
+import builder.SemanticChecker;
+import builder.SourceExporter;
+import builder.TypeHierarchy;
+import builder.WorkspaceIndex;
+import builder.WorkspaceLinter;
+import builder.WorkspaceRefactoring;
+import builder.WorkspaceRegenerator;
+import exception.DuplicateElementException;
+import exception.InvalidNameException;
+import exception.StaleFileException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import model.ClassSnapshot;
+import util.Diff;
+import util.FileManager;
+import util.FileVersion;
+import util.Metrics;
+import util.SourceArchive;
+import util.ValidationUtils;
+
+/**
+ * Menu for operations on the whole workspace rather than a single class
+ */
+public class ToolsMenu {
+    // Findings printed before the rest are only counted
+    private static final int MAX_FINDINGS = 200;
+
+    private final Scanner scanner;
+    private final String folderPath;
+    private final WorkspaceIndex workspaceIndex;
+    private final WorkspaceRefactoring refactoring;
+    private final WorkspaceRegenerator regenerator;
+    private final TypeHierarchy typeHierarchy;
+    private final SemanticChecker semanticChecker;
+
+    public ToolsMenu(Scanner scanner, String folderPath, WorkspaceIndex workspaceIndex, ReferenceIndex referenceIndex,
+                     TypeHierarchy typeHierarchy, SemanticChecker semanticChecker) {
+        this.scanner = scanner;
+        this.folderPath = folderPath;
+        this.workspaceIndex = workspaceIndex;
+        this.refactoring = new WorkspaceRefactoring(workspaceIndex, referenceIndex);
+        this.regenerator = new WorkspaceRegenerator(workspaceIndex);
+        this.typeHierarchy = typeHierarchy;
+        this.semanticChecker = semanticChecker;
+    }
+
+    public void start() {
+        boolean back = false;
+        while (!back) {
+            printMenu();
+            String choice = scanner.nextLine().trim();
+            switch (choice) {
+                case "1":
+                    rename(WorkspaceRefactoring.Kind.CLASS);
+                    break;
+                case "2":
+                    rename(WorkspaceRefactoring.Kind.FIELD);
+                    break;
+                case "3":
+                    rename(WorkspaceRefactoring.Kind.METHOD);
+                    break;
+                case "4":
+                    regenerate();
+                    break;
+                case "5":
+                    exportArchive();
+                    break;
+                case "6":
+                    System.out.println(Metrics.toJson());
+                    break;
+                case "7":
+                    saveMetrics();
+                    break;
+                case "8":
+                    Metrics.reset();
+                    System.out.println("Metrics reset.");
+                    break;
+                case "9":
+                    importSchema();
+                    break;
+                case "10":
+                    exportModels();
+                    break;
+                case "11":
+                    importModels();
+                    break;
+                case "12":
+                    lint();
+                    break;
+                case "13":
+                    checkClasses();
+                    break;
+                case "14":
+                    exportHierarchy();
+                    break;
+                case "15":
+                    scanArchive();
+                    break;
+                case "16":
+                    back = true;
+                    break;
+                default:
+                    System.out.println("Invalid option. Please enter a number 1-16.");
+            }
+        }
+    }
+
+    private void printMenu() {
+        System.out.println("\n╔══════════════════════════════════════╗");
+        System.out.println("║           Workspace Tools            ║");
+        System.out.println("╠══════════════════════════════════════╣");
+        System.out.println("║ 1. Rename a class everywhere         ║");
+        System.out.println("║ 2. Rename a field everywhere         ║");
+        System.out.println("║ 3. Rename a method everywhere        ║");
+        System.out.println("║ 4. Regenerate all classes            ║");
+        System.out.println("║ 5. Export sources to a zip/jar       ║");
+        System.out.println("║ 6. Show metrics (JSON)               ║");
+        System.out.println("║ 7. Save metrics to a file            ║");
+        System.out.println("║ 8. Reset metrics                     ║");
+        System.out.println("║ 9. Import classes from a schema file ║");
+        System.out.println("║ 10. Export models as JSON            ║");
+        System.out.println("║ 11. Import models from JSON          ║");
+        System.out.println("║ 12. Lint the workspace               ║");
+        System.out.println("║ 13. Check classes against each other ║");
+        System.out.println("║ 14. Export class hierarchy as DOT    ║");
+        System.out.println("║ 15. Scan a source archive (zip/jar)  ║");
+        System.out.println("║ 16. Back                             ║");
+        System.out.println("╚══════════════════════════════════════╝");
+        System.out.print("Enter your choice: ");
+    }
+
+    private void rename(WorkspaceRefactoring.Kind kind) {
+        String label = kind.name().toLowerCase();
+        try {
+            awaitIndex();
+            WorkspaceRefactoring.Plan plan;
+            long start;
+            if (kind == WorkspaceRefactoring.Kind.CLASS) {
+                System.out.print("Class to rename: ");
+                String oldName = scanner.nextLine().trim();
+                System.out.print("New class name: ");
+                String newName = scanner.nextLine().trim();
+                ValidationUtils.validateClassName(newName);
+                start = System.nanoTime();
+                plan = refactoring.planClassRename(oldName, newName);
+            } else {
+                System.out.print("Class declaring the " + label + ": ");
+                String className = scanner.nextLine().trim();
+                System.out.print(capitalize(label) + " to rename: ");
+                String oldName = scanner.nextLine().trim();
+                System.out.print("New " + label + " name: ");
+                String newName = scanner.nextLine().trim();
+                if (kind == WorkspaceRefactoring.Kind.FIELD) {
+                    ValidationUtils.validateVariableName(newName);
+                } else {
+                    ValidationUtils.validateMethodName(newName);
+                }
+                start = System.nanoTime();
+                plan = refactoring.planMemberRename(kind, className, oldName, newName);
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            if (plan.rewrites().isEmpty()) {
+                System.out.println("No uses of " + plan.oldName() + " found.");
+                return;
+            }
+            printPlan(plan, millis);
+            System.out.print("Show changed lines? (y/n): ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                printChangedLines(plan);
+            }
+            System.out.print("Apply these changes? (y/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                System.out.println("Rename cancelled. No files were changed.");
+                return;
+            }
+            refactoring.apply(plan);
+            System.out.println("Renamed " + plan.oldName() + " to " + plan.newName() + " in "
+                    + plan.rewrites().size() + " file(s).");
+        } catch (InvalidNameException | DuplicateElementException e) {
+            System.out.println("Cannot rename: " + e.getMessage());
+        } catch (StaleFileException e) {
+            System.out.println("Conflict: " + e.getMessage() + ". No files were changed; try again.");
+        } catch (IOException e) {
+            System.out.println("Error renaming: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void printPlan(WorkspaceRefactoring.Plan plan, long millis) {
+        System.out.println("\nRename " + plan.oldName() + " -> " + plan.newName() + ": " + plan.occurrences()
+                + " occurrence(s) in " + plan.rewrites().size() + " file(s), found in " + millis + " ms");
+        for (WorkspaceRefactoring.FileRewrite rewrite : plan.rewrites()) {
+            String moved = rewrite.newFile().equals(rewrite.file()) ? "" : " -> " + relative(rewrite.newFile());
+            System.out.println("  " + relative(rewrite.file()) + moved + " (" + rewrite.occurrences() + ")");
+        }
+    }
+
+    private void printChangedLines(WorkspaceRefactoring.Plan plan) {
+        for (WorkspaceRefactoring.FileRewrite rewrite : plan.rewrites()) {
+            System.out.print(Diff.unified("a/" + relative(rewrite.file()), "b/" + relative(rewrite.newFile()),
+                    rewrite.before(), rewrite.after(), 1));
+        }
+    }
+
+    /**
+     * Regenerates every class of the workspace. The changes are always shown as a
+     * dry run first and only written once confirmed.
+     */
+    private void regenerate() {
+        try {
+            awaitIndex();
+            System.out.print("Reformat members in the generator's style? (y/n): ");
+            boolean reformat = scanner.nextLine().trim().equalsIgnoreCase("y");
+            long start = System.nanoTime();
+            WorkspaceRegenerator.Preview preview = regenerator.preview(reformat);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            int added = 0;
+            int removed = 0;
+            for (WorkspaceRegenerator.FileDiff change : preview.changed()) {
+                String name = relative(change.file());
+                String diff = Diff.unified("a/" + name, "b/" + name, change.diff(), 3);
+                System.out.print(diff.isEmpty() ? name + ": only line ends differ\n" : diff);
+                added += change.diff().addedCount();
+                removed += change.diff().removedCount();
+            }
+            for (String skipped : preview.skipped()) {
+                System.out.println("Skipped " + skipped);
+            }
+            System.out.println("\n" + preview.changed().size() + " file(s) would change (+" + added + " -" + removed
+                    + " lines), " + preview.unchanged() + " unchanged; compared in " + millis + " ms");
+            if (preview.changed().isEmpty()) {
+                return;
+            }
+            System.out.print("Write these files? (y/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                System.out.println("Dry run only. No files were changed.");
+                return;
+            }
+            regenerator.apply(preview);
+            System.out.println("Regenerated " + preview.changed().size() + " file(s).");
+        } catch (StaleFileException e) {
+            System.out.println("Conflict: " + e.getMessage() + ". No files were changed; try again.");
+        } catch (IOException e) {
+            System.out.println("Error regenerating: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void exportArchive() {
+        Path root = workspaceIndex.getRoot();
+        Path defaultFile = root.resolve(root.getFileName() + "-sources.jar");
+        System.out.print("Archive to write, .jar or .zip (empty for " + defaultFile + "): ");
+        String input = scanner.nextLine().trim();
+        Path file = input.isEmpty() ? defaultFile : Paths.get(input);
+        System.out.print("Compression level 0-9 (empty for default): ");
+        String levelInput = scanner.nextLine().trim();
+        int level;
+        try {
+            level = levelInput.isEmpty() ? -1 : Integer.parseInt(levelInput);
+            if (level < -1 || level > 9) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Compression level must be a number from 0 to 9.");
+            return;
+        }
+        try {
+            awaitIndex();
+            long start = System.nanoTime();
+            SourceExporter.Summary summary = SourceExporter.exportWorkspace(workspaceIndex, file, level);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            for (String skipped : summary.skipped()) {
+                System.out.println("Skipped " + skipped);
+            }
+            System.out.println("Exported " + summary.classes() + " class(es) to " + file
+                    + (summary.copied() > 0 ? ", plus " + summary.copied() + " enum, record or other file(s) copied unchanged" : "")
+                    + " ("
+                    + summary.sourceBytes() + " bytes of source, " + summary.archiveBytes() + " bytes archived) in "
+                    + millis + " ms.");
+        } catch (IOException e) {
+            System.out.println("Error exporting: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void exportHierarchy() {
+        Path root = workspaceIndex.getRoot();
+        Path defaultFile = root.resolve(root.getFileName() + "-hierarchy.dot");
+        System.out.print("DOT file to write (empty for " + defaultFile + "): ");
+        String input = scanner.nextLine().trim();
+        Path file = input.isEmpty() ? defaultFile : Paths.get(input);
+        System.out.print("Only packages starting with (empty for all): ");
+        String packagePrefix = scanner.nextLine().trim();
+        System.out.print("Only classes around this one (empty for all): ");
+        String rootClass = scanner.nextLine().trim();
+        int depth = Integer.MAX_VALUE;
+        int maxFanOut;
+        try {
+            if (!rootClass.isEmpty()) {
+                System.out.print("Depth from " + rootClass + " (empty for unlimited): ");
+                depth = parseLimit(scanner.nextLine().trim());
+            }
+            System.out.print("Most subtypes to draw per type (empty for unlimited): ");
+            maxFanOut = parseLimit(scanner.nextLine().trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Please enter a positive number.");
+            return;
+        }
+        HierarchyExporter.Filter filter = new HierarchyExporter.Filter(packagePrefix,
+                rootClass.isEmpty() ? null : rootClass, depth, maxFanOut);
+        try {
+            awaitIndex();
+            long start = System.nanoTime();
+            HierarchyExporter.Summary summary;
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                summary = HierarchyExporter.exportDot(workspaceIndex, typeHierarchy, filter, writer);
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            Metrics.fileWritten(Files.size(file));
+            System.out.println("Exported " + summary.classes() + " class(es) and " + summary.edges() + " edge(s) to "
+                    + file + " in " + millis + " ms"
+                    + (summary.omitted() > 0 ? "; " + summary.omitted() + " subtype edge(s) summarized" : "") + ".");
+            System.out.println("Render it with: dot -Tsvg " + file + " -o hierarchy.svg");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error exporting the hierarchy: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int parseLimit(String input) {
+        if (input.isEmpty()) {
+            return Integer.MAX_VALUE;
+        }
+        int limit = Integer.parseInt(input);
+        if (limit < 0) {
+            throw new NumberFormatException();
+        }
+        return limit;
+    }
+
+    private void importSchema() {
+        System.out.print("Schema file (.json, .csv or .tsv): ");
+        Path file = Paths.get(scanner.nextLine().trim());
+        if (!Files.isRegularFile(file)) {
+            System.out.println("File does not exist: " + file);
+            return;
+        }
+        System.out.print("Package for entities that do not name one (empty for the default package): ");
+        String defaultPackage = scanner.nextLine().trim();
+        try {
+            ValidationUtils.validatePackageName(defaultPackage);
+        } catch (InvalidNameException e) {
+            System.out.println("Invalid package name: " + e.getMessage());
+            return;
+        }
+        ClassFileSink sink = new ClassFileSink(askOverwrite());
+        long start = System.nanoTime();
+        try {
+            SchemaImporter.Summary summary = SchemaImporter.importFile(file, defaultPackage, sink);
+            for (String problem : summary.reported()) {
+                System.out.println("  " + problem);
+            }
+            if (summary.problems() > summary.reported().size()) {
+                System.out.println("  ... and " + (summary.problems() - summary.reported().size()) + " more problem(s)");
+            }
+        } catch (IOException e) {
+            System.out.println("Error importing schema: " + e.getMessage());
+        } finally {
+            sink.finish(start);
+        }
+    }
+
+    private void exportModels() {
+        Path root = workspaceIndex.getRoot();
+        Path defaultFile = root.resolve(root.getFileName() + "-models.json");
+        System.out.print("JSON file to write (empty for " + defaultFile + "): ");
+        String input = scanner.nextLine().trim();
+        Path file = input.isEmpty() ? defaultFile : Paths.get(input);
+        try {
+            awaitIndex();
+            long start = System.nanoTime();
+            int count;
+            try (ModelJson.Writer writer = new ModelJson.Writer(Files.newBufferedWriter(file, StandardCharsets.UTF_8), true)) {
+                for (ClassSnapshot snapshot : workspaceIndex.getClasses()) {
+                    writer.write(JavaClassBuilder.fromSnapshot(snapshot));
+                }
+                count = writer.getCount();
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            Metrics.fileWritten(Files.size(file));
+            System.out.println("Exported " + count + " model(s) to " + file + " in " + millis + " ms.");
+        } catch (IOException e) {
+            System.out.println("Error exporting models: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void importModels() {
+        System.out.print("JSON file with models: ");
+        Path file = Paths.get(scanner.nextLine().trim());
+        if (!Files.isRegularFile(file)) {
+            System.out.println("File does not exist: " + file);
+            return;
+        }
+        ClassFileSink sink = new ClassFileSink(askOverwrite());
+        long start = System.nanoTime();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            ModelJson.readAll(reader, sink);
+        } catch (IOException e) {
+            System.out.println("Error importing models: " + e.getMessage());
+        } catch (InvalidNameException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            sink.finish(start);
+        }
+    }
+
+    private void lint() {
+        try {
+            printLintSummary(WorkspaceLinter.lint(workspaceIndex.getRoot(), findingPrinter()));
+        } catch (IOException e) {
+            System.out.println("Error linting the workspace: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Indexes the sources in a zip or jar, such as the JDK's src.zip, in place
+     * and in parallel, then lints the classes found like the workspace's
+     */
+    private void scanArchive() {
+        System.out.print("Path of the zip or jar: ");
+        Path archive = Paths.get(scanner.nextLine().trim()).toAbsolutePath().normalize();
+        if (!SourceArchive.isArchive(archive)) {
+            System.out.println("Not a .zip or .jar file: " + archive);
+            return;
+        }
+        try (WorkspaceIndex index = WorkspaceIndex.ofArchive(archive)) {
+            long start = System.nanoTime();
+            index.refreshAll();
+            System.out.println("Indexed " + index.size() + " class(es) from " + archive.getFileName()
+                    + " in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            printLintSummary(WorkspaceLinter.lint(index, findingPrinter()));
+        } catch (IOException e) {
+            System.out.println("Error scanning " + archive + ": " + e.getMessage());
+        }
+    }
+
+    // Prints the first MAX_FINDINGS findings; called from the linter's threads
+    private Consumer<WorkspaceLinter.Finding> findingPrinter() {
+        AtomicInteger printed = new AtomicInteger();
+        return finding -> {
+            if (printed.getAndIncrement() < MAX_FINDINGS) {
+                String line = "  " + relative(finding.file()) + ":" + finding.line() + ": ["
+                        + finding.rule() + "] " + finding.message();
+                synchronized (System.out) {
+                    System.out.println(line);
+                }
+            }
+        };
+    }
+
+    private static void printLintSummary(WorkspaceLinter.Summary summary) {
+        if (summary.findings() > MAX_FINDINGS) {
+            System.out.println("  ... and " + (summary.findings() - MAX_FINDINGS) + " more finding(s)");
+        }
+        for (Map.Entry<String, Long> rule : summary.findingsByRule().entrySet()) {
+            System.out.println(rule.getKey() + ": " + rule.getValue());
+        }
+        System.out.println("Linted " + summary.files() + " file(s) in " + summary.millis() + " ms: "
+                + summary.findings() + " finding(s)"
+                + (summary.unparsed() > 0 ? ", " + summary.unparsed() + " not a class or interface" : "") + ".");
+    }
+
+    private void checkClasses() {
+        try {
+            awaitIndex();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        SemanticChecker.Report report = semanticChecker.checkAll();
+        int shown = 0;
+        for (SemanticChecker.Problem problem : report.problems()) {
+            if (shown++ == MAX_FINDINGS) {
+                System.out.println("  ... and " + (report.problems().size() - MAX_FINDINGS) + " more problem(s)");
+                break;
+            }
+            System.out.println("  [" + problem.kind().label() + "] " + problem.message());
+        }
+        System.out.println("Checked " + report.classes() + " class(es) in " + report.millis() + " ms ("
+                + report.analyzed() + " re-analyzed): " + report.problems().size() + " problem(s).");
+    }
+
+    private boolean askOverwrite() {
+        System.out.print("Overwrite classes that already exist? (y/n): ");
+        return scanner.nextLine().trim().equalsIgnoreCase("y");
+    }
+
+    /**
+     * Writes each imported model to its package folder as soon as it arrives, on
+     * a pool of writer threads so packages are written in parallel. At most
+     * QUEUED_PER_THREAD models per thread wait to be written; beyond that the
+     * parser blocks, so only counts and a few names are kept however big the import.
+     */
+    private class ClassFileSink implements ModelSink {
+        private static final int MAX_LISTED = 20;
+        private static final int QUEUED_PER_THREAD = 16;
+
+        private final boolean overwrite;
+        private final ExecutorService pool;
+        private final Semaphore slots;
+        private final Set<Path> folders = ConcurrentHashMap.newKeySet();
+        private final List<String> existing = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger existingCount = new AtomicInteger();
+        private final AtomicInteger classes = new AtomicInteger();
+        private final AtomicInteger fields = new AtomicInteger();
+        private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+        ClassFileSink(boolean overwrite) {
+            this.overwrite = overwrite;
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            AtomicInteger threadCount = new AtomicInteger();
+            this.pool = Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "jcb-import-writer-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.slots = new Semaphore(threads * QUEUED_PER_THREAD);
+        }
+
+        @Override
+        public void accept(JavaClassBuilder model) throws IOException {
+            IOException failed = failure.get();
+            if (failed != null) {
+                // Stop reading once a write failed
+                throw failed;
+            }
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Import interrupted");
+            }
+            pool.execute(() -> {
+                try {
+                    write(model);
+                } catch (IOException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    slots.release();
+                }
+            });
+        }
+
+        private void write(JavaClassBuilder model) throws IOException {
+            String folder = FileManager.packageFolder(folderPath, model.getPackageName());
+            try {
+                FileManager.writeAtomic(folder, model.getClassName(), model.buildClass(),
+                        overwrite ? null : FileVersion.ABSENT);
+                folders.add(Paths.get(folder));
+                classes.incrementAndGet();
+                fields.addAndGet(model.getFields().size());
+            } catch (StaleFileException e) {
+                if (existingCount.getAndIncrement() < MAX_LISTED) {
+                    existing.add(model.getClassName());
+                }
+            }
+        }
+
+        /**
+         * Waits for the queued writes, re-indexes the folders written to and
+         * reports what was imported
+         */
+        void finish(long start) {
+            pool.shutdown();
+            try {
+                while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                    // Still writing
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            workspaceIndex.refresh(folders);
+            if (failure.get() != null) {
+                System.out.println("Error writing classes: " + failure.get().getMessage());
+            }
+            int notOverwritten = existingCount.get();
+            if (notOverwritten > 0) {
+                List<String> listed;
+                synchronized (existing) {
+                    listed = new ArrayList<>(existing);
+                }
+                System.out.println("Not overwritten, " + notOverwritten + " already exist: " + String.join(", ", listed)
+                        + (notOverwritten > listed.size() ? ", ..." : ""));
+            }
+            System.out.println("Imported " + classes.get() + " class(es) with " + fields.get() + " field(s) in " + millis + " ms.");
+        }
+    }
+
+    private void awaitIndex() throws InterruptedException {
+        if (!workspaceIndex.isFirstScanDone()) {
+            System.out.println("Indexing the workspace...");
+            workspaceIndex.awaitFirstScan();
+        }
+    }
+
+    private String relative(Path file) {
+        Path root = workspaceIndex.getRoot();
+        if (file.getFileSystem() != root.getFileSystem()) {
+            // An archive entry, shown by its path inside the archive
+            return file.toString().substring(1);
+        }
+        return file.startsWith(root) ? root.relativize(file).toString() : file.toString();
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private void saveMetrics() {
+        Path defaultFile = Paths.get(folderPath, "jcb-metrics.json");
+        System.out.print("File to write (empty for " + defaultFile + "): ");
+        String input = scanner.nextLine().trim();
+        Path file = input.isEmpty() ? defaultFile : Paths.get(input);
+        try {
+            Files.writeString(file, Metrics.toJson());
+            System.out.println("Metrics written to " + file + " (" + workspaceIndex.size() + " classes indexed).");
+        } catch (IOException e) {
+            System.out.println("Error writing metrics: " + e.getMessage());
+        }
+    }
+}
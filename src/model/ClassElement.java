@@ -5,11 +5,15 @@ package model;
  */
 public abstract class ClassElement {
     protected String name;
-    protected String visibility;
+    // Visibility and modifiers, see Modifiers
+    protected short modifiers;
+    // Where this element was read from; kept after edits so it stays in place
+    protected SourceSpan span;
+    protected boolean modified;
     
     public ClassElement(String name, String visibility) {
         this.name = name;
-        this.visibility = visibility;
+        this.modifiers = (short) Modifiers.of(Visibility.of(visibility));
     }
     
     public String getName() {
@@ -18,14 +22,67 @@ public abstract class ClassElement {
     
     public void setName(String name) {
         this.name = name;
+        markModified();
     }
     
+    /**
+     * Returns the visibility keyword, or "" for package-private
+     */
     public String getVisibility() {
-        return visibility;
+        return Modifiers.visibility(modifiers).keyword();
     }
     
     public void setVisibility(String visibility) {
-        this.visibility = visibility;
+        setVisibility(Visibility.of(visibility));
+    }
+    
+    public Visibility getAccess() {
+        return Modifiers.visibility(modifiers);
+    }
+    
+    public void setVisibility(Visibility visibility) {
+        setModifiers(Modifiers.withVisibility(modifiers, visibility));
+    }
+    
+    /**
+     * Returns the visibility and modifiers as a Modifiers bitmask
+     */
+    public int getModifiers() {
+        return modifiers;
+    }
+    
+    public void setModifiers(int modifiers) {
+        this.modifiers = (short) modifiers;
+        markModified();
+    }
+    
+    protected void setFlag(int flag, boolean on) {
+        setModifiers(Modifiers.set(modifiers, flag, on));
+    }
+    
+    /**
+     * Returns the source region this element was scanned from, or null if it
+     * was created in the builder
+     */
+    public SourceSpan getSpan() {
+        return span;
+    }
+    
+    public void setSpan(SourceSpan span) {
+        this.span = span;
+        this.modified = false;
+    }
+    
+    /**
+     * Returns true if the element was edited since it was scanned, so it must be
+     * regenerated from its properties instead of copied from its span
+     */
+    public boolean isModified() {
+        return modified;
+    }
+    
+    public void markModified() {
+        this.modified = true;
     }
     
     /**
@@ -0,0 +1,403 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable view of a whole class or interface. Produced by
+ * JavaClassBuilder.snapshot(); any number of threads may render, validate
+ * or write the same snapshot while the builder keeps being edited.
+ *
+ * typeParameters holds the brackets, as in "<T>"; javadoc is null when the
+ * generated declaration gets a javadoc naming the class.
+ *
+ * For a scanned class, preambleSpan is everything before the declaration
+ * (comments, package and imports) while they are unchanged, leadingSpan the
+ * comments before the package line, such as a license header, headerSpan is
+ * the unedited declaration (with its javadoc and annotations), bodySpan is everything between the class braces
+ * and otherMembers are the members the model does not represent, such as
+ * initializers and nested types. The header and other members are emitted
+ * verbatim, and so are unedited members together with the whitespace around
+ * them, so an unedited class renders exactly as it was read.
+ */
+public record ClassSnapshot(String className, String packageName,
+                            List<FieldSnapshot> fields, List<MethodSnapshot> methods,
+                            List<ConstructorSnapshot> constructors, List<String> imports,
+                            boolean isAbstract, boolean isInterface,
+                            String extendsClass, List<String> implementsInterfaces,
+                            String typeParameters, String javadoc, List<String> annotations,
+                            SourceSpan preambleSpan, SourceSpan leadingSpan,
+                            SourceSpan headerSpan, SourceSpan bodySpan, List<SourceSpan> otherMembers,
+                            boolean defaultConstructor) {
+
+    public ClassSnapshot {
+        fields = List.copyOf(fields);
+        methods = List.copyOf(methods);
+        constructors = List.copyOf(constructors);
+        imports = List.copyOf(imports);
+        implementsInterfaces = List.copyOf(implementsInterfaces);
+        typeParameters = typeParameters == null ? "" : typeParameters;
+        annotations = List.copyOf(annotations);
+        otherMembers = List.copyOf(otherMembers);
+    }
+
+    public ClassSnapshot(String className, String packageName,
+                         List<FieldSnapshot> fields, List<MethodSnapshot> methods,
+                         List<ConstructorSnapshot> constructors, List<String> imports,
+                         boolean isAbstract, boolean isInterface,
+                         String extendsClass, List<String> implementsInterfaces) {
+        this(className, packageName, fields, methods, constructors, imports, isAbstract, isInterface,
+                extendsClass, implementsInterfaces, "", null, List.of(), null, null, null, null, List.of(), true);
+    }
+
+    public FieldSnapshot getFieldByName(String name) {
+        return fields.stream()
+                .filter(field -> field.name().equals(name))
+                .findFirst()
+                .orElse(null);
+    }
+
+    public MethodSnapshot getMethodByName(String name) {
+        return methods.stream()
+                .filter(method -> method.name().equals(name))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Returns the Java source of this class
+     */
+    public String toJavaCode() {
+        StringBuilder sb = new StringBuilder();
+
+        if (preambleSpan != null) {
+            sb.append(preambleSpan.text());
+        } else {
+            if (leadingSpan != null) {
+                sb.append(leadingSpan.text());
+            }
+
+            if (packageName != null && !packageName.isEmpty()) {
+                sb.append("package ").append(packageName).append(";\n\n");
+            }
+
+            // Import
+            if (!imports.isEmpty()) {
+                for (String importStmt : imports) {
+                    sb.append("import ").append(importStmt).append(";\n");
+                }
+                sb.append("\n");
+            }
+        }
+
+        if (headerSpan != null) {
+            sb.append(headerSpan.text()).append(headerGap());
+        } else {
+            // Class
+            if (javadoc == null) {
+                sb.append("/**\n");
+                sb.append(" * ").append(className).append("\n");
+                sb.append(" */\n");
+            } else if (!javadoc.isEmpty()) {
+                sb.append(javadoc).append("\n");
+            }
+            for (String annotation : annotations) {
+                sb.append(annotation).append("\n");
+            }
+
+            sb.append("public ");
+
+            if (isAbstract) {
+                sb.append("abstract ");
+            }
+
+            if (isInterface) {
+                sb.append("interface ");
+            } else {
+                sb.append("class ");
+            }
+
+            sb.append(className).append(typeParameters);
+
+            // Extends
+            if (extendsClass != null && !extendsClass.isEmpty()) {
+                sb.append(" extends ").append(extendsClass);
+            }
+
+            // Implements
+            if (!implementsInterfaces.isEmpty() && !isInterface) {
+                sb.append(" implements ");
+                sb.append(String.join(", ", implementsInterfaces));
+            }
+
+            sb.append(" {");
+        }
+
+        Member previous = null;
+        for (Member member : memberList()) {
+            String code = codeOf(member);
+            SourceSpan span = member.span();
+            String gap = span != null && bodySpan != null && span.getSource() == bodySpan.getSource()
+                    ? whitespaceBefore(span.getStart()) : null;
+            int lineStart = gap == null ? -1 : gap.lastIndexOf('\n') + 1;
+            if (gap != null && code.equals(span.text())) {
+                // Unedited: as it was written, with the space before it
+                sb.append(gap).append(normalized(span.getSource(), span.getStart(), span.getEnd()));
+            } else if (lineStart > 0) {
+                sb.append(gap, 0, lineStart).append(indentMember(code));
+            } else {
+                sb.append("\n");
+                if (previous != null && blankLineBetween(previous, member)) {
+                    sb.append("\n");
+                }
+                sb.append(indentMember(code));
+            }
+            previous = member;
+        }
+
+        String close = bodySpan != null ? whitespaceBefore(bodySpan.getEnd()) : "";
+        if (close.indexOf('\n') >= 0) {
+            sb.append(close).append("}").append(trailingText());
+        } else {
+            sb.append("\n");
+            if (previous != null && blankLineBeforeClose(previous)) {
+                sb.append("\n");
+            }
+            sb.append("}");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the text between the scanned header and the body, such as " {" or
+     * "\n{", or " {" if it does not hold just the brace
+     */
+    private String headerGap() {
+        if (bodySpan != null && bodySpan.getSource() == headerSpan.getSource()
+                && headerSpan.getEnd() < bodySpan.getStart()
+                && bodySpan.getSource().charAt(bodySpan.getStart() - 1) == '{') {
+            String gap = normalized(headerSpan.getSource(), headerSpan.getEnd(), bodySpan.getStart() - 1);
+            if (gap.isBlank()) {
+                return gap + "{";
+            }
+        }
+        return " {";
+    }
+
+    /**
+     * Returns the whitespace after the closing brace of a scanned class, so an
+     * unedited file keeps its last line; "" if anything else follows
+     */
+    private String trailingText() {
+        CharSequence source = bodySpan.getSource();
+        if (bodySpan.getEnd() >= source.length()) {
+            return "";
+        }
+        String text = normalized(source, bodySpan.getEnd() + 1, source.length());
+        return text.isBlank() ? text : "";
+    }
+
+    public enum MemberKind {
+        FIELD, CONSTRUCTOR, METHOD, OTHER
+    }
+
+    /**
+     * A member of the class: the element at index in fields, constructors,
+     * methods or otherMembers, depending on its kind
+     */
+    public record MemberRef(MemberKind kind, int index) {
+    }
+
+    /**
+     * Returns the members in the order toJavaCode emits them, not counting a
+     * generated default constructor
+     */
+    public List<MemberRef> memberOrder() {
+        List<MemberRef> order = new ArrayList<>();
+        for (Member member : memberList()) {
+            if (member.index() >= 0) {
+                order.add(new MemberRef(member.kind(), member.index()));
+            }
+        }
+        return order;
+    }
+
+    private boolean hasSourcePositions() {
+        return headerSpan != null || !otherMembers.isEmpty()
+                || fields.stream().anyMatch(f -> f.position() >= 0)
+                || constructors.stream().anyMatch(c -> c.position() >= 0)
+                || methods.stream().anyMatch(m -> m.position() >= 0);
+    }
+
+    // A member to emit; index -1 is the generated default constructor
+    private record Member(int position, int rank, MemberKind kind, int index, SourceSpan span) {
+    }
+
+    private List<Member> memberList() {
+        if (hasSourcePositions()) {
+            return membersInSourceOrder();
+        }
+        // Fields, constructors, methods, then members kept verbatim from the source
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < fields.size(); i++) {
+            members.add(new Member(-1, 0, MemberKind.FIELD, i, null));
+        }
+        for (int i = 0; i < constructors.size(); i++) {
+            members.add(new Member(-1, 0, MemberKind.CONSTRUCTOR, i, null));
+        }
+        if (constructors.isEmpty() && !isInterface && defaultConstructor) {
+            members.add(new Member(-1, 0, MemberKind.CONSTRUCTOR, -1, null));
+        }
+        for (int i = 0; i < methods.size(); i++) {
+            members.add(new Member(-1, 0, MemberKind.METHOD, i, null));
+        }
+        for (int i = 0; i < otherMembers.size(); i++) {
+            members.add(new Member(-1, 0, MemberKind.OTHER, i, null));
+        }
+        return members;
+    }
+
+    /**
+     * Orders the members of a scanned class as they were in the source.
+     * Members added in the builder follow the last scanned member of their kind.
+     */
+    private List<Member> membersInSourceOrder() {
+        List<Member> members = new ArrayList<>();
+        int rank = 0;
+        int lastPosition = -1;
+        for (FieldSnapshot field : fields) {
+            lastPosition = Math.max(lastPosition, field.position());
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            FieldSnapshot field = fields.get(i);
+            int position = field.position();
+            members.add(new Member(position >= 0 ? position : after(lastPosition), position >= 0 ? 0 : ++rank, MemberKind.FIELD, i, field.span()));
+        }
+        // A generated default constructor follows the fields, as in a generated class
+        int defaultConstructorPosition = lastPosition;
+        lastPosition = -1;
+        for (ConstructorSnapshot constructor : constructors) {
+            lastPosition = Math.max(lastPosition, constructor.position());
+        }
+        for (int i = 0; i < constructors.size(); i++) {
+            ConstructorSnapshot constructor = constructors.get(i);
+            int position = constructor.position();
+            members.add(new Member(position >= 0 ? position : after(lastPosition), position >= 0 ? 0 : ++rank, MemberKind.CONSTRUCTOR, i, constructor.span()));
+        }
+        if (constructors.isEmpty() && !isInterface && defaultConstructor) {
+            members.add(new Member(defaultConstructorPosition, ++rank, MemberKind.CONSTRUCTOR, -1, null));
+        }
+        lastPosition = -1;
+        for (MethodSnapshot method : methods) {
+            lastPosition = Math.max(lastPosition, method.position());
+        }
+        for (int i = 0; i < methods.size(); i++) {
+            MethodSnapshot method = methods.get(i);
+            int position = method.position();
+            members.add(new Member(position >= 0 ? position : after(lastPosition), position >= 0 ? 0 : ++rank, MemberKind.METHOD, i, method.span()));
+        }
+        for (int i = 0; i < otherMembers.size(); i++) {
+            SourceSpan member = otherMembers.get(i);
+            members.add(new Member(member.getStart(), 0, MemberKind.OTHER, i, member));
+        }
+        members.sort(Comparator.comparingInt(Member::position).thenComparingInt(Member::rank));
+        return members;
+    }
+
+    private String codeOf(Member member) {
+        switch (member.kind()) {
+            case FIELD:
+                return fields.get(member.index()).toJavaCode();
+            case CONSTRUCTOR:
+                return member.index() < 0 ? "public " + className + "() {\n}"
+                        : constructors.get(member.index()).toJavaCode();
+            case METHOD:
+                return methods.get(member.index()).toJavaCode();
+            default:
+                return otherMembers.get(member.index()).text();
+        }
+    }
+
+    private boolean blankLineBeforeClose(Member last) {
+        SourceSpan span = last.span();
+        if (span != null && bodySpan != null && span.getSource() == bodySpan.getSource()) {
+            return newlinesBetween(span.getSource(), span.getEnd(), bodySpan.getEnd()) > 1;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the whitespace in the body right before an offset, with \r removed;
+     * for an unedited class, the space between a member and the one before it
+     */
+    private String whitespaceBefore(int offset) {
+        CharSequence source = bodySpan.getSource();
+        int start = offset;
+        while (start > bodySpan.getStart() && Character.isWhitespace(source.charAt(start - 1))) {
+            start--;
+        }
+        return normalized(source, start, offset);
+    }
+
+    private static String normalized(CharSequence source, int from, int to) {
+        StringBuilder sb = new StringBuilder(to - from);
+        for (int i = from; i < to; i++) {
+            char c = source.charAt(i);
+            if (c != '\r') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int newlinesBetween(CharSequence source, int from, int to) {
+        int newlines = 0;
+        for (int i = from; i < to; i++) {
+            if (source.charAt(i) == '\n') {
+                newlines++;
+            }
+        }
+        return newlines;
+    }
+
+    /**
+     * Keeps the blank line, or its absence, between two members read from the same
+     * source; otherwise only consecutive fields are kept together
+     */
+    private static boolean blankLineBetween(Member member, Member next) {
+        SourceSpan a = member.span();
+        SourceSpan b = next.span();
+        if (a != null && b != null && a.getSource() == b.getSource() && a.getEnd() <= b.getStart()) {
+            return newlinesBetween(a.getSource(), a.getEnd(), b.getStart()) > 1;
+        }
+        return !(member.kind() == MemberKind.FIELD && next.kind() == MemberKind.FIELD);
+    }
+
+    private static int after(int lastPosition) {
+        return lastPosition < 0 ? Integer.MAX_VALUE : lastPosition;
+    }
+
+    /**
+     * Indents every non-empty line of a member by one level
+     */
+    private static String indentMember(String code) {
+        StringBuilder sb = new StringBuilder(code.length() + 16);
+        int lineStart = 0;
+        while (lineStart <= code.length()) {
+            int lineEnd = code.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = code.length();
+            }
+            if (lineEnd > lineStart) {
+                sb.append("    ").append(code, lineStart, lineEnd);
+            }
+            if (lineEnd < code.length()) {
+                sb.append('\n');
+            }
+            lineStart = lineEnd + 1;
+        }
+        return sb.toString();
+    }
+}
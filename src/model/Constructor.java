@@ -1,8 +1,8 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Represents a constructor in a Java class
@@ -10,6 +10,8 @@ import java.util.stream.Collectors;
 public class Constructor extends ClassElement {
     private List<Parameter> parameters;
     private String body;
+    // Body as a region of the scanned source, materialized only when needed
+    private SourceSpan bodySpan;
     
     public Constructor(String name, String visibility) {
         super(name, visibility);
@@ -18,45 +20,52 @@ public class Constructor extends ClassElement {
     }
     
     public List<Parameter> getParameters() {
-        return parameters;
+        return Collections.unmodifiableList(parameters);
     }
     
     public void addParameter(Parameter parameter) {
         this.parameters.add(parameter);
+        markModified();
     }
     
     public String getBody() {
+        if (body == null && bodySpan != null) {
+            body = bodySpan.text();
+        }
         return body;
     }
     
     public void setBody(String body) {
         this.body = body;
+        this.bodySpan = null;
+        markModified();
+    }
+    
+    public SourceSpan getBodySpan() {
+        return bodySpan;
+    }
+    
+    /**
+     * Sets the body from the scanned source without copying it
+     */
+    public void setBodySpan(SourceSpan bodySpan) {
+        this.bodySpan = bodySpan;
+        this.body = bodySpan == null ? "" : null;
     }
     
+    /**
+     * Returns an immutable copy of this constructor and its parameters
+     */
+    public ConstructorSnapshot snapshot() {
+        List<ParameterSnapshot> parameterSnapshots = new ArrayList<>(parameters.size());
+        for (Parameter parameter : parameters) {
+            parameterSnapshots.add(parameter.snapshot());
+        }
+        return new ConstructorSnapshot(getName(), modifiers, parameterSnapshots, body, bodySpan, span, modified);
+    }
+
     @Override
     public String toJavaCode() {
-        StringBuilder sb = new StringBuilder();
-        
-        // Visibility + name
-        sb.append(getVisibility()).append(" ").append(getName()).append("(");
-        
-        // Parameters
-        if (!parameters.isEmpty()) {
-            String parameterList = parameters.stream()
-                    .map(Parameter::toJavaCode)
-                    .collect(Collectors.joining(", "));
-            sb.append(parameterList);
-        }
-        
-        sb.append(") {\n");
-        
-        // Body
-        if (body != null && !body.isEmpty()) {
-            sb.append("    ").append(body.replace("\n", "\n    ")).append("\n");
-        }
-        
-        sb.append("}");
-        
-        return sb.toString();
+        return snapshot().toJavaCode();
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+package model;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable view of a constructor, safe to share between threads.
+ * A constructor that was scanned and not edited is emitted verbatim from its span.
+ */
+public record ConstructorSnapshot(String name, int modifiers, List<ParameterSnapshot> parameters,
+                                  String body, SourceSpan bodySpan, SourceSpan span, boolean modified) {
+
+    public ConstructorSnapshot {
+        parameters = List.copyOf(parameters);
+    }
+
+    public ConstructorSnapshot(String name, String visibility, List<ParameterSnapshot> parameters, String body) {
+        this(name, Modifiers.of(Visibility.of(visibility)), parameters, body, null, null, false);
+    }
+
+    public String visibility() {
+        return Modifiers.visibility(modifiers).keyword();
+    }
+
+    /**
+     * Offset in the scanned source, or -1 for a constructor created in the builder
+     */
+    public int position() {
+        return span == null ? -1 : span.getStart();
+    }
+
+    /**
+     * Returns the body text, materializing it from the source if needed
+     */
+    public String bodyText() {
+        if (body != null) {
+            return body;
+        }
+        return bodySpan == null ? "" : bodySpan.text();
+    }
+
+    public String toJavaCode() {
+        if (span != null && !modified) {
+            return span.text();
+        }
+        String body = bodyText();
+        StringBuilder sb = new StringBuilder();
+
+        // Javadoc, comments and annotations of a scanned constructor
+        if (span != null) {
+            sb.append(span.leadingText());
+        }
+
+        // Visibility + name
+        String visibility = visibility();
+        if (!visibility.isEmpty()) {
+            sb.append(visibility).append(" ");
+        }
+        Modifiers.appendKeywords(sb, modifiers);
+        sb.append(name).append("(");
+
+        // Parameters
+        if (!parameters.isEmpty()) {
+            String parameterList = parameters.stream()
+                    .map(ParameterSnapshot::toJavaCode)
+                    .collect(Collectors.joining(", "));
+            sb.append(parameterList);
+        }
+
+        sb.append(") {\n");
+
+        // Body
+        if (body != null && !body.isEmpty()) {
+            sb.append("    ").append(body.replace("\n", "\n    ")).append("\n");
+        }
+
+        sb.append("}");
+
+        return sb.toString();
+    }
+}
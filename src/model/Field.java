@@ -5,15 +5,11 @@ package model;
  */
 public class Field extends ClassElement {
     private String type;
-    private boolean isFinal;
-    private boolean isStatic;
     private String initialValue;
     
     public Field(String name, String type, String visibility) {
         super(name, visibility);
-        this.type = type;
-        this.isFinal = false;
-        this.isStatic = false;
+        this.type = Symbols.intern(type);
         this.initialValue = null;
     }
     
@@ -22,23 +18,24 @@ public class Field extends ClassElement {
     }
     
     public void setType(String type) {
-        this.type = type;
+        this.type = Symbols.intern(type);
+        markModified();
     }
     
     public boolean isFinal() {
-        return isFinal;
+        return Modifiers.has(modifiers, Modifiers.FINAL);
     }
     
     public void setFinal(boolean isFinal) {
-        this.isFinal = isFinal;
+        setFlag(Modifiers.FINAL, isFinal);
     }
     
     public boolean isStatic() {
-        return isStatic;
+        return Modifiers.has(modifiers, Modifiers.STATIC);
     }
     
     public void setStatic(boolean isStatic) {
-        this.isStatic = isStatic;
+        setFlag(Modifiers.STATIC, isStatic);
     }
     
     public String getInitialValue() {
@@ -47,28 +44,18 @@ public class Field extends ClassElement {
     
     public void setInitialValue(String initialValue) {
         this.initialValue = initialValue;
+        markModified();
     }
     
+    /**
+     * Returns an immutable copy of this field
+     */
+    public FieldSnapshot snapshot() {
+        return new FieldSnapshot(getName(), type, modifiers, initialValue, span, modified);
+    }
+
     @Override
     public String toJavaCode() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(getVisibility()).append(" ");
-        
-        if (isStatic) {
-            sb.append("static ");
-        }
-        
-        if (isFinal) {
-            sb.append("final ");
-        }
-        
-        sb.append(type).append(" ").append(getName());
-        
-        if (initialValue != null && !initialValue.isEmpty()) {
-            sb.append(" = ").append(initialValue);
-        }
-        
-        sb.append(";");
-        return sb.toString();
+        return snapshot().toJavaCode();
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+package model;
+
+/**
+ * Immutable view of a field, safe to share between threads.
+ * A field that was scanned and not edited is emitted verbatim from its span.
+ */
+public record FieldSnapshot(String name, String type, int modifiers, String initialValue,
+                            SourceSpan span, boolean modified) {
+
+    public FieldSnapshot(String name, String type, String visibility,
+                         boolean isStatic, boolean isFinal, String initialValue) {
+        this(name, Symbols.intern(type), Modifiers.of(Visibility.of(visibility))
+                | (isStatic ? Modifiers.STATIC : 0) | (isFinal ? Modifiers.FINAL : 0), initialValue, null, false);
+    }
+
+    public String visibility() {
+        return Modifiers.visibility(modifiers).keyword();
+    }
+
+    public boolean isStatic() {
+        return Modifiers.has(modifiers, Modifiers.STATIC);
+    }
+
+    public boolean isFinal() {
+        return Modifiers.has(modifiers, Modifiers.FINAL);
+    }
+
+    /**
+     * Offset in the scanned source, or -1 for a field created in the builder
+     */
+    public int position() {
+        return span == null ? -1 : span.getStart();
+    }
+
+    public String toJavaCode() {
+        if (span != null && !modified) {
+            return span.text();
+        }
+        StringBuilder sb = new StringBuilder();
+        if (span != null) {
+            sb.append(span.leadingText());
+        }
+        String visibility = visibility();
+        if (!visibility.isEmpty()) {
+            sb.append(visibility).append(" ");
+        }
+        Modifiers.appendKeywords(sb, modifiers);
+
+        sb.append(type).append(" ").append(name);
+
+        if (initialValue != null && !initialValue.isEmpty()) {
+            sb.append(" = ").append(initialValue);
+        }
+
+        sb.append(";");
+        return sb.toString();
+    }
+}
@@ -1,8 +1,8 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Represents a method in a Java class
@@ -10,16 +10,14 @@ import java.util.stream.Collectors;
 public class Method extends ClassElement {
     private String returnType;
     private List<Parameter> parameters;
-    private boolean isStatic;
-    private boolean isAbstract;
     private String body;
+    // Body as a region of the scanned source, materialized only when needed
+    private SourceSpan bodySpan;
     
     public Method(String name, String returnType, String visibility) {
         super(name, visibility);
-        this.returnType = returnType;
+        this.returnType = Symbols.intern(returnType);
         this.parameters = new ArrayList<>();
-        this.isStatic = false;
-        this.isAbstract = false;
         this.body = "";
     }
     
@@ -28,93 +26,82 @@ public class Method extends ClassElement {
     }
     
     public void setReturnType(String returnType) {
-        this.returnType = returnType;
+        this.returnType = Symbols.intern(returnType);
+        markModified();
     }
     
     public List<Parameter> getParameters() {
-        return parameters;
+        return Collections.unmodifiableList(parameters);
     }
     
     public void addParameter(Parameter parameter) {
         this.parameters.add(parameter);
+        markModified();
     }
     
     public boolean isStatic() {
-        return isStatic;
+        return Modifiers.has(modifiers, Modifiers.STATIC);
     }
     
     public void setStatic(boolean isStatic) {
-        this.isStatic = isStatic;
+        setFlag(Modifiers.STATIC, isStatic);
+    }
+    
+    public boolean isFinal() {
+        return Modifiers.has(modifiers, Modifiers.FINAL);
+    }
+    
+    public void setFinal(boolean isFinal) {
+        setFlag(Modifiers.FINAL, isFinal);
     }
     
     public boolean isAbstract() {
-        return isAbstract;
+        return Modifiers.has(modifiers, Modifiers.ABSTRACT);
     }
     
     public void setAbstract(boolean isAbstract) {
-        this.isAbstract = isAbstract;
+        setFlag(Modifiers.ABSTRACT, isAbstract);
     }
     
     public String getBody() {
+        if (body == null && bodySpan != null) {
+            body = bodySpan.text();
+        }
         return body;
     }
     
     public void setBody(String body) {
         this.body = body;
+        this.bodySpan = null;
+        markModified();
+    }
+    
+    public SourceSpan getBodySpan() {
+        return bodySpan;
+    }
+    
+    /**
+     * Sets the body from the scanned source without copying it
+     */
+    public void setBodySpan(SourceSpan bodySpan) {
+        this.bodySpan = bodySpan;
+        this.body = bodySpan == null ? "" : null;
     }
     
+    /**
+     * Returns an immutable copy of this method and its parameters
+     */
+    public MethodSnapshot snapshot() {
+        List<ParameterSnapshot> parameterSnapshots = new ArrayList<>(parameters.size());
+        for (Parameter parameter : parameters) {
+            parameterSnapshots.add(parameter.snapshot());
+        }
+        return new MethodSnapshot(getName(), returnType, modifiers, parameterSnapshots, body, bodySpan,
+                span, modified);
+    }
+
     @Override
     public String toJavaCode() {
-        StringBuilder sb = new StringBuilder();
-        
-        // Visibility + modifiers
-        sb.append(getVisibility()).append(" ");
-        
-        if (isStatic) {
-            sb.append("static ");
-        }
-        
-        if (isAbstract) {
-            sb.append("abstract ");
-        }
-        
-        // Return type + name
-        sb.append(returnType).append(" ").append(getName()).append("(");
-        
-        // Parameters
-        if (!parameters.isEmpty()) {
-            String parameterList = parameters.stream()
-                    .map(Parameter::toJavaCode)
-                    .collect(Collectors.joining(", "));
-            sb.append(parameterList);
-        }
-        
-        sb.append(")");
-        
-        // Body or semicolon for abstract methods
-        if (isAbstract) {
-            sb.append(";");
-        } else {
-            sb.append(" {\n");
-            if (body != null && !body.isEmpty()) {
-                sb.append("    ").append(body.replace("\n", "\n    ")).append("\n");
-            } else if (!returnType.equals("void")) {
-                // Default return for non-void methods
-                if (returnType.equals("boolean")) {
-                    sb.append("    return false;\n");
-                } else if (returnType.equals("int") || returnType.equals("long") || 
-                        returnType.equals("byte") || returnType.equals("short") || 
-                        returnType.equals("float") || returnType.equals("double")) {
-                    sb.append("    return 0;\n");
-                } else if (returnType.equals("char")) {
-                    sb.append("    return '\\0';\n");
-                } else {
-                    sb.append("    return null;\n");
-                }
-            }
-            sb.append("}");
-        }
-        
-        return sb.toString();
+        return snapshot().toJavaCode();
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
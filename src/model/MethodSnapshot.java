@@ -0,0 +1,116 @@
+package model;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable view of a method, safe to share between threads.
+ * A method that was scanned and not edited is emitted verbatim from its span;
+ * its body stays a span until someone asks for the text.
+ */
+public record MethodSnapshot(String name, String returnType, int modifiers, List<ParameterSnapshot> parameters,
+                             String body, SourceSpan bodySpan, SourceSpan span, boolean modified) {
+
+    public MethodSnapshot {
+        parameters = List.copyOf(parameters);
+    }
+
+    public MethodSnapshot(String name, String returnType, String visibility, List<ParameterSnapshot> parameters,
+                          boolean isStatic, boolean isAbstract, String body) {
+        this(name, Symbols.intern(returnType), Modifiers.of(Visibility.of(visibility))
+                | (isStatic ? Modifiers.STATIC : 0) | (isAbstract ? Modifiers.ABSTRACT : 0),
+                parameters, body, null, null, false);
+    }
+
+    public String visibility() {
+        return Modifiers.visibility(modifiers).keyword();
+    }
+
+    public boolean isStatic() {
+        return Modifiers.has(modifiers, Modifiers.STATIC);
+    }
+
+    public boolean isFinal() {
+        return Modifiers.has(modifiers, Modifiers.FINAL);
+    }
+
+    public boolean isAbstract() {
+        return Modifiers.has(modifiers, Modifiers.ABSTRACT);
+    }
+
+    /**
+     * Offset in the scanned source, or -1 for a method created in the builder
+     */
+    public int position() {
+        return span == null ? -1 : span.getStart();
+    }
+
+    /**
+     * Returns the body text, materializing it from the source if needed
+     */
+    public String bodyText() {
+        if (body != null) {
+            return body;
+        }
+        return bodySpan == null ? "" : bodySpan.text();
+    }
+
+    public String toJavaCode() {
+        if (span != null && !modified) {
+            return span.text();
+        }
+        String body = bodyText();
+        StringBuilder sb = new StringBuilder();
+
+        // Javadoc, comments and annotations of a scanned method
+        if (span != null) {
+            sb.append(span.leadingText());
+        }
+
+        // Visibility + modifiers
+        String visibility = visibility();
+        if (!visibility.isEmpty()) {
+            sb.append(visibility).append(" ");
+        }
+        Modifiers.appendKeywords(sb, modifiers);
+
+        // Return type + name
+        sb.append(returnType).append(" ").append(name).append("(");
+
+        // Parameters
+        if (!parameters.isEmpty()) {
+            String parameterList = parameters.stream()
+                    .map(ParameterSnapshot::toJavaCode)
+                    .collect(Collectors.joining(", "));
+            sb.append(parameterList);
+        }
+
+        sb.append(")");
+
+        // Body or semicolon for abstract and native methods
+        if (isAbstract() || Modifiers.has(modifiers, Modifiers.NATIVE)) {
+            sb.append(";");
+        } else {
+            sb.append(" {\n");
+            if (body != null && !body.isEmpty()) {
+                sb.append("    ").append(body.replace("\n", "\n    ")).append("\n");
+            } else if (!returnType.equals("void")) {
+                // Default return for non-void methods
+                if (returnType.equals("boolean")) {
+                    sb.append("    return false;\n");
+                } else if (returnType.equals("int") || returnType.equals("long") ||
+                        returnType.equals("byte") || returnType.equals("short") ||
+                        returnType.equals("float") || returnType.equals("double")) {
+                    sb.append("    return 0;\n");
+                } else if (returnType.equals("char")) {
+                    sb.append("    return '\\0';\n");
+                } else {
+                    sb.append("    return null;\n");
+                }
+            }
+            sb.append("}");
+        }
+
+        return sb.toString();
+    }
+}
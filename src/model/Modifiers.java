@@ -0,0 +1,125 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Packs the visibility and modifiers of a member into one int: the ordinal of
+ * its Visibility in the low two bits, then one bit per modifier.
+ */
+public final class Modifiers {
+    public static final int VISIBILITY_MASK = 0b11;
+    public static final int STATIC = 1 << 2;
+    public static final int FINAL = 1 << 3;
+    public static final int ABSTRACT = 1 << 4;
+    public static final int DEFAULT = 1 << 5;
+    public static final int SYNCHRONIZED = 1 << 6;
+    public static final int NATIVE = 1 << 7;
+    public static final int STRICTFP = 1 << 8;
+    public static final int TRANSIENT = 1 << 9;
+    public static final int VOLATILE = 1 << 10;
+    /**
+     * The modifier keywords that have a bit, in the order they are written
+     */
+    public static final List<String> KEYWORDS = List.of("static", "final", "abstract", "default",
+            "synchronized", "native", "strictfp", "transient", "volatile");
+
+    private Modifiers() {
+    }
+
+    public static int of(Visibility visibility) {
+        return visibility.ordinal();
+    }
+
+    public static Visibility visibility(int modifiers) {
+        return Visibility.fromOrdinal(modifiers & VISIBILITY_MASK);
+    }
+
+    public static int withVisibility(int modifiers, Visibility visibility) {
+        return (modifiers & ~VISIBILITY_MASK) | visibility.ordinal();
+    }
+
+    public static boolean has(int modifiers, int flag) {
+        return (modifiers & flag) != 0;
+    }
+
+    public static int set(int modifiers, int flag, boolean on) {
+        return on ? modifiers | flag : modifiers & ~flag;
+    }
+
+    /**
+     * Parses space-separated modifiers such as "public static final";
+     * words without a bit here, like "sealed", are ignored
+     */
+    public static int parse(String text) {
+        int modifiers = 0;
+        if (text == null) {
+            return modifiers;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (start < i) {
+                modifiers |= flagOf(text.substring(start, i));
+            }
+        }
+        return modifiers;
+    }
+
+    /**
+     * Appends the keyword of every modifier set besides the visibility, in
+     * KEYWORDS order, each followed by a space
+     */
+    public static StringBuilder appendKeywords(StringBuilder sb, int modifiers) {
+        for (String keyword : KEYWORDS) {
+            if (has(modifiers, flagOf(keyword))) {
+                sb.append(keyword).append(" ");
+            }
+        }
+        return sb;
+    }
+
+    /**
+     * Returns the bit of a modifier keyword other than a visibility, or 0 if it has none
+     */
+    public static int flag(String keyword) {
+        return KEYWORDS.contains(keyword) ? flagOf(keyword) : 0;
+    }
+
+    private static int flagOf(String keyword) {
+        switch (keyword) {
+            case "public":
+                return Visibility.PUBLIC.ordinal();
+            case "protected":
+                return Visibility.PROTECTED.ordinal();
+            case "private":
+                return Visibility.PRIVATE.ordinal();
+            case "static":
+                return STATIC;
+            case "final":
+                return FINAL;
+            case "abstract":
+                return ABSTRACT;
+            case "default":
+                return DEFAULT;
+            case "synchronized":
+                return SYNCHRONIZED;
+            case "native":
+                return NATIVE;
+            case "strictfp":
+                return STRICTFP;
+            case "transient":
+                return TRANSIENT;
+            case "volatile":
+                return VOLATILE;
+            default:
+                return 0;
+        }
+    }
+}
@@ -9,14 +9,14 @@ public class Parameter {
     private boolean isFinal;
     
     public Parameter(String name, String type) {
-        this.name = name;
-        this.type = type;
+        this.name = Symbols.intern(name);
+        this.type = Symbols.intern(type);
         this.isFinal = false;
     }
     
     public Parameter(String name, String type, boolean isFinal) {
-        this.name = name;
-        this.type = type;
+        this.name = Symbols.intern(name);
+        this.type = Symbols.intern(type);
         this.isFinal = isFinal;
     }
     
@@ -25,7 +25,7 @@ public class Parameter {
     }
     
     public void setName(String name) {
-        this.name = name;
+        this.name = Symbols.intern(name);
     }
     
     public String getType() {
@@ -33,7 +33,7 @@ public class Parameter {
     }
     
     public void setType(String type) {
-        this.type = type;
+        this.type = Symbols.intern(type);
     }
     
     public boolean isFinal() {
@@ -44,12 +44,14 @@ public class Parameter {
         this.isFinal = isFinal;
     }
     
+    /**
+     * Returns an immutable copy of this parameter
+     */
+    public ParameterSnapshot snapshot() {
+        return new ParameterSnapshot(name, type, isFinal);
+    }
+
     public String toJavaCode() {
-        StringBuilder sb = new StringBuilder();
-        if (isFinal) {
-            sb.append("final ");
-        }
-        sb.append(type).append(" ").append(name);
-        return sb.toString();
-    }
-} 
\ No newline at end of file
+        return snapshot().toJavaCode();
+    }
+}
@@ -0,0 +1,16 @@
+package model;
+
+/**
+ * Immutable view of a method or constructor parameter
+ */
+public record ParameterSnapshot(String name, String type, boolean isFinal) {
+
+    public String toJavaCode() {
+        StringBuilder sb = new StringBuilder();
+        if (isFinal) {
+            sb.append("final ");
+        }
+        sb.append(type).append(" ").append(name);
+        return sb.toString();
+    }
+}
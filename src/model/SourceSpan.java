@@ -0,0 +1,137 @@
+package model;
+
+/**
+ * A region of the original source text, kept as offsets into the shared source
+ * buffer instead of a copy. The text is only materialized when it is rendered.
+ * Continuation lines have up to {@code indent} leading whitespace characters
+ * removed, so the element can be re-indented wherever it is emitted.
+ * A member's span starts at its comments and annotations; declarationStart is
+ * where its modifiers or type begin.
+ */
+public final class SourceSpan {
+    private final CharSequence source;
+    private final int start;
+    private final int end;
+    private final int indent;
+    private final int declarationStart;
+
+    public SourceSpan(CharSequence source, int start, int end, int indent) {
+        this(source, start, end, indent, start);
+    }
+
+    public SourceSpan(CharSequence source, int start, int end, int indent, int declarationStart) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        this.indent = indent;
+        this.declarationStart = declarationStart;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public int getIndent() {
+        return indent;
+    }
+
+    public int getDeclarationStart() {
+        return declarationStart;
+    }
+
+    public int length() {
+        return end - start;
+    }
+
+    /**
+     * Returns the same region in another buffer whose text around it is identical,
+     * moved by the given number of characters
+     */
+    public SourceSpan shift(CharSequence newSource, int delta) {
+        return new SourceSpan(newSource, start + delta, end + delta, indent, declarationStart + delta);
+    }
+
+    /**
+     * Returns the spanned text with line endings normalized to \n and the
+     * element's own indentation removed from continuation lines
+     */
+    public String text() {
+        return text(start, end);
+    }
+
+    /**
+     * Returns the comments and annotations before the declaration, normalized
+     * like text(), so they can precede a regenerated declaration; "" if none
+     */
+    public String leadingText() {
+        return text(start, declarationStart);
+    }
+
+    private String text(int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            char c = source.charAt(i++);
+            if (c == '\r') {
+                continue;
+            }
+            sb.append(c);
+            if (c == '\n') {
+                int skipped = 0;
+                while (skipped < indent && i < end && (source.charAt(i) == ' ' || source.charAt(i) == '\t')) {
+                    i++;
+                    skipped++;
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return text();
+    }
+
+    /**
+     * Spans are equal when they cover the same text, wherever it is stored
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SourceSpan)) {
+            return false;
+        }
+        SourceSpan other = (SourceSpan) o;
+        if (length() != other.length() || indent != other.indent) {
+            return false;
+        }
+        if (source == other.source && start == other.start) {
+            return true;
+        }
+        for (int i = 0; i < length(); i++) {
+            if (source.charAt(start + i) != other.source.charAt(other.start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = indent;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + source.charAt(i);
+        }
+        return h;
+    }
+}
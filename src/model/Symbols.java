@@ -0,0 +1,41 @@
+package model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared table of type and parameter names. Thousands of scanned members name
+ * the same few types, so each distinct name is kept once, and comparing two
+ * interned names is a reference check. Names are never removed; the table only
+ * grows with the number of distinct types in the workspace.
+ */
+public final class Symbols {
+    private static final ConcurrentHashMap<String, String> TABLE = new ConcurrentHashMap<>(512);
+
+    static {
+        // Seed with the literals the model compares against, so those compare by reference too
+        for (String symbol : new String[]{"void", "boolean", "byte", "short", "int", "long", "float", "double",
+                "char", "String", "Object"}) {
+            TABLE.put(symbol, symbol);
+        }
+    }
+
+    private Symbols() {
+    }
+
+    /**
+     * Returns the shared instance equal to name, or null for null
+     */
+    public static String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        String symbol = TABLE.get(name);
+        if (symbol == null) {
+            symbol = TABLE.putIfAbsent(name, name);
+            if (symbol == null) {
+                symbol = name;
+            }
+        }
+        return symbol;
+    }
+}
@@ -0,0 +1,52 @@
+package model;
+
+/**
+ * Access level of a class member. The ordinal is stored in the low bits of the
+ * member's modifier mask, so the order of the constants must not change.
+ */
+public enum Visibility {
+    PACKAGE(""),
+    PUBLIC("public"),
+    PROTECTED("protected"),
+    PRIVATE("private");
+
+    private static final Visibility[] VALUES = values();
+
+    private final String keyword;
+
+    Visibility(String keyword) {
+        this.keyword = keyword;
+    }
+
+    /**
+     * Returns the modifier as written in source, or "" for package-private
+     */
+    public String keyword() {
+        return keyword;
+    }
+
+    /**
+     * Parses a visibility modifier; null and "" mean package-private
+     *
+     * @throws IllegalArgumentException If the text is not a visibility modifier
+     */
+    public static Visibility of(String keyword) {
+        if (keyword == null || keyword.isEmpty()) {
+            return PACKAGE;
+        }
+        switch (keyword) {
+            case "public":
+                return PUBLIC;
+            case "protected":
+                return PROTECTED;
+            case "private":
+                return PRIVATE;
+            default:
+                throw new IllegalArgumentException("Invalid visibility modifier: " + keyword);
+        }
+    }
+
+    static Visibility fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
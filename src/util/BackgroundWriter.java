@@ -0,0 +1,265 @@
+package util;
+
+import exception.StaleFileException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes class files on a background thread, so saving returns at once.
+ * Saves wait in a queue keyed by target file: saving a file again before its
+ * earlier save was written replaces the queued content, so only the latest
+ * version reaches the disk. Every save ends in exactly one call to the
+ * listener, and failed saves are kept until they are taken with takeFailures.
+ */
+public final class BackgroundWriter {
+
+    /**
+     * A class file to write
+     *
+     * @param expected The version the file must still have on disk, FileVersion.ABSENT if it
+     *                 must not exist yet, or null to overwrite unconditionally
+     * @param previous File the class is moved from, deleted together with the write; null if none
+     */
+    public record Save(Path target, String content, FileVersion expected, Path previous) {
+
+        public String className() {
+            String fileName = target.getFileName().toString();
+            return fileName.substring(0, fileName.length() - ".java".length());
+        }
+
+        /**
+         * The same save, overwriting whatever is on disk
+         */
+        public Save force() {
+            return new Save(target, content, null, previous);
+        }
+
+        private boolean isMove() {
+            return previous != null && !previous.equals(target);
+        }
+    }
+
+    public record Failure(Save save, Exception error) {
+
+        /**
+         * True if the file changed on disk since it was loaded, rather than failing to write
+         */
+        public boolean isConflict() {
+            return error instanceof StaleFileException;
+        }
+    }
+
+    public interface Listener {
+        void saved(Save save);
+
+        void failed(Failure failure);
+    }
+
+    private final Listener listener;
+    private final Object lock = new Object();
+    private final Map<Path, Save> queue = new LinkedHashMap<>();
+    private final List<Failure> failures = new ArrayList<>();
+    private Save inFlight;
+    private boolean closed;
+    private Thread thread;
+
+    public BackgroundWriter(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Queues a save. If a save of the same file is still queued and this one was
+     * made on top of its content, it is replaced and the version check of the
+     * queued save carries over, since that content never reached the disk.
+     *
+     * @throws IllegalStateException If the writer was closed
+     */
+    public void submit(Save save) {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("The background writer is closed");
+            }
+            Save queued = queue.get(save.target());
+            if (queued != null) {
+                if (save.expected() != null && save.expected().matches(versionOf(queued.content()))) {
+                    save = new Save(save.target(), save.content(), queued.expected(),
+                            save.previous() != null ? save.previous() : queued.previous());
+                } else if (save.previous() == null) {
+                    save = new Save(save.target(), save.content(), save.expected(), queued.previous());
+                }
+                Metrics.SAVES_COALESCED.increment();
+            }
+            queue.put(save.target(), save);
+            if (thread == null) {
+                thread = new Thread(this::run, "jcb-background-writer");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the queued or in-flight save that writes file, or moves the class
+     * away from it; null if there is none
+     */
+    public Save pending(Path file) {
+        synchronized (lock) {
+            Save found = null;
+            if (inFlight != null && (inFlight.target().equals(file) || file.equals(inFlight.previous()))) {
+                found = inFlight;
+            }
+            // The queue holds later saves than the one in flight
+            for (Save save : queue.values()) {
+                if (save.target().equals(file) || file.equals(save.previous())) {
+                    found = save;
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Returns the target of the latest queued or in-flight save of a class, or null
+     */
+    public Path pendingFile(String className) {
+        synchronized (lock) {
+            Path found = inFlight != null && inFlight.className().equals(className) ? inFlight.target() : null;
+            for (Save save : queue.values()) {
+                if (save.className().equals(className)) {
+                    found = save.target();
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Returns the classes with a queued or in-flight save
+     */
+    public Set<String> pendingClassNames() {
+        synchronized (lock) {
+            Set<String> names = new HashSet<>();
+            if (inFlight != null) {
+                names.add(inFlight.className());
+            }
+            for (Save save : queue.values()) {
+                names.add(save.className());
+            }
+            return names;
+        }
+    }
+
+    /**
+     * The version a file will have once content is written to it
+     */
+    public static FileVersion versionOf(String content) {
+        return FileVersion.of(content.getBytes(Charset.defaultCharset()), -1);
+    }
+
+    /**
+     * Blocks until every queued save was written or failed
+     */
+    public void awaitIdle() throws InterruptedException {
+        synchronized (lock) {
+            while (!queue.isEmpty() || inFlight != null) {
+                lock.wait();
+            }
+        }
+    }
+
+    /**
+     * Returns the saves that failed since the last call and forgets them
+     */
+    public List<Failure> takeFailures() {
+        synchronized (lock) {
+            List<Failure> taken = new ArrayList<>(failures);
+            failures.clear();
+            return taken;
+        }
+    }
+
+    /**
+     * Writes the saves still queued, then stops the writer thread. Failures
+     * stay available from takeFailures.
+     */
+    public void close() throws InterruptedException {
+        Thread running;
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+            running = thread;
+        }
+        if (running != null) {
+            running.join();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Save save;
+            synchronized (lock) {
+                while (queue.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // Only close() stops the writer, after the queue is written
+                    }
+                }
+                if (queue.isEmpty()) {
+                    return;
+                }
+                Iterator<Save> next = queue.values().iterator();
+                save = next.next();
+                next.remove();
+                inFlight = save;
+            }
+            Failure failure = null;
+            try {
+                write(save);
+            } catch (Exception e) {
+                failure = new Failure(save, e);
+            }
+            // Reported before the save stops being pending, so awaitIdle never misses it
+            if (failure != null) {
+                synchronized (lock) {
+                    failures.add(failure);
+                }
+            }
+            try {
+                if (failure == null) {
+                    listener.saved(save);
+                } else {
+                    listener.failed(failure);
+                }
+            } catch (RuntimeException e) {
+                // A broken listener must not stop the writes behind it
+            }
+            synchronized (lock) {
+                inFlight = null;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private static void write(Save save) throws Exception {
+        String folder = save.target().getParent().toString();
+        if (!save.isMove()) {
+            FileManager.writeAtomic(folder, save.className(), save.content(), save.expected());
+            return;
+        }
+        String previousName = save.previous().getFileName().toString();
+        FileManager.writeBatch(List.of(
+                new FileChange(folder, save.className(), save.content(),
+                        save.expected() == null ? null : FileVersion.ABSENT),
+                FileChange.delete(save.previous().getParent().toString(),
+                        previousName.substring(0, previousName.length() - ".java".length()), save.expected())));
+    }
+}
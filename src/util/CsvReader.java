@@ -0,0 +1,122 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Reads delimiter-separated records one at a time (RFC 4180): fields may be
+ * quoted, and quoted fields may contain delimiters, line breaks and doubled
+ * quotes. Records end with \n, \r\n or \r. Only the current record is held in memory.
+ */
+public final class CsvReader implements Closeable {
+    private final Reader in;
+    private final char delimiter;
+    private final char[] buffer = new char[8192];
+    private int pos;
+    private int limit;
+    private final StringBuilder field = new StringBuilder();
+    private long line = 1;
+    private long recordLine;
+
+    public CsvReader(Reader in, char delimiter) {
+        this.in = in;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Replaces the contents of fields with the next record
+     *
+     * @return false at the end of the input, when fields is left empty
+     */
+    public boolean readRecord(List<String> fields) throws IOException {
+        fields.clear();
+        recordLine = line;
+        int c = read();
+        if (c == -1) {
+            return false;
+        }
+        while (true) {
+            field.setLength(0);
+            if (c == '"') {
+                c = readQuoted();
+            } else {
+                while (c != delimiter && c != '\n' && c != '\r' && c != -1) {
+                    field.append((char) c);
+                    c = read();
+                }
+            }
+            fields.add(field.toString());
+            if (c == delimiter) {
+                c = read();
+                continue;
+            }
+            if (c == '\r' && peek() == '\n') {
+                read();
+            }
+            if (c != -1) {
+                line++;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Line the record last read started on, counting from 1
+     */
+    public long getRecordLine() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // Reads a quoted field after its opening quote and returns the character after the closing one
+    private int readQuoted() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unterminated quoted field starting at line " + recordLine);
+            }
+            if (c == '"') {
+                c = read();
+                if (c != '"') {
+                    if (c != delimiter && c != '\n' && c != '\r' && c != -1) {
+                        throw new IOException("Unexpected character after a quoted field at line " + line);
+                    }
+                    return c;
+                }
+            } else if (c == '\n' || (c == '\r' && peek() != '\n')) {
+                line++;
+            }
+            field.append((char) c);
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    private boolean fill() throws IOException {
+        limit = in.read(buffer, 0, buffer.length);
+        pos = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+}
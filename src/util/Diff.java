@@ -0,0 +1,355 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Line diff using Myers' algorithm in its linear-space form: each step finds the
+ * middle snake of the shortest edit script and recurses on the two halves, so
+ * memory stays proportional to the input even for large, very different files.
+ */
+public final class Diff {
+
+    private Diff() {
+    }
+
+    /**
+     * The lines of both texts and which of them the shortest edit script removes or adds
+     */
+    public record Result(List<String> oldLines, List<String> newLines, boolean[] removed, boolean[] added) {
+
+        public boolean isEmpty() {
+            return removedCount() == 0 && addedCount() == 0;
+        }
+
+        public int removedCount() {
+            return count(removed);
+        }
+
+        public int addedCount() {
+            return count(added);
+        }
+
+        private static int count(boolean[] flags) {
+            int count = 0;
+            for (boolean flag : flags) {
+                if (flag) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Splits a text into lines, accepting \n, \r\n and \r line ends. A final line
+     * end does not start an empty line.
+     */
+    public static List<String> lines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                lines.add(text.substring(start, i));
+                if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+        if (start < length) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    public static Result compare(String oldText, String newText) {
+        return compare(lines(oldText), lines(newText));
+    }
+
+    public static Result compare(List<String> oldLines, List<String> newLines) {
+        long start = System.nanoTime();
+        try {
+            return search(oldLines, newLines);
+        } finally {
+            Metrics.DIFF.recordSince(start);
+        }
+    }
+
+    private static Result search(List<String> oldLines, List<String> newLines) {
+        // Compare small ints instead of strings in the inner loops
+        Map<String, Integer> ids = new HashMap<>();
+        int[] a = new int[oldLines.size()];
+        int[] b = new int[newLines.size()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = ids.computeIfAbsent(oldLines.get(i), line -> ids.size());
+        }
+        for (int i = 0; i < b.length; i++) {
+            b[i] = ids.computeIfAbsent(newLines.get(i), line -> ids.size());
+        }
+        boolean[] removed = new boolean[a.length];
+        boolean[] added = new boolean[b.length];
+
+        // A line missing from the other side can never match, so only the rest is searched
+        boolean[] inA = new boolean[ids.size()];
+        boolean[] inB = new boolean[ids.size()];
+        for (int id : a) {
+            inA[id] = true;
+        }
+        for (int id : b) {
+            inB[id] = true;
+        }
+        int[] aIndex = matchable(a, inB, removed);
+        int[] bIndex = matchable(b, inA, added);
+        int[] aLines = select(a, aIndex);
+        int[] bLines = select(b, bIndex);
+        boolean[] aRemoved = new boolean[aLines.length];
+        boolean[] bAdded = new boolean[bLines.length];
+        int size = (aLines.length + bLines.length + 1) / 2 + 2;
+        new Search(aLines, bLines, aRemoved, bAdded, new int[2 * size + 1], new int[2 * size + 1])
+                .compare(0, aLines.length, 0, bLines.length);
+        for (int i = 0; i < aRemoved.length; i++) {
+            removed[aIndex[i]] |= aRemoved[i];
+        }
+        for (int j = 0; j < bAdded.length; j++) {
+            added[bIndex[j]] |= bAdded[j];
+        }
+        return new Result(oldLines, newLines, removed, added);
+    }
+
+    /**
+     * Returns the positions of the lines that also occur on the other side and
+     * flags the others as changed
+     */
+    private static int[] matchable(int[] lines, boolean[] inOther, boolean[] changed) {
+        int[] positions = new int[lines.length];
+        int count = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (inOther[lines[i]]) {
+                positions[count++] = i;
+            } else {
+                changed[i] = true;
+            }
+        }
+        return Arrays.copyOf(positions, count);
+    }
+
+    private static int[] select(int[] lines, int[] positions) {
+        int[] selected = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            selected[i] = lines[positions[i]];
+        }
+        return selected;
+    }
+
+    /**
+     * Returns a unified diff of the two texts, or an empty string if they have the same lines
+     *
+     * @param context Number of unchanged lines shown around each change
+     */
+    public static String unified(String oldName, String newName, String oldText, String newText, int context) {
+        return unified(oldName, newName, compare(oldText, newText), context);
+    }
+
+    public static String unified(String oldName, String newName, Result diff, int context) {
+        if (diff.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("--- ").append(oldName).append('\n');
+        sb.append("+++ ").append(newName).append('\n');
+        List<String> a = diff.oldLines();
+        List<String> b = diff.newLines();
+        boolean[] removed = diff.removed();
+        boolean[] added = diff.added();
+        int i = 0;
+        int j = 0;
+        while (true) {
+            // Skip to the next change
+            while (i < a.size() && j < b.size() && !removed[i] && !added[j]) {
+                i++;
+                j++;
+            }
+            if (i == a.size() && j == b.size()) {
+                break;
+            }
+            int hunkI = Math.max(0, i - context);
+            int hunkJ = j - (i - hunkI);
+            // Extend the hunk while the next change is close enough to share context
+            int endI = i;
+            int endJ = j;
+            while (true) {
+                while (endI < a.size() && removed[endI]) {
+                    endI++;
+                }
+                while (endJ < b.size() && added[endJ]) {
+                    endJ++;
+                }
+                int same = 0;
+                while (endI + same < a.size() && endJ + same < b.size()
+                        && !removed[endI + same] && !added[endJ + same] && same <= 2 * context) {
+                    same++;
+                }
+                boolean atEnd = endI + same == a.size() && endJ + same == b.size();
+                if (same > 2 * context || atEnd) {
+                    int trailing = Math.min(same, context);
+                    endI += trailing;
+                    endJ += trailing;
+                    break;
+                }
+                endI += same;
+                endJ += same;
+            }
+            appendHunk(sb, a, b, removed, added, hunkI, endI, hunkJ, endJ);
+            i = endI;
+            j = endJ;
+        }
+        return sb.toString();
+    }
+
+    private static void appendHunk(StringBuilder sb, List<String> a, List<String> b, boolean[] removed,
+                                   boolean[] added, int fromI, int toI, int fromJ, int toJ) {
+        sb.append("@@ -").append(range(fromI, toI - fromI)).append(" +").append(range(fromJ, toJ - fromJ))
+                .append(" @@\n");
+        int i = fromI;
+        int j = fromJ;
+        while (i < toI || j < toJ) {
+            if (i < toI && removed[i]) {
+                sb.append('-').append(a.get(i++)).append('\n');
+            } else if (j < toJ && added[j]) {
+                sb.append('+').append(b.get(j++)).append('\n');
+            } else {
+                sb.append(' ').append(a.get(i)).append('\n');
+                i++;
+                j++;
+            }
+        }
+    }
+
+    private static String range(int start, int count) {
+        // An empty range is shown at the line before it, as diff -u does
+        int first = count == 0 ? start : start + 1;
+        return count == 1 ? String.valueOf(first) : first + "," + count;
+    }
+
+    /**
+     * One divide-and-conquer run. The forward and backward search vectors are
+     * allocated once and reused by every level of the recursion.
+     */
+    private static final class Search {
+        private final int[] a;
+        private final int[] b;
+        private final boolean[] removed;
+        private final boolean[] added;
+        private final int[] forward;
+        private final int[] backward;
+        // Snake found by the last middleSnake call, in absolute positions
+        private int snakeStartX;
+        private int snakeStartY;
+        private int snakeEndX;
+        private int snakeEndY;
+
+        Search(int[] a, int[] b, boolean[] removed, boolean[] added, int[] forward, int[] backward) {
+            this.a = a;
+            this.b = b;
+            this.removed = removed;
+            this.added = added;
+            this.forward = forward;
+            this.backward = backward;
+        }
+
+        void compare(int aLo, int aHi, int bLo, int bHi) {
+            while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+                aLo++;
+                bLo++;
+            }
+            while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+                aHi--;
+                bHi--;
+            }
+            if (aLo == aHi) {
+                for (int j = bLo; j < bHi; j++) {
+                    added[j] = true;
+                }
+                return;
+            }
+            if (bLo == bHi) {
+                for (int i = aLo; i < aHi; i++) {
+                    removed[i] = true;
+                }
+                return;
+            }
+            middleSnake(aLo, aHi, bLo, bHi);
+            int startX = snakeStartX;
+            int startY = snakeStartY;
+            int endX = snakeEndX;
+            int endY = snakeEndY;
+            compare(aLo, startX, bLo, startY);
+            compare(endX, aHi, endY, bHi);
+        }
+
+        /**
+         * Searches from both corners at once until the paths meet. Diagonal k holds
+         * the furthest x reached on it; the backward search runs on the reversed
+         * sequences, where its diagonal k is the forward diagonal delta - k.
+         */
+        private void middleSnake(int aLo, int aHi, int bLo, int bHi) {
+            int n = aHi - aLo;
+            int m = bHi - bLo;
+            int delta = n - m;
+            boolean odd = (delta & 1) != 0;
+            int offset = (n + m + 1) / 2 + 1;
+            forward[offset + 1] = 0;
+            backward[offset + 1] = 0;
+            for (int d = 0; d <= (n + m + 1) / 2; d++) {
+                for (int k = -d; k <= d; k += 2) {
+                    int x = k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])
+                            ? forward[offset + k + 1] : forward[offset + k - 1] + 1;
+                    int y = x - k;
+                    int x0 = x;
+                    int y0 = y;
+                    while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                        x++;
+                        y++;
+                    }
+                    forward[offset + k] = x;
+                    int reverse = delta - k;
+                    if (odd && reverse >= -(d - 1) && reverse <= d - 1 && x + backward[offset + reverse] >= n) {
+                        setSnake(aLo + x0, bLo + y0, aLo + x, bLo + y);
+                        return;
+                    }
+                }
+                for (int k = -d; k <= d; k += 2) {
+                    int x = k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1])
+                            ? backward[offset + k + 1] : backward[offset + k - 1] + 1;
+                    int y = x - k;
+                    int x0 = x;
+                    int y0 = y;
+                    while (x < n && y < m && a[aHi - 1 - x] == b[bHi - 1 - y]) {
+                        x++;
+                        y++;
+                    }
+                    backward[offset + k] = x;
+                    int ahead = delta - k;
+                    if (!odd && ahead >= -d && ahead <= d && x + forward[offset + ahead] >= n) {
+                        setSnake(aHi - x, bHi - y, aHi - x0, bHi - y0);
+                        return;
+                    }
+                }
+            }
+            throw new IllegalStateException("Diff paths did not meet");
+        }
+
+        private void setSnake(int startX, int startY, int endX, int endY) {
+            snakeStartX = startX;
+            snakeStartY = startY;
+            snakeEndX = endX;
+            snakeEndY = endY;
+        }
+    }
+}
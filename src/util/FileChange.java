@@ -0,0 +1,23 @@
+package util;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * A pending change to a class file for FileManager.writeBatch: its new content,
+ * or null to delete it, and the version it must still have when it is replaced
+ */
+public record FileChange(String folderPath, String fileName, String content, FileVersion expected) {
+
+    public static FileChange delete(String folderPath, String fileName, FileVersion expected) {
+        return new FileChange(folderPath, fileName, null, expected);
+    }
+
+    public boolean isDelete() {
+        return content == null;
+    }
+
+    public Path target() {
+        return Paths.get(folderPath, fileName + ".java");
+    }
+}
@@ -1,44 +1,484 @@
 package util;
 
+import event.ReadEvent;
+import event.WriteEvent;
+import exception.StaleFileException;
+
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class FileManager {
+    // Hidden folder of lock files, one per file ever written; scans skip dot-folders
+    private static final String LOCK_FOLDER = ".jcb-locks";
+    // The workspace whose lock folder guards its files, or null to lock next to each file
+    private static volatile Path workspaceRoot;
+    // Channel locks are per process, so threads of this one queue up here first
+    private static final Map<Path, ReentrantLock> localLocks = new ConcurrentHashMap<>();
+    // Folders known to exist, so each package folder is created once rather than probed on every write
+    private static final Map<Path, Boolean> createdFolders = new ConcurrentHashMap<>();
+
+    /**
+     * Keeps the lock files of the files below root in root's lock folder, so
+     * everyone who shares the workspace folder, on any machine, locks the same files
+     */
+    public static void setWorkspaceRoot(Path root) {
+        workspaceRoot = root.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Returns the folder a class of the given package belongs in: the package
+     * segments as nested folders below root, or root itself for the default package
+     */
+    public static String packageFolder(String root, String packageName) {
+        if (packageName == null || packageName.isEmpty()) {
+            return root;
+        }
+        return Paths.get(root, packageName.split("\\.")).toString();
+    }
+
+    /**
+     * Creates a folder and its parents unless an earlier call already did. Threads
+     * asking for the same folder wait for one creation; different folders are
+     * created concurrently.
+     */
+    public static void ensureFolder(Path folder) throws IOException {
+        Path key = folder.toAbsolutePath().normalize();
+        if (createdFolders.containsKey(key)) {
+            return;
+        }
+        try {
+            createdFolders.computeIfAbsent(key, f -> {
+                try {
+                    Files.createDirectories(f);
+                    return Boolean.TRUE;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw new IOException("Failed to create folder: " + key, e.getCause());
+        }
+    }
+
+    /**
+     * Creates a folder again that was deleted after ensureFolder cached it as created
+     */
+    private static void recreateFolder(Path folder) throws IOException {
+        createdFolders.remove(folder.toAbsolutePath().normalize());
+        ensureFolder(folder);
+    }
 
     public static void writeAtomic(String folderPath, String fileName, String content) throws IOException {
+        try {
+            writeAtomic(folderPath, fileName, content, null);
+        } catch (StaleFileException e) {
+            // Cannot happen: no expected version means no check
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes a class file atomically while holding an exclusive lock on its lock file.
+     * The lock is only held for the check-and-replace window.
+     *
+     * @param expected The version seen when the file was loaded, FileVersion.ABSENT if it
+     *                 must not exist yet, or null to overwrite unconditionally
+     * @return The version of the file that was written
+     * @throws StaleFileException If the file on disk no longer matches the expected version
+     */
+    public static FileVersion writeAtomic(String folderPath, String fileName, String content, FileVersion expected)
+            throws IOException, StaleFileException {
         File folder = new File(folderPath);
-        if (!folder.exists() && !folder.mkdirs()) {
-            throw new IOException("Failed to create folder: " + folderPath);
+        ensureFolder(folder.toPath());
+
+        Path targetFile = new File(folder, fileName + ".java").toPath();
+        Path tempFile = new File(folder, fileName + ".java.tmp").toPath();
+        byte[] bytes = content.getBytes(Charset.defaultCharset());
+
+        long start = System.nanoTime();
+        WriteEvent event = new WriteEvent();
+        event.className = fileName;
+        event.path = targetFile.toString();
+        event.bytes = bytes.length;
+        event.begin();
+        try {
+            HeldLock lock = lock(targetFile);
+            try {
+                checkVersion(targetFile, expected);
+                try {
+                    Files.write(tempFile, bytes);
+                } catch (NoSuchFileException e) {
+                    recreateFolder(folder.toPath());
+                    Files.write(tempFile, bytes);
+                }
+                replace(tempFile, targetFile);
+                Metrics.fileWritten(bytes.length);
+                event.ok();
+                return FileVersion.of(bytes, Files.getLastModifiedTime(targetFile).toMillis());
+            } finally {
+                release(lock);
+            }
+        } catch (StaleFileException e) {
+            event.finish("stale");
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            event.failed(e);
+            throw e;
+        } finally {
+            Metrics.WRITE.recordSince(start);
+        }
+    }
+
+    /**
+     * Applies several changes as one batch. New contents are first written to
+     * temporary files in parallel, so nothing is replaced unless every one of them
+     * could be written. The files are then locked, checked and replaced one at a
+     * time in path order. If a check or a replacement fails, the files already
+     * replaced are restored and the rest are left untouched.
+     *
+     * @throws StaleFileException If a file no longer matches its expected version;
+     *                            no file is changed in that case
+     */
+    public static void writeBatch(List<FileChange> changes) throws IOException, StaleFileException {
+        Map<FileChange, Path> staged = new ConcurrentHashMap<>();
+        try {
+            changes.parallelStream().filter(change -> !change.isDelete()).forEach(change -> {
+                try {
+                    Path folder = Paths.get(change.folderPath());
+                    ensureFolder(folder);
+                    Path temp;
+                    try {
+                        temp = Files.createTempFile(folder, "." + change.fileName(), ".java.tmp");
+                    } catch (NoSuchFileException e) {
+                        recreateFolder(folder);
+                        temp = Files.createTempFile(folder, "." + change.fileName(), ".java.tmp");
+                    }
+                    staged.put(change, temp);
+                    Files.write(temp, change.content().getBytes(Charset.defaultCharset()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            deleteAll(staged.values());
+            throw e.getCause();
+        }
+
+        List<FileChange> ordered = new ArrayList<>(changes);
+        ordered.sort(Comparator.comparing(FileChange::target));
+        Deque<Replaced> replaced = new ArrayDeque<>();
+        try {
+            for (FileChange change : ordered) {
+                replaced.push(commit(change, staged.get(change)));
+            }
+        } catch (IOException | StaleFileException | RuntimeException e) {
+            rollback(replaced, e);
+            deleteAll(staged.values());
+            throw e;
         }
+    }
 
-        File targetFile = new File(folder, fileName + ".java");
-        File tempFile = new File(folder, fileName + ".java.tmp");
+    // A file replaced by a batch, with its content before (null if it did not exist)
+    private record Replaced(FileChange change, byte[] previous) {
+    }
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile))) {
-            writer.write(content);
+    private static Replaced commit(FileChange change, Path temp) throws IOException, StaleFileException {
+        Path target = change.target();
+        WriteEvent event = new WriteEvent();
+        event.className = change.fileName();
+        event.path = target.toString();
+        event.begin();
+        try {
+            HeldLock lock = lock(target);
+            try {
+                checkVersion(target, change.expected());
+                byte[] previous = Files.isRegularFile(target) ? Files.readAllBytes(target) : null;
+                if (change.isDelete()) {
+                    Files.deleteIfExists(target);
+                    event.finish("deleted");
+                } else {
+                    event.bytes = Files.size(temp);
+                    replace(temp, target);
+                    Metrics.fileWritten(event.bytes);
+                    event.ok();
+                }
+                return new Replaced(change, previous);
+            } finally {
+                release(lock);
+            }
+        } catch (StaleFileException e) {
+            event.finish("stale");
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            event.failed(e);
+            throw e;
         }
+    }
 
-        if (targetFile.exists() && !targetFile.delete()) {
-            throw new IOException("Failed to delete existing file: " + targetFile.getAbsolutePath());
+    private static void rollback(Deque<Replaced> replaced, Exception cause) {
+        while (!replaced.isEmpty()) {
+            Replaced entry = replaced.pop();
+            Path target = entry.change().target();
+            try {
+                HeldLock lock = lock(target);
+                try {
+                    if (entry.previous() == null) {
+                        Files.deleteIfExists(target);
+                    } else {
+                        Files.write(target, entry.previous());
+                    }
+                } finally {
+                    release(lock);
+                }
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
         }
+    }
+
+    private static void deleteAll(Collection<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // Leftover temporary file; harmless
+            }
+        }
+    }
 
-        if (!tempFile.renameTo(targetFile)) {
-            throw new IOException("Failed to rename temp file to target file");
+    private static void replace(Path tempFile, Path targetFile) throws IOException {
+        try {
+            Files.move(tempFile, targetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Deletes a class file under its lock, refusing if it changed since the expected version
+     *
+     * @param expected The version seen before deciding to delete, or null to delete unconditionally
+     * @return true if the file was deleted
+     * @throws StaleFileException If the file on disk no longer matches the expected version
+     */
+    public static boolean deleteFile(String folderPath, String fileName, FileVersion expected)
+            throws IOException, StaleFileException {
+        Path targetFile = new File(folderPath, fileName + ".java").toPath();
+        HeldLock lock = lock(targetFile);
+        try {
+            checkVersion(targetFile, expected);
+            return Files.deleteIfExists(targetFile);
+        } finally {
+            release(lock);
         }
     }
 
     public static String readFile(String filePath) throws IOException {
-        File file = new File(filePath);
-        if (!file.exists() || !file.isFile()) {
-            throw new IOException("File does not exist: " + filePath);
+        ReadEvent event = beginRead(filePath);
+        try {
+            File file = new File(filePath);
+            if (!file.exists() || !file.isFile()) {
+                throw new IOException("File does not exist: " + filePath);
+            }
+
+            StringBuilder content = new StringBuilder();
+            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+                String line;
+                while((line = br.readLine()) != null) {
+                    content.append(line).append(System.lineSeparator());
+                }
+            }
+            endRead(event, file.length());
+            return content.toString();
+        } catch (IOException | RuntimeException e) {
+            event.failed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a file through java.nio, so it also works for paths that are not on the
+     * default file system
+     */
+    public static String readFile(Path path) throws IOException {
+        ReadEvent event = beginRead(path.toString());
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            endRead(event, bytes.length);
+            return new String(bytes, Charset.defaultCharset());
+        } catch (IOException | RuntimeException e) {
+            event.failed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a file like readFile and also records the version it was read at,
+     * from the same bytes so the two cannot disagree
+     */
+    public static VersionedContent readFileVersioned(String filePath) throws IOException {
+        ReadEvent event = beginRead(filePath);
+        try {
+            File file = new File(filePath);
+            if (!file.exists() || !file.isFile()) {
+                throw new IOException("File does not exist: " + filePath);
+            }
+
+            Path path = file.toPath();
+            long lastModified = Files.getLastModifiedTime(path).toMillis();
+            byte[] bytes = Files.readAllBytes(path);
+
+            StringBuilder content = new StringBuilder();
+            try (BufferedReader br = new BufferedReader(new StringReader(new String(bytes, Charset.defaultCharset())))) {
+                String line;
+                while((line = br.readLine()) != null) {
+                    content.append(line).append(System.lineSeparator());
+                }
+            }
+            endRead(event, bytes.length);
+            return new VersionedContent(content.toString(), FileVersion.of(bytes, lastModified));
+        } catch (IOException | RuntimeException e) {
+            event.failed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a file exactly as stored, line endings and all, with the version of
+     * the same bytes. Use it to edit a file in place, where readFileVersioned
+     * would rewrite every line ending.
+     */
+    public static VersionedContent readFileVersioned(Path path) throws IOException {
+        ReadEvent event = beginRead(path.toString());
+        try {
+            long lastModified = Files.getLastModifiedTime(path).toMillis();
+            byte[] bytes = Files.readAllBytes(path);
+            endRead(event, bytes.length);
+            return new VersionedContent(new String(bytes, Charset.defaultCharset()), FileVersion.of(bytes, lastModified));
+        } catch (IOException | RuntimeException e) {
+            event.failed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the current version of a file, or FileVersion.ABSENT if it does not exist
+     */
+    public static FileVersion currentVersion(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return FileVersion.ABSENT;
+        }
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        byte[] bytes = Files.readAllBytes(path);
+        Metrics.fileRead(bytes.length);
+        return FileVersion.of(bytes, lastModified);
+    }
+
+    private static ReadEvent beginRead(String path) {
+        ReadEvent event = new ReadEvent();
+        event.path = path;
+        event.begin();
+        return event;
+    }
+
+    private static void endRead(ReadEvent event, long bytes) {
+        Metrics.fileRead(bytes);
+        event.bytes = bytes;
+        event.ok();
+    }
+
+    // Both locks of a file: this process's, then the one shared with other processes
+    private record HeldLock(ReentrantLock local, FileLock file) {
+    }
+
+    /**
+     * Takes the exclusive lock of a file, blocking until other threads and
+     * processes release it. Threads of this process queue on an in-process lock,
+     * since a second channel lock on the same file would throw instead of waiting.
+     * The lock file sits in the workspace's hidden lock folder, named after a hash
+     * of the file's path relative to the workspace, so machines that mount the
+     * workspace at different paths agree on it. Lock files are never deleted:
+     * deleting one while another process waits on it would let two processes
+     * hold "the" lock.
+     */
+    private static HeldLock lock(Path target) throws IOException {
+        Path absolute = target.toAbsolutePath().normalize();
+        Path root = workspaceRoot;
+        Path base = root != null && absolute.startsWith(root) ? root : absolute.getParent();
+        Path lockFolder = base.resolve(LOCK_FOLDER);
+        String relative = base.relativize(absolute).toString().replace(File.separatorChar, '/');
+        Path lockFile = lockFolder.resolve(FileVersion.hash(relative) + ".lock");
+
+        ReentrantLock local = localLocks.computeIfAbsent(lockFile, f -> new ReentrantLock());
+        local.lock();
+        try {
+            ensureFolder(lockFolder);
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            } catch (NoSuchFileException e) {
+                recreateFolder(lockFolder);
+                channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            try {
+                return new HeldLock(local, channel.lock());
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            local.unlock();
+            throw e;
         }
+    }
+
+    // Closing the channel releases the file lock
+    private static void release(HeldLock lock) throws IOException {
+        try {
+            lock.file().channel().close();
+        } finally {
+            lock.local().unlock();
+        }
+    }
 
-        StringBuilder content = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while((line = br.readLine()) != null) {
-                content.append(line).append(System.lineSeparator());
+    private static void checkVersion(Path targetFile, FileVersion expected) throws IOException, StaleFileException {
+        if (expected == null) {
+            return;
+        }
+        if (!Files.isRegularFile(targetFile)) {
+            if (expected.isAbsent()) {
+                return;
             }
+            throw new StaleFileException(targetFile.getFileName() + " was deleted since it was loaded");
+        }
+        if (expected.isAbsent()) {
+            throw new StaleFileException(targetFile.getFileName() + " was created by someone else");
+        }
+        // Same size and timestamp: skip hashing the file
+        if (Files.size(targetFile) == expected.size()
+                && Files.getLastModifiedTime(targetFile).toMillis() == expected.lastModified()) {
+            return;
+        }
+        if (!currentVersion(targetFile).matches(expected)) {
+            throw new StaleFileException(targetFile.getFileName() + " was changed by someone else since it was loaded");
         }
-        return content.toString();
     }
 }
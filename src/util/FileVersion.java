@@ -0,0 +1,54 @@
+package util;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The modification time, size and content hash of a file at the moment it was read.
+ * Used to detect that another process changed a file between load and save.
+ */
+public record FileVersion(long lastModified, long size, String hash) {
+
+    /**
+     * Version of a file that does not exist (yet)
+     */
+    public static final FileVersion ABSENT = new FileVersion(-1, -1, "");
+
+    public static FileVersion of(byte[] content, long lastModified) {
+        return new FileVersion(lastModified, content.length, hash(content));
+    }
+
+    public boolean isAbsent() {
+        return size < 0;
+    }
+
+    /**
+     * Two versions match when their content hashes are equal; a touched but
+     * otherwise identical file is not treated as a conflict
+     */
+    public boolean matches(FileVersion other) {
+        return other != null && size == other.size && hash.equals(other.hash);
+    }
+
+    /**
+     * Hashes text encoded like FileManager writes it, so the hash of content
+     * matches the hash of the file it is saved to
+     */
+    public static String hash(String content) {
+        return hash(content.getBytes(Charset.defaultCharset()));
+    }
+
+    public static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -9,6 +9,7 @@ public class FolderUtils {
         String folderPath;
         while (true) {
             System.out.print("Enter the folder path to save classes: ");
+            StartupTimer.markFirstPrompt();
             folderPath = scanner.nextLine().trim();
             File folder = new File(folderPath);
 
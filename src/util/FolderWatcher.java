@@ -0,0 +1,136 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a folder tree on a background thread and reports changed paths in batches.
+ * Events are debounced: a batch is delivered once the folder has been quiet for the
+ * debounce interval, so a burst such as a branch switch arrives as one set.
+ */
+public class FolderWatcher implements Closeable {
+    // Never hold a batch back longer than this, even if events keep coming
+    private static final long MAX_DELAY_MILLIS = 2000;
+    // Past this many distinct paths a full rescan of the root is cheaper
+    private static final int MAX_BATCH_SIZE = 10_000;
+
+    private final Path root;
+    private final long debounceMillis;
+    private final Consumer<Set<Path>> onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    private FolderWatcher(Path root, long debounceMillis, Consumer<Set<Path>> onChange) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.debounceMillis = debounceMillis;
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        registerTree(this.root);
+        this.thread = new Thread(this::run, "jcb-folder-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts watching. The first batch delivered is the root itself, so the
+     * consumer performs its initial scan after the watch is in place and no
+     * change can slip in between.
+     */
+    public static FolderWatcher start(Path root, long debounceMillis, Consumer<Set<Path>> onChange) throws IOException {
+        FolderWatcher watcher = new FolderWatcher(root, debounceMillis, onChange);
+        watcher.thread.start();
+        return watcher;
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+
+    private void run() {
+        deliver(Set.of(root));
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> batch = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                long deadline = System.currentTimeMillis() + MAX_DELAY_MILLIS;
+                while (key != null) {
+                    collect(key, batch);
+                    long remaining = Math.min(debounceMillis, deadline - System.currentTimeMillis());
+                    key = remaining > 0 ? watchService.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                }
+                if (batch.size() > MAX_BATCH_SIZE) {
+                    batch = Set.of(root);
+                }
+                if (!batch.isEmpty()) {
+                    deliver(batch);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watcher closed
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> batch) {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost: fall back to rescanning the whole tree
+                batch.add(root);
+                continue;
+            }
+            Path changed = dir.resolve((Path) event.context());
+            if (changed.getFileName().toString().startsWith(".")) {
+                // Hidden entries such as the lock folder hold no classes
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                try {
+                    registerTree(changed);
+                } catch (IOException e) {
+                    // The directory vanished again; its entries are dropped on rescan
+                }
+            }
+            batch.add(changed);
+        }
+        key.reset();
+    }
+
+    private void deliver(Set<Path> batch) {
+        try {
+            onChange.accept(batch);
+        } catch (RuntimeException e) {
+            System.out.println("[sync] Failed to refresh changed files: " + e.getMessage());
+        }
+    }
+
+    // Registers dir and its folders, except hidden ones such as the lock folder
+    private void registerTree(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attributes) throws IOException {
+                if (!path.equals(dir) && path.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,218 @@
+package util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writes JSON straight to a Writer, one token at a time, so documents of any
+ * size are produced without building them in memory. Commas, colons and, when
+ * pretty printing, line breaks and indentation are inserted automatically.
+ */
+public final class JsonWriter implements Closeable, Flushable {
+    // What the innermost open container has seen so far
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private static final String[] ESCAPES = new String[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = String.format("\\u%04x", c);
+        }
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+        ESCAPES['\t'] = "\\t";
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\f'] = "\\f";
+    }
+
+    private final Writer out;
+    private final boolean pretty;
+    private int[] stack = new int[32];
+    private int depth;
+
+    /**
+     * @param pretty Put every element on its own line, indented by two spaces per level
+     */
+    public JsonWriter(Writer out, boolean pretty) {
+        this.out = out;
+        this.pretty = pretty;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        push(EMPTY_OBJECT);
+        out.write('{');
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        push(EMPTY_ARRAY);
+        out.write('[');
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        int scope = stack[depth - 1];
+        if (scope == NONEMPTY_OBJECT) {
+            out.write(',');
+        } else if (scope != EMPTY_OBJECT) {
+            throw new IllegalStateException("A name must be written inside an object, before its value");
+        }
+        newline();
+        stack[depth - 1] = DANGLING_NAME;
+        string(name);
+        out.write(pretty ? ": " : ":");
+        return this;
+    }
+
+    /**
+     * Writes a string, or null if value is null
+     */
+    public JsonWriter value(CharSequence value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        string(value);
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        out.write("null");
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Closes the underlying writer
+     *
+     * @throws IOException If an array or object is still open
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+        if (depth > 1 || stack[0] != NONEMPTY_DOCUMENT) {
+            throw new IOException("Incomplete JSON document");
+        }
+    }
+
+    private void beforeValue() throws IOException {
+        switch (stack[depth - 1]) {
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                break;
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                newline();
+                break;
+            case NONEMPTY_ARRAY:
+                out.write(',');
+                newline();
+                break;
+            case DANGLING_NAME:
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                break;
+            default:
+                throw new IllegalStateException(stack[depth - 1] == NONEMPTY_DOCUMENT
+                        ? "A JSON document holds a single top-level value" : "A value inside an object needs a name");
+        }
+    }
+
+    private JsonWriter close(int empty, int nonempty, char bracket) throws IOException {
+        int scope = stack[depth - 1];
+        if (scope != empty && scope != nonempty) {
+            throw new IllegalStateException("Nesting problem: cannot write " + bracket + " here");
+        }
+        depth--;
+        if (scope == nonempty) {
+            newline();
+        }
+        out.write(bracket);
+        return this;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = scope;
+    }
+
+    private void newline() throws IOException {
+        if (pretty) {
+            out.write('\n');
+            for (int i = 1; i < depth; i++) {
+                out.write("  ");
+            }
+        }
+    }
+
+    // Writes runs of plain characters in one call and escapes the rest
+    private void string(CharSequence value) throws IOException {
+        out.write('"');
+        int length = value.length();
+        int last = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String escape;
+            if (c < 128) {
+                escape = ESCAPES[c];
+            } else if (c == '\u2028' || c == '\u2029') {
+                // Valid JSON, but not valid in JavaScript strings
+                escape = c == '\u2028' ? "\\u2028" : "\\u2029";
+            } else {
+                continue;
+            }
+            if (escape == null) {
+                continue;
+            }
+            if (last < i) {
+                out.append(value, last, i);
+            }
+            out.write(escape);
+            last = i + 1;
+        }
+        if (last < length) {
+            out.append(value, last, length);
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,65 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * The start offsets of the lines of a text, so any line can be fetched in
+ * constant time without splitting the text into one String per line.
+ * Lines are counted from 0 and end with \n; a trailing \r is dropped.
+ */
+public final class LineIndex {
+    private final String text;
+    private final int[] starts;
+    private final int count;
+    // End of the last line, before a final line break
+    private final int lastEnd;
+
+    public LineIndex(String text) {
+        this.text = text;
+        int[] starts = new int[16];
+        int count = 1;
+        for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1)) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+            }
+            starts[count++] = i + 1;
+        }
+        // Like String.split, a final line break does not start another line
+        int lastEnd = text.length();
+        if (count > 1 && starts[count - 1] == text.length()) {
+            count--;
+            lastEnd = starts[count] - 1;
+        }
+        this.starts = starts;
+        this.lastEnd = lastEnd;
+        this.count = count;
+    }
+
+    public int lineCount() {
+        return count;
+    }
+
+    public String line(int line) {
+        int end = line + 1 < count ? starts[line + 1] - 1 : lastEnd;
+        if (end > starts[line] && text.charAt(end - 1) == '\r') {
+            end--;
+        }
+        return text.substring(starts[line], end);
+    }
+
+    public int startOf(int line) {
+        return starts[line];
+    }
+
+    /**
+     * Returns the line a character offset falls on
+     */
+    public int lineAt(int offset) {
+        int found = Arrays.binarySearch(starts, 0, count, offset);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,159 @@
+package util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide counters and latency histograms. Recording only touches
+ * LongAdders and atomic arrays, so it is safe and cheap on any thread.
+ *
+ * Usage: long start = System.nanoTime(); ... Metrics.SCAN.recordSince(start);
+ */
+public final class Metrics {
+    private static final Map<String, Histogram> LATENCIES = new LinkedHashMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new LinkedHashMap<>();
+    private static final AtomicBoolean REGISTERED = new AtomicBoolean();
+
+    public static final Histogram SCAN = latency("scan");
+    public static final Histogram BUILD = latency("build");
+    public static final Histogram HIGHLIGHT = latency("highlight");
+    public static final Histogram VALIDATE = latency("validate");
+    public static final Histogram RENDER = latency("render");
+    public static final Histogram WRITE = latency("write");
+    public static final Histogram DIFF = latency("diff");
+
+    public static final LongAdder FILES_READ = counter("files.read");
+    public static final LongAdder FILES_WRITTEN = counter("files.written");
+    public static final LongAdder BYTES_READ = counter("bytes.read");
+    public static final LongAdder BYTES_WRITTEN = counter("bytes.written");
+    public static final LongAdder CACHE_HITS = counter("cache.hits");
+    public static final LongAdder CACHE_MISSES = counter("cache.misses");
+    public static final LongAdder SAVES_COALESCED = counter("saves.coalesced");
+    public static final LongAdder SCANS_ABORTED = counter("scans.aborted");
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    private Metrics() {
+    }
+
+    private static Histogram latency(String name) {
+        Histogram histogram = new Histogram(name);
+        LATENCIES.put(name, histogram);
+        return histogram;
+    }
+
+    private static LongAdder counter(String name) {
+        LongAdder adder = new LongAdder();
+        COUNTERS.put(name, adder);
+        return adder;
+    }
+
+    public static void fileRead(long bytes) {
+        FILES_READ.increment();
+        BYTES_READ.add(bytes);
+    }
+
+    public static void fileWritten(long bytes) {
+        FILES_WRITTEN.increment();
+        BYTES_WRITTEN.add(bytes);
+    }
+
+    public static Map<String, Long> counters() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        COUNTERS.forEach((name, adder) -> values.put(name, adder.sum()));
+        return Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Returns count, mean, max and percentiles of every operation, in nanoseconds
+     */
+    public static Map<String, Long> latencies() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Histogram histogram : LATENCIES.values()) {
+            String name = histogram.getName();
+            values.put(name + ".count", histogram.count());
+            values.put(name + ".mean", histogram.mean());
+            for (double percentile : PERCENTILES) {
+                values.put(name + ".p" + percentileLabel(percentile), histogram.percentile(percentile));
+            }
+            values.put(name + ".max", histogram.max());
+        }
+        return Collections.unmodifiableMap(values);
+    }
+
+    public static void reset() {
+        LATENCIES.values().forEach(Histogram::reset);
+        COUNTERS.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * Returns all metrics as a JSON object; latencies are in nanoseconds
+     */
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder("{\n  \"counters\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Long> counter : counters().entrySet()) {
+            sb.append(separator).append("    \"").append(counter.getKey()).append("\": ").append(counter.getValue());
+            separator = ",\n";
+        }
+        sb.append("\n  },\n  \"latencyNanos\": {");
+        separator = "\n";
+        for (Histogram histogram : LATENCIES.values()) {
+            sb.append(separator).append("    \"").append(histogram.getName()).append("\": {")
+                    .append("\"count\": ").append(histogram.count())
+                    .append(", \"mean\": ").append(histogram.mean());
+            for (double percentile : PERCENTILES) {
+                sb.append(", \"p").append(percentileLabel(percentile)).append("\": ").append(histogram.percentile(percentile));
+            }
+            sb.append(", \"max\": ").append(histogram.max()).append('}');
+            separator = ",\n";
+        }
+        return sb.append("\n  }\n}").toString();
+    }
+
+    /**
+     * Registers the MXBean with the platform MBean server, once. Starting the
+     * management subsystem is slow, so callers should do this off the startup path.
+     */
+    public static void registerMBean() {
+        if (!REGISTERED.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MBean(), new ObjectName("jcb:type=Metrics"));
+        } catch (Exception e) {
+            // Metrics stay available through the JSON dump
+        }
+    }
+
+    private static String percentileLabel(double percentile) {
+        return String.valueOf(Math.round(percentile * 100));
+    }
+
+    private static final class MBean implements MetricsMXBean {
+        @Override
+        public Map<String, Long> getCounters() {
+            return counters();
+        }
+
+        @Override
+        public Map<String, Long> getLatencies() {
+            return latencies();
+        }
+
+        @Override
+        public String getJson() {
+            return toJson();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package util;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics registry, registered as jcb:type=Metrics
+ */
+public interface MetricsMXBean {
+
+    Map<String, Long> getCounters();
+
+    /**
+     * Latency statistics in nanoseconds, keyed as operation.statistic, e.g. scan.p99
+     */
+    Map<String, Long> getLatencies();
+
+    String getJson();
+
+    void reset();
+}
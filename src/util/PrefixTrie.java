@@ -0,0 +1,165 @@
+package util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable radix trie over a set of words, stored in flat int arrays instead of
+ * node objects. Chains of single children are merged into one edge, so there
+ * are fewer than two nodes per word. Every node covers a contiguous range of the
+ * sorted words, which makes completion a slice of that array.
+ *
+ * A lookup costs a binary search over the children at each branching point
+ * along the prefix, independent of how many words are stored.
+ */
+public final class PrefixTrie {
+    private final String[] words;
+    // Per node: prefix length at the end of its edge, its range of words, and its children
+    private final int[] depth;
+    private final int[] lo;
+    private final int[] hi;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private int nodes;
+
+    public PrefixTrie(Collection<String> words) {
+        this.words = sortedDistinct(words);
+        int capacity = 2 * this.words.length + 1;
+        depth = new int[capacity];
+        lo = new int[capacity];
+        hi = new int[capacity];
+        firstChild = new int[capacity];
+        childCount = new int[capacity];
+        nodes = 1;
+        lo[0] = 0;
+        hi[0] = this.words.length;
+        build(0);
+    }
+
+    private static String[] sortedDistinct(Collection<String> words) {
+        String[] sorted = words.toArray(new String[0]);
+        Arrays.sort(sorted);
+        int count = 0;
+        for (String word : sorted) {
+            if (count == 0 || !sorted[count - 1].equals(word)) {
+                sorted[count++] = word;
+            }
+        }
+        return count == sorted.length ? sorted : Arrays.copyOf(sorted, count);
+    }
+
+    private void build(int node) {
+        int d = depth[node];
+        int start = lo[node];
+        int end = hi[node];
+        // A word equal to the prefix itself sorts first and ends here
+        if (start < end && words[start].length() == d) {
+            start++;
+        }
+        int count = 0;
+        for (int i = start; i < end; i = nextGroup(i, end, d)) {
+            count++;
+        }
+        firstChild[node] = nodes;
+        childCount[node] = count;
+        nodes += count;
+        int child = firstChild[node];
+        for (int i = start; i < end; child++) {
+            int groupEnd = nextGroup(i, end, d);
+            lo[child] = i;
+            hi[child] = groupEnd;
+            depth[child] = commonPrefix(words[i], words[groupEnd - 1]);
+            i = groupEnd;
+        }
+        for (int c = firstChild[node]; c < firstChild[node] + count; c++) {
+            build(c);
+        }
+    }
+
+    // Returns the end of the run of words that share the character at position d
+    private int nextGroup(int from, int end, int d) {
+        char c = words[from].charAt(d);
+        int i = from + 1;
+        while (i < end && words[i].charAt(d) == c) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the node whose range holds exactly the words starting with prefix, or -1
+     */
+    private int find(CharSequence prefix) {
+        int node = 0;
+        while (depth[node] < prefix.length()) {
+            int child = childFor(node, prefix.charAt(depth[node]));
+            if (child < 0) {
+                return -1;
+            }
+            String word = words[lo[child]];
+            int limit = Math.min(prefix.length(), depth[child]);
+            for (int i = depth[node] + 1; i < limit; i++) {
+                if (word.charAt(i) != prefix.charAt(i)) {
+                    return -1;
+                }
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private int childFor(int node, char c) {
+        int d = depth[node];
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = words[lo[mid]].charAt(d);
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(CharSequence word) {
+        int node = find(word);
+        return node >= 0 && lo[node] < hi[node] && words[lo[node]].length() == word.length();
+    }
+
+    /**
+     * Returns up to limit words starting with prefix, in sorted order
+     */
+    public List<String> complete(CharSequence prefix, int limit) {
+        int node = find(prefix);
+        if (node < 0) {
+            return List.of();
+        }
+        int end = lo[node] + Math.min(hi[node] - lo[node], limit);
+        return Collections.unmodifiableList(Arrays.asList(words).subList(lo[node], end));
+    }
+
+    public int countCompletions(CharSequence prefix) {
+        int node = find(prefix);
+        return node < 0 ? 0 : hi[node] - lo[node];
+    }
+
+    public int size() {
+        return words.length;
+    }
+}
@@ -0,0 +1,201 @@
+package util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Zip or jar archive written by one background thread. Any number of threads
+ * add entries; they block while the queue is full, so at most queueCapacity
+ * generated sources are held in memory. Nothing is staged on disk besides the
+ * archive itself, which is deleted again if writing fails.
+ *
+ * A path ending in ".jar" gets a jar with a manifest; anything else a plain zip.
+ */
+public final class SourceArchive implements AutoCloseable {
+    private static final Entry END = new Entry(null, null);
+
+    private record Entry(String name, String content) {
+    }
+
+    private final Path target;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+    private volatile IOException failure;
+    private long entries;
+    private long uncompressedBytes;
+    private boolean closed;
+
+    private SourceArchive(Path target, ZipOutputStream out, int queueCapacity) {
+        this.target = target;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(() -> drain(out), "jcb-archive-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Creates or replaces the archive at target
+     *
+     * @param level Deflate level, 0 (store) to 9 (smallest), or Deflater.DEFAULT_COMPRESSION
+     */
+    public static SourceArchive open(Path target, int level, int queueCapacity) throws IOException {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Compression level must be between 0 and 9: " + level);
+        }
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        OutputStream file = new BufferedOutputStream(Files.newOutputStream(target), 1 << 16);
+        ZipOutputStream out;
+        if (target.getFileName().toString().endsWith(".jar")) {
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().putValue("Created-By", "Java Class Builder");
+            out = new JarOutputStream(file, manifest);
+        } else {
+            out = new ZipOutputStream(file);
+        }
+        out.setLevel(level);
+        SourceArchive archive = new SourceArchive(target, out, queueCapacity);
+        archive.writer.start();
+        return archive;
+    }
+
+    /**
+     * Returns whether path is an existing .zip or .jar file, which mount can open
+     */
+    public static boolean isArchive(Path path) {
+        Path fileName = path.getFileName();
+        String name = fileName == null ? "" : fileName.toString().toLowerCase();
+        return (name.endsWith(".zip") || name.endsWith(".jar")) && Files.isRegularFile(path);
+    }
+
+    /**
+     * Opens an existing zip or jar, such as a source jar or the JDK's src.zip,
+     * through the zip file system: its entries can be walked and read in place,
+     * from any number of threads, without extracting them. Nothing is written
+     * to the archive.
+     */
+    public static FileSystem mount(Path archive) throws IOException {
+        try {
+            return FileSystems.newFileSystem(archive);
+        } catch (ProviderNotFoundException e) {
+            throw new IOException("Not a zip or jar archive: " + archive, e);
+        }
+    }
+
+    /**
+     * Returns the entry path of a class: its package as folders, then Name.java
+     */
+    public static String entryName(String packageName, String className) {
+        String folder = packageName == null || packageName.isEmpty() ? "" : packageName.replace('.', '/') + "/";
+        return folder + className + ".java";
+    }
+
+    /**
+     * Queues one entry, waiting while the writer is behind
+     *
+     * @throws IOException If the writer has already failed
+     */
+    public void add(String name, String content) throws IOException {
+        try {
+            // Wake up now and then so a failed writer cannot leave producers blocked
+            while (!queue.offer(new Entry(name, content), 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while adding " + name);
+        }
+        checkFailure();
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    /**
+     * Total size of the sources written, before compression
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    /**
+     * Waits for every queued entry to be written and finishes the archive
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            while (writer.isAlive() && !queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                // The writer is still busy or has stopped; either way, look again
+            }
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.interrupt();
+            throw new InterruptedIOException("Interrupted while finishing " + target);
+        }
+        checkFailure();
+        Metrics.fileWritten(Files.size(target));
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Could not write " + target + ": " + failure.getMessage(), failure);
+        }
+    }
+
+    private void drain(ZipOutputStream out) {
+        long start = System.nanoTime();
+        try (out) {
+            for (Entry entry = queue.take(); entry != END; entry = queue.take()) {
+                byte[] bytes = entry.content().getBytes(Charset.defaultCharset());
+                out.putNextEntry(new ZipEntry(entry.name()));
+                out.write(bytes);
+                out.closeEntry();
+                entries++;
+                uncompressedBytes += bytes.length;
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(new IOException(e.getMessage(), e));
+        } catch (InterruptedException e) {
+            fail(new InterruptedIOException("Archive writer interrupted"));
+        } finally {
+            Metrics.WRITE.recordSince(start);
+        }
+    }
+
+    private void fail(IOException e) {
+        failure = e;
+        queue.clear();
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException deleteFailure) {
+            e.addSuppressed(deleteFailure);
+        }
+    }
+}
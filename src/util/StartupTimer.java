@@ -0,0 +1,49 @@
+package util;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures time-to-first-prompt and time-to-first-preview.
+ * Enabled with -Djcb.timing=true; reports are printed to stderr once each.
+ */
+public class StartupTimer {
+    private static final boolean ENABLED = Boolean.getBoolean("jcb.timing");
+    private static final long MAIN_ENTERED = System.nanoTime();
+
+    private static boolean promptReported = false;
+    private static boolean previewReported = false;
+
+    /**
+     * Called first thing in main so the timer's origin is captured
+     */
+    public static void markMainEntered() {
+        // Loading this class records MAIN_ENTERED
+    }
+
+    /**
+     * Records the first time the user is prompted for input
+     */
+    public static synchronized void markFirstPrompt() {
+        if (ENABLED && !promptReported) {
+            promptReported = true;
+            report("first prompt");
+        }
+    }
+
+    /**
+     * Records the first time a class preview is rendered
+     */
+    public static synchronized void markFirstPreview() {
+        if (ENABLED && !previewReported) {
+            previewReported = true;
+            report("first preview");
+        }
+    }
+
+    private static void report(String milestone) {
+        long sinceMain = (System.nanoTime() - MAIN_ENTERED) / 1_000_000;
+        // Only touched when timing is enabled, so management classes stay off the normal startup path
+        long sinceJvm = ManagementFactory.getRuntimeMXBean().getUptime();
+        System.err.println("[timing] " + milestone + ": " + sinceJvm + " ms since JVM start, " + sinceMain + " ms since main");
+    }
+}
@@ -36,25 +36,7 @@ public class StringFormatter {
      * @return The camelCase version of the string
      */
     public static String toCamelCase(String input) {
-        if (input == null || input.isEmpty()) {
-            return input;
-        }
-        
-        StringBuilder sb = new StringBuilder();
-        boolean capitalizeNext = false;
-        
-        for (char c : input.toCharArray()) {
-            if (c == ' ' || c == '_' || c == '-') {
-                capitalizeNext = true;
-            } else if (capitalizeNext) {
-                sb.append(Character.toUpperCase(c));
-                capitalizeNext = false;
-            } else {
-                sb.append(Character.toLowerCase(c));
-            }
-        }
-        
-        return sb.toString();
+        return convertCase(input, false);
     }
     
     /**
@@ -63,11 +45,51 @@ public class StringFormatter {
      * @return The PascalCase version of the string
      */
     public static String toPascalCase(String input) {
+        return convertCase(input, true);
+    }
+    
+    /**
+     * Drops spaces, underscores and hyphens, capitalizing the letter after each,
+     * and lowercases every other letter. Done in one pass: the input is returned
+     * as is if nothing changes, and otherwise the result is built in a single
+     * char array, so converting thousands of names creates no garbage beyond
+     * the names themselves.
+     * @param upperFirst Whether the first letter is capitalized as well
+     */
+    private static String convertCase(String input, boolean upperFirst) {
         if (input == null || input.isEmpty()) {
             return input;
         }
         
-        String camelCase = toCamelCase(input);
-        return Character.toUpperCase(camelCase.charAt(0)) + camelCase.substring(1);
+        int length = input.length();
+        char[] out = null;
+        int count = 0;
+        boolean capitalizeNext = upperFirst;
+        
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            boolean separator = c == ' ' || c == '_' || c == '-';
+            char converted = 0;
+            if (separator) {
+                capitalizeNext = true;
+            } else {
+                converted = capitalizeNext ? Character.toUpperCase(c) : Character.toLowerCase(c);
+                capitalizeNext = false;
+            }
+            if (out == null) {
+                if (!separator && converted == c) {
+                    // Unchanged so far: nothing to copy yet
+                    continue;
+                }
+                out = new char[length];
+                input.getChars(0, i, out, 0);
+                count = i;
+            }
+            if (!separator) {
+                out[count++] = converted;
+            }
+        }
+        
+        return out == null ? input : new String(out, 0, count);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,119 @@
+package util;
+
+import java.util.regex.Pattern;
+
+/**
+ * ANSI syntax highlighting for the console class previews
+ */
+public class SyntaxHighlighter {
+    // Basic ANSI color codes
+    private static final String RESET = "\u001B[0m";
+    private static final String KEYWORD = "\u001B[34m"; // Blue
+    private static final String TYPE = "\u001B[36m";    // Cyan
+    private static final String STRING = "\u001B[32m";  // Green
+    private static final String COMMENT = "\u001B[90m"; // Bright black
+
+    /**
+     * Holder for the compiled patterns, so they are only built the first time
+     * something is highlighted and never on the way to the first prompt
+     */
+    private static final class Patterns {
+        static final Pattern LINE_COMMENT = Pattern.compile("(?m)//.*$");
+        static final Pattern BLOCK_COMMENT = Pattern.compile("(?s)/\\*.*?\\*/");
+        static final Pattern STRING_LITERAL = Pattern.compile("\"([^\"]*)\"");
+        static final Pattern KEYWORDS = Pattern.compile(
+                "\\b(public|private|protected|class|interface|abstract|static|final|void|extends|implements|return|new)\\b");
+        static final Pattern TYPES = Pattern.compile(
+                "\\b(int|long|short|byte|float|double|boolean|char|String)\\b");
+    }
+
+    /**
+     * Highlights keywords, types, strings and comments (very basic)
+     * @param code The Java code to highlight
+     * @return The code with ANSI color codes inserted
+     */
+    public static String highlight(String code) {
+        long start = System.nanoTime();
+        String highlighted = code;
+        highlighted = Patterns.LINE_COMMENT.matcher(highlighted).replaceAll(COMMENT + "$0" + RESET);
+        highlighted = Patterns.BLOCK_COMMENT.matcher(highlighted).replaceAll(COMMENT + "$0" + RESET);
+        highlighted = Patterns.STRING_LITERAL.matcher(highlighted).replaceAll(STRING + "\"$1\"" + RESET);
+        highlighted = Patterns.KEYWORDS.matcher(highlighted).replaceAll(KEYWORD + "$1" + RESET);
+        highlighted = Patterns.TYPES.matcher(highlighted).replaceAll(TYPE + "$1" + RESET);
+        Metrics.HIGHLIGHT.recordSince(start);
+        return highlighted;
+    }
+
+    /**
+     * Highlights one line of a longer text. A line that starts inside a block
+     * comment, such as the body of a javadoc, is grey up to the end of the
+     * comment, and so is a line comment or a block comment left open at its
+     * end; keywords in them are not coloured.
+     *
+     * @param inComment Whether a block comment is open where the line starts; see endsInComment
+     */
+    public static String highlightLine(String line, boolean inComment) {
+        int codeStart = inComment ? commentEnd(line) : 0;
+        if (codeStart < 0) {
+            return COMMENT + line + RESET;
+        }
+        int open = trailingComment(line, codeStart);
+        int codeEnd = open < 0 ? line.length() : open;
+        StringBuilder sb = new StringBuilder();
+        if (codeStart > 0) {
+            sb.append(COMMENT).append(line, 0, codeStart).append(RESET);
+        }
+        sb.append(highlight(line.substring(codeStart, codeEnd)));
+        if (open >= 0) {
+            sb.append(COMMENT).append(line, open, line.length()).append(RESET);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns whether a block comment is still open at the end of a line
+     *
+     * @param inComment Whether one was open where the line starts
+     */
+    public static boolean endsInComment(String line, boolean inComment) {
+        int codeStart = inComment ? commentEnd(line) : 0;
+        if (codeStart < 0) {
+            return true;
+        }
+        int open = trailingComment(line, codeStart);
+        return open >= 0 && line.startsWith("/*", open);
+    }
+
+    // Offset after the */ closing a comment open at the start of the line, -1 if it stays open
+    private static int commentEnd(String line) {
+        int close = line.indexOf("*/");
+        return close < 0 ? -1 : close + 2;
+    }
+
+    // Offset of a // or of a /* not closed on the line, from the given offset on, -1 if
+    // neither; comments closed on the line and string and char literals are skipped
+    private static int trailingComment(String line, int from) {
+        int i = from;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (c == '"' || c == '\'') {
+                i++;
+                while (i < line.length() && line.charAt(i) != c) {
+                    i += line.charAt(i) == '\\' ? 2 : 1;
+                }
+                i++;
+            } else if (line.startsWith("//", i)) {
+                return i;
+            } else if (line.startsWith("/*", i)) {
+                int close = line.indexOf("*/", i + 2);
+                if (close < 0) {
+                    return i;
+                }
+                i = close + 2;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,338 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleFinder;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Maps simple type names to the packages that declare a public top-level type
+ * of that name, e.g. List to java.util and java.awt. Covers the packages the
+ * JDK exports (read from the jrt:/ file system) and the jars and folders on the
+ * class path.
+ *
+ * Building the index reads tens of thousands of class files, so the result is
+ * saved to ~/.jcb/types.idx and reused until the JDK or the class path changes.
+ */
+public final class TypeIndex {
+    private static final String FORMAT = "jcb-type-index 1";
+    private static final Path CACHE_FILE = Paths.get(System.getProperty("user.home"), ".jcb", "types.idx");
+    private static final TypeIndex EMPTY = new TypeIndex(Map.of());
+
+    private static CompletableFuture<TypeIndex> loading;
+
+    private final Map<String, List<String>> packagesByName;
+
+    private TypeIndex(Map<String, List<String>> packagesByName) {
+        this.packagesByName = packagesByName;
+    }
+
+    /**
+     * Starts loading the index on a background thread, if not done yet
+     */
+    public static synchronized void preload() {
+        if (loading != null) {
+            return;
+        }
+        CompletableFuture<TypeIndex> future = new CompletableFuture<>();
+        loading = future;
+        Thread thread = new Thread(() -> {
+            try {
+                future.complete(loadOrBuild());
+            } catch (IOException | RuntimeException e) {
+                // Without an index, imports are just not filled in
+                future.complete(EMPTY);
+            }
+        }, "jcb-type-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the index, waiting for it if it is still being loaded or built
+     */
+    public static TypeIndex get() {
+        CompletableFuture<TypeIndex> future;
+        synchronized (TypeIndex.class) {
+            preload();
+            future = loading;
+        }
+        return future.join();
+    }
+
+    /**
+     * Returns the packages declaring a public type with this simple name, sorted
+     */
+    public List<String> packagesOf(String simpleName) {
+        return packagesByName.getOrDefault(simpleName, List.of());
+    }
+
+    public boolean contains(String packageName, String simpleName) {
+        return packagesOf(simpleName).contains(packageName);
+    }
+
+    public Set<String> simpleNames() {
+        return Collections.unmodifiableSet(packagesByName.keySet());
+    }
+
+    public int size() {
+        return packagesByName.size();
+    }
+
+    private static TypeIndex loadOrBuild() throws IOException {
+        String key = cacheKey();
+        TypeIndex cached = load(key);
+        if (cached != null) {
+            return cached;
+        }
+        Map<String, Set<String>> namesByPackage = new ConcurrentHashMap<>();
+        addJdkTypes(namesByPackage);
+        for (String entry : classPath()) {
+            addClassPathTypes(Paths.get(entry), namesByPackage);
+        }
+        save(key, namesByPackage);
+        return fromPackages(namesByPackage);
+    }
+
+    /**
+     * Identifies the JDK and every class path entry by size and modification time
+     */
+    private static String cacheKey() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(System.getProperty("java.home")).append('|').append(Runtime.version());
+        for (String entry : classPath()) {
+            Path path = Paths.get(entry);
+            sb.append('|').append(entry);
+            if (Files.isRegularFile(path)) {
+                sb.append(':').append(Files.size(path)).append(':').append(Files.getLastModifiedTime(path).toMillis());
+            }
+        }
+        return FileVersion.hash(sb.toString());
+    }
+
+    private static List<String> classPath() {
+        List<String> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private static TypeIndex load(String key) {
+        if (!Files.isRegularFile(CACHE_FILE)) {
+            return null;
+        }
+        Map<String, List<String>> packagesByName = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(CACHE_FILE, StandardCharsets.UTF_8)) {
+            if (!(FORMAT + " " + key).equals(reader.readLine())) {
+                return null;
+            }
+            // One line per package: the package name, then its type names
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                String packageName = parts[0].intern();
+                for (int i = 1; i < parts.length; i++) {
+                    List<String> packages = packagesByName.get(parts[i]);
+                    if (packages == null) {
+                        packages = new ArrayList<>(1);
+                        packagesByName.put(parts[i], packages);
+                    }
+                    packages.add(packageName);
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return new TypeIndex(packagesByName);
+    }
+
+    private static void save(String key, Map<String, Set<String>> namesByPackage) {
+        try {
+            Files.createDirectories(CACHE_FILE.getParent());
+            Path temp = Files.createTempFile(CACHE_FILE.getParent(), "types", ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(FORMAT + " " + key);
+                writer.newLine();
+                for (Map.Entry<String, Set<String>> entry : new TreeMap<>(namesByPackage).entrySet()) {
+                    writer.write(entry.getKey());
+                    for (String name : new TreeSet<>(entry.getValue())) {
+                        writer.write(' ');
+                        writer.write(name);
+                    }
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, CACHE_FILE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The index still works for this run; it is rebuilt next time
+        }
+    }
+
+    private static TypeIndex fromPackages(Map<String, Set<String>> namesByPackage) {
+        Map<String, List<String>> packagesByName = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : new TreeMap<>(namesByPackage).entrySet()) {
+            for (String name : entry.getValue()) {
+                packagesByName.computeIfAbsent(name, n -> new ArrayList<>(1)).add(entry.getKey());
+            }
+        }
+        return new TypeIndex(packagesByName);
+    }
+
+    /**
+     * Adds the public types of every package a system module exports to everyone
+     */
+    private static void addJdkTypes(Map<String, Set<String>> namesByPackage) throws IOException {
+        Set<String> exported = ModuleFinder.ofSystem().findAll().stream()
+                .flatMap(module -> module.descriptor().exports().stream())
+                .filter(export -> !export.isQualified())
+                .map(ModuleDescriptor.Exports::source)
+                .collect(Collectors.toSet());
+        FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+        List<Path> classFiles;
+        try (Stream<Path> walk = Files.walk(jrt.getPath("/modules"))) {
+            classFiles = walk.filter(TypeIndex::isTopLevelClassFile).collect(Collectors.toList());
+        }
+        try {
+            classFiles.parallelStream().forEach(file -> {
+                // /modules/<module>/<package path>/<Name>.class
+                Path relative = file.subpath(2, file.getNameCount());
+                String packageName = packageOf(relative.toString().replace(jrt.getSeparator(), "/"));
+                if (exported.contains(packageName)) {
+                    try {
+                        addIfPublic(namesByPackage, packageName, file.getFileName().toString(), Files.readAllBytes(file));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void addClassPathTypes(Path entry, Map<String, Set<String>> namesByPackage) {
+        try {
+            if (Files.isDirectory(entry)) {
+                try (Stream<Path> walk = Files.walk(entry)) {
+                    for (Path file : (Iterable<Path>) walk.filter(TypeIndex::isTopLevelClassFile)::iterator) {
+                        String relative = entry.relativize(file).toString().replace(File.separatorChar, '/');
+                        addIfPublic(namesByPackage, packageOf(relative), file.getFileName().toString(),
+                                Files.readAllBytes(file));
+                    }
+                }
+            } else if (Files.isRegularFile(entry) && entry.toString().endsWith(".jar")) {
+                try (ZipFile jar = new ZipFile(entry.toFile())) {
+                    for (ZipEntry zipEntry : Collections.list(jar.entries())) {
+                        String name = zipEntry.getName();
+                        if (isTopLevelClassFile(name) && !name.startsWith("META-INF/")) {
+                            try (InputStream in = jar.getInputStream(zipEntry)) {
+                                addIfPublic(namesByPackage, packageOf(name), name.substring(name.lastIndexOf('/') + 1),
+                                        in.readAllBytes());
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // An unreadable class path entry only means fewer known types
+        }
+    }
+
+    private static boolean isTopLevelClassFile(Path file) {
+        return isTopLevelClassFile(file.getFileName() == null ? "" : file.getFileName().toString());
+    }
+
+    private static boolean isTopLevelClassFile(String name) {
+        String fileName = name.substring(name.lastIndexOf('/') + 1);
+        return fileName.endsWith(".class") && fileName.indexOf('$') < 0
+                && !fileName.equals("module-info.class") && !fileName.equals("package-info.class");
+    }
+
+    private static String packageOf(String relativePath) {
+        int slash = relativePath.lastIndexOf('/');
+        return slash < 0 ? "" : relativePath.substring(0, slash).replace('/', '.');
+    }
+
+    private static void addIfPublic(Map<String, Set<String>> namesByPackage, String packageName, String fileName,
+                                    byte[] classFile) {
+        if (!packageName.isEmpty() && isPublic(classFile)) {
+            String simpleName = fileName.substring(0, fileName.length() - ".class".length());
+            namesByPackage.computeIfAbsent(packageName, p -> ConcurrentHashMap.newKeySet()).add(simpleName);
+        }
+    }
+
+    /**
+     * Reads the access flags of a class file, which follow its constant pool
+     */
+    static boolean isPublic(byte[] b) {
+        if (b.length < 10 || (b[0] & 0xFF) != 0xCA || (b[1] & 0xFF) != 0xFE) {
+            return false;
+        }
+        int count = u2(b, 8);
+        int pos = 10;
+        for (int i = 1; i < count; i++) {
+            if (pos >= b.length) {
+                return false;
+            }
+            switch (b[pos]) {
+                case 1: // Utf8
+                    pos += 3 + u2(b, pos + 1);
+                    break;
+                case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+                    pos += 5;
+                    break;
+                case 5: case 6: // Long and Double take two slots
+                    pos += 9;
+                    i++;
+                    break;
+                case 7: case 8: case 16: case 19: case 20:
+                    pos += 3;
+                    break;
+                case 15: // MethodHandle
+                    pos += 4;
+                    break;
+                default:
+                    return false;
+            }
+        }
+        if (pos + 2 > b.length) {
+            return false;
+        }
+        int flags = u2(b, pos);
+        // Public, and neither synthetic nor a module descriptor
+        return (flags & 0x0001) != 0 && (flags & 0x1000) == 0 && (flags & 0x8000) == 0;
+    }
+
+    private static int u2(byte[] b, int pos) {
+        return ((b[pos] & 0xFF) << 8) | (b[pos + 1] & 0xFF);
+    }
+}
@@ -1,5 +1,6 @@
 package util;
 
+import event.ValidateEvent;
 import exception.InvalidNameException;
 
 import java.util.Arrays;
@@ -11,23 +12,53 @@ import java.util.regex.Pattern;
  * Utility class for validating input for class elements
  */
 public class ValidationUtils {
-    // Java keywords that cannot be used as identifiers
-    private static final Set<String> JAVA_KEYWORDS = new HashSet<>(Arrays.asList(
-            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
-            "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
-            "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
-            "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp", "super",
-            "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void", "volatile", "while",
-            "true", "false", "null"
-    ));
-
     // Valid Java visibility modifiers
     private static final Set<String> VALID_VISIBILITY = new HashSet<>(Arrays.asList(
             "public", "private", "protected", ""
     ));
 
-    // Pattern for valid Java identifiers
-    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[a-zA-Z_$][a-zA-Z0-9_$]*");
+    /**
+     * Keyword set and identifier pattern, initialized on the first name check
+     * rather than when the class is loaded
+     */
+    private static final class Rules {
+        // Java keywords that cannot be used as identifiers
+        static final Set<String> JAVA_KEYWORDS = new HashSet<>(Arrays.asList(
+                "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+                "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+                "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+                "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp", "super",
+                "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void", "volatile", "while",
+                "true", "false", "null"
+        ));
+
+        // Pattern for valid Java identifiers
+        static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[a-zA-Z_$][a-zA-Z0-9_$]*");
+    }
+
+    private interface Rule {
+        void check(String value) throws InvalidNameException;
+    }
+
+    /**
+     * Runs a rule, timing it and recording its outcome for the flight recorder
+     */
+    private static void validate(String ruleName, String value, Rule rule) throws InvalidNameException {
+        long start = System.nanoTime();
+        ValidateEvent event = new ValidateEvent();
+        event.rule = ruleName;
+        event.value = value;
+        event.begin();
+        try {
+            rule.check(value);
+            event.ok();
+        } catch (InvalidNameException | RuntimeException e) {
+            event.failed(e);
+            throw e;
+        } finally {
+            Metrics.VALIDATE.recordSince(start);
+        }
+    }
 
     /**
      * Validates a Java class name
@@ -36,15 +67,19 @@ public class ValidationUtils {
      * @throws InvalidNameException If the name is invalid
      */
     public static void validateClassName(String name) throws InvalidNameException {
+        validate("className", name, ValidationUtils::checkClassName);
+    }
+
+    private static void checkClassName(String name) throws InvalidNameException {
         if (name == null || name.isEmpty()) {
             throw new InvalidNameException("Class name cannot be empty");
         }
 
-        if (!IDENTIFIER_PATTERN.matcher(name).matches()) {
+        if (!Rules.IDENTIFIER_PATTERN.matcher(name).matches()) {
             throw new InvalidNameException("Invalid class name format: " + name);
         }
 
-        if (JAVA_KEYWORDS.contains(name)) {
+        if (Rules.JAVA_KEYWORDS.contains(name)) {
             throw new InvalidNameException("Class name cannot be a Java keyword: " + name);
         }
 
@@ -61,15 +96,19 @@ public class ValidationUtils {
      * @throws InvalidNameException If the name is invalid
      */
     public static void validateVariableName(String name) throws InvalidNameException {
+        validate("variableName", name, ValidationUtils::checkVariableName);
+    }
+
+    private static void checkVariableName(String name) throws InvalidNameException {
         if (name == null || name.isEmpty()) {
             throw new InvalidNameException("Variable name cannot be empty");
         }
 
-        if (!IDENTIFIER_PATTERN.matcher(name).matches()) {
+        if (!Rules.IDENTIFIER_PATTERN.matcher(name).matches()) {
             throw new InvalidNameException("Invalid variable name format: " + name);
         }
 
-        if (JAVA_KEYWORDS.contains(name)) {
+        if (Rules.JAVA_KEYWORDS.contains(name)) {
             throw new InvalidNameException("Variable name cannot be a Java keyword: " + name);
         }
 
@@ -79,6 +118,32 @@ public class ValidationUtils {
         }
     }
 
+    /**
+     * Validates that a name is a legal Java identifier, without the naming
+     * conventions the other checks enforce (so constants and names taken from
+     * existing code pass)
+     *
+     * @param name The name to validate
+     * @throws InvalidNameException If the name is not a legal identifier
+     */
+    public static void validateIdentifier(String name) throws InvalidNameException {
+        validate("identifier", name, ValidationUtils::checkIdentifier);
+    }
+
+    private static void checkIdentifier(String name) throws InvalidNameException {
+        if (name == null || name.isEmpty()) {
+            throw new InvalidNameException("Name cannot be empty");
+        }
+
+        if (!Rules.IDENTIFIER_PATTERN.matcher(name).matches()) {
+            throw new InvalidNameException("Invalid name format: " + name);
+        }
+
+        if (Rules.JAVA_KEYWORDS.contains(name)) {
+            throw new InvalidNameException("Name cannot be a Java keyword: " + name);
+        }
+    }
+
     /**
      * Validates a Java method name
      *
@@ -86,15 +151,19 @@ public class ValidationUtils {
      * @throws InvalidNameException If the name is invalid
      */
     public static void validateMethodName(String name) throws InvalidNameException {
+        validate("methodName", name, ValidationUtils::checkMethodName);
+    }
+
+    private static void checkMethodName(String name) throws InvalidNameException {
         if (name == null || name.isEmpty()) {
             throw new InvalidNameException("Method name cannot be empty");
         }
 
-        if (!IDENTIFIER_PATTERN.matcher(name).matches()) {
+        if (!Rules.IDENTIFIER_PATTERN.matcher(name).matches()) {
             throw new InvalidNameException("Invalid method name format: " + name);
         }
 
-        if (JAVA_KEYWORDS.contains(name)) {
+        if (Rules.JAVA_KEYWORDS.contains(name)) {
             throw new InvalidNameException("Method name cannot be a Java keyword: " + name);
         }
 
@@ -111,6 +180,10 @@ public class ValidationUtils {
      * @throws InvalidNameException If the visibility is invalid
      */
     public static void validateVisibility(String visibility) throws InvalidNameException {
+        validate("visibility", visibility, ValidationUtils::checkVisibility);
+    }
+
+    private static void checkVisibility(String visibility) throws InvalidNameException {
         if (!VALID_VISIBILITY.contains(visibility)) {
             throw new InvalidNameException("Invalid visibility modifier: " + visibility +
                     ". Must be 'public', 'private', 'protected', or empty for package-private");
@@ -124,22 +197,119 @@ public class ValidationUtils {
      * @throws InvalidNameException If the type is invalid
      */
     public static void validateType(String type) throws InvalidNameException {
+        validate("type", type, ValidationUtils::checkType);
+    }
+
+    private static void checkType(String type) throws InvalidNameException {
         if (type == null || type.isEmpty()) {
             throw new InvalidNameException("Type cannot be empty");
         }
 
-        // Handle array types
-        String baseType = type.replaceAll("\\[\\]", "").trim();
+        // Accepts primitives, qualified names, arrays and type arguments such as Map<String, List<? extends Number>>
+        TypeParser parser = new TypeParser(type);
+        if (!parser.type(true) || parser.skipSpaces() != type.length()) {
+            throw new InvalidNameException("Invalid type: " + type);
+        }
+    }
 
-        // Primitive types are valid
-        if (isPrimitiveType(baseType)) {
-            return;
+    /**
+     * Recursive descent over the type grammar; each method returns false at the
+     * first character that does not fit
+     */
+    private static final class TypeParser {
+        private final String text;
+        private int pos;
+
+        TypeParser(String text) {
+            this.text = text;
         }
 
-        // For non-primitive types, check if it's a valid class name
-        // This is a simplified check
-        if (!IDENTIFIER_PATTERN.matcher(baseType).matches() || JAVA_KEYWORDS.contains(baseType)) {
-            throw new InvalidNameException("Invalid type: " + type);
+        boolean type(boolean allowPrimitive) {
+            skipSpaces();
+            String first = identifier();
+            if (first == null || (Rules.JAVA_KEYWORDS.contains(first) && !isPrimitiveType(first))) {
+                return false;
+            }
+            if (isPrimitiveType(first)) {
+                int dimensions = dimensions();
+                return dimensions > 0 || (dimensions == 0 && allowPrimitive);
+            }
+            while (consume('.')) {
+                String part = identifier();
+                if (part == null || Rules.JAVA_KEYWORDS.contains(part)) {
+                    return false;
+                }
+            }
+            if (consume('<')) {
+                do {
+                    if (!typeArgument()) {
+                        return false;
+                    }
+                } while (consume(','));
+                if (!consume('>')) {
+                    return false;
+                }
+            }
+            return dimensions() >= 0;
+        }
+
+        private boolean typeArgument() {
+            skipSpaces();
+            if (!peek('?')) {
+                return type(false);
+            }
+            pos++;
+            int mark = skipSpaces();
+            String bound = identifier();
+            if ("extends".equals(bound) || "super".equals(bound)) {
+                return type(false);
+            }
+            pos = mark;
+            return true;
+        }
+
+        // Returns the number of [] pairs that follow, or -1 if one is not closed
+        private int dimensions() {
+            int count = 0;
+            while (consume('[')) {
+                if (!consume(']')) {
+                    return -1;
+                }
+                count++;
+            }
+            return count;
+        }
+
+        private String identifier() {
+            skipSpaces();
+            int start = pos;
+            if (pos < text.length() && Character.isJavaIdentifierStart(text.charAt(pos))) {
+                pos++;
+                while (pos < text.length() && Character.isJavaIdentifierPart(text.charAt(pos))) {
+                    pos++;
+                }
+            }
+            return pos > start ? text.substring(start, pos) : null;
+        }
+
+        private boolean consume(char c) {
+            skipSpaces();
+            if (peek(c)) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean peek(char c) {
+            return pos < text.length() && text.charAt(pos) == c;
+        }
+
+        int skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            return pos;
         }
     }
 
@@ -162,13 +332,17 @@ public class ValidationUtils {
      * @throws InvalidNameException If the package name is invalid
      */
     public static void validatePackageName(String packageName) throws InvalidNameException {
+        validate("packageName", packageName, ValidationUtils::checkPackageName);
+    }
+
+    private static void checkPackageName(String packageName) throws InvalidNameException {
         if (packageName == null || packageName.isEmpty()) {
             return; // Empty package name is valid (default package)
         }
 
         String[] parts = packageName.split("\\.");
         for (String part : parts) {
-            if (!IDENTIFIER_PATTERN.matcher(part).matches() || JAVA_KEYWORDS.contains(part)) {
+            if (!Rules.IDENTIFIER_PATTERN.matcher(part).matches() || Rules.JAVA_KEYWORDS.contains(part)) {
                 throw new InvalidNameException("Invalid package name part: " + part);
             }
         }
@@ -0,0 +1,7 @@
+package util;
+
+/**
+ * File content together with the version it was read at
+ */
+public record VersionedContent(String content, FileVersion version) {
+}